@@ -4,13 +4,15 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Excel导出应用主启动类
- * 启用异步处理和MyBatis扫描
+ * 启用异步处理、定时调度和MyBatis扫描
  */
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 @MapperScan("com.example.excel.mapper")
 public class ExcelExportApplication {
 
@@ -1,6 +1,7 @@
 package com.example.excel.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -18,22 +19,41 @@ import java.util.concurrent.ThreadPoolExecutor;
 @EnableAsync
 public class AsyncConfig {
 
+    @Value("${export.scheduler.workers:2}")
+    private Integer schedulerWorkers;
+
+    @Value("${export.scheduler.queue-capacity:10}")
+    private Integer schedulerQueueCapacity;
+
+    @Value("${export.partition.workers:4}")
+    private Integer partitionWorkers;
+
+    @Value("${export.zip.workers:4}")
+    private Integer zipWorkers;
+
+    @Value("${export.count.workers:2}")
+    private Integer countWorkers;
+
+    @Value("${export.storage.s3.upload-workers:4}")
+    private Integer uploadWorkers;
+
+    @Value("${export.pipeline.stage-workers:32}")
+    private Integer stageWorkers;
+
     /**
      * 导出任务线程池
-     * 专门用于处理Excel导出任务
+     * 专门用于执行导出任务调度器认领的任务，排队中的任务保存在export_task表中
      */
     @Bean("exportTaskExecutor")
-    public Executor exportTaskExecutor() {
+    public ThreadPoolTaskExecutor exportTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
-        // 核心线程数
-        executor.setCorePoolSize(2);
-        
-        // 最大线程数
-        executor.setMaxPoolSize(5);
+        // 固定数量的工作线程
+        executor.setCorePoolSize(schedulerWorkers);
+        executor.setMaxPoolSize(schedulerWorkers);
         
-        // 队列容量
-        executor.setQueueCapacity(100);
+        // 有界队列
+        executor.setQueueCapacity(schedulerQueueCapacity);
         
         // 线程名前缀
         executor.setThreadNamePrefix("ExportTask-");
@@ -41,8 +61,8 @@ public class AsyncConfig {
         // 线程空闲时间（秒）
         executor.setKeepAliveSeconds(60);
         
-        // 拒绝策略：调用者运行
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        // 拒绝策略：直接拒绝，由调度器把任务放回队列，不能回退到调用线程执行
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         
         // 等待所有任务完成后再关闭线程池
         executor.setWaitForTasksToCompleteOnShutdown(true);
@@ -59,6 +79,129 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * 流水线阶段线程池
+     * 每个执行中的导出占用两个线程（读取、行转换）。两个阶段互相等待，不能排队执行，
+     * 因此不设队列，线程用尽时直接拒绝，该次导出失败而不是卡住
+     */
+    @Bean("exportStageExecutor")
+    public ThreadPoolTaskExecutor exportStageExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(Math.min(4, stageWorkers));
+        executor.setMaxPoolSize(stageWorkers);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ExportStage-");
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        
+        executor.initialize();
+        
+        log.info("流水线阶段线程池初始化完成，最大线程数: {}", stageWorkers);
+        
+        return executor;
+    }
+
+    /**
+     * 分片读取线程池
+     * 用于分片并行读取模式下并发查询各个主键区间
+     */
+    @Bean("exportFetchExecutor")
+    public ThreadPoolTaskExecutor exportFetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(partitionWorkers);
+        executor.setMaxPoolSize(partitionWorkers);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("ExportFetch-");
+        executor.setKeepAliveSeconds(60);
+        // 队列满时由读取线程自己执行查询，天然形成背压
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        
+        executor.initialize();
+        
+        log.info("分片读取线程池初始化完成，线程数: {}", partitionWorkers);
+        
+        return executor;
+    }
+
+    /**
+     * 分卷生成线程池
+     * 用于分片ZIP导出时并行生成各个xlsx分卷
+     */
+    @Bean("exportPartExecutor")
+    public ThreadPoolTaskExecutor exportPartExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(zipWorkers);
+        executor.setMaxPoolSize(zipWorkers);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("ExportPart-");
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        
+        executor.initialize();
+        
+        log.info("分卷生成线程池初始化完成，线程数: {}", zipWorkers);
+        
+        return executor;
+    }
+
+    /**
+     * 行数统计线程池
+     * 用于以估算总数开始的导出在后台精确统计总数
+     */
+    @Bean("exportCountExecutor")
+    public ThreadPoolTaskExecutor exportCountExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(countWorkers);
+        executor.setMaxPoolSize(countWorkers);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("ExportCount-");
+        executor.setKeepAliveSeconds(60);
+        // 队列满时放弃统计，任务成功后以已导出行数作为总数
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        
+        executor.initialize();
+        
+        log.info("行数统计线程池初始化完成，线程数: {}", countWorkers);
+        
+        return executor;
+    }
+
+    /**
+     * 分段上传线程池
+     * 用于导出文件写入对象存储时并行上传各个分段
+     */
+    @Bean("exportUploadExecutor")
+    public ThreadPoolTaskExecutor exportUploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(uploadWorkers);
+        executor.setMaxPoolSize(uploadWorkers);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("ExportUpload-");
+        executor.setKeepAliveSeconds(60);
+        // 同时上传的分段数由写入流限制，队列满时由写入线程自己上传
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        
+        executor.initialize();
+        
+        log.info("分段上传线程池初始化完成，线程数: {}", uploadWorkers);
+        
+        return executor;
+    }
+
     /**
      * 通用异步任务线程池
      */
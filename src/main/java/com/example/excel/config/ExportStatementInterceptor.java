@@ -0,0 +1,36 @@
+package com.example.excel.config;
+
+import com.example.excel.service.ExportCancellation;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+
+/**
+ * 导出查询拦截器
+ * 导出读取线程上执行的查询在执行期间登记到任务的取消令牌，取消任务时可以直接中止查询，
+ * 非导出线程上的查询不受影响
+ */
+@Component
+@Intercepts(@Signature(type = StatementHandler.class, method = "query",
+    args = {Statement.class, ResultHandler.class}))
+public class ExportStatementInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.getArgs()[0];
+        if (!ExportCancellation.trackStatement(statement)) {
+            return invocation.proceed();
+        }
+        try {
+            return invocation.proceed();
+        } finally {
+            ExportCancellation.untrackStatement(statement);
+        }
+    }
+}
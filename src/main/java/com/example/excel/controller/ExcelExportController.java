@@ -5,14 +5,20 @@ import com.example.excel.dto.ExportResponse;
 import com.example.excel.entity.ExportTask;
 import com.example.excel.mapper.ExportTaskMapper;
 import com.example.excel.service.ExcelExportService;
+import com.example.excel.service.ExportEventHub;
 import com.example.excel.service.FileDownloadService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.ClientAbortException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +42,9 @@ public class ExcelExportController {
     @Autowired
     private ExportTaskMapper exportTaskMapper;
 
+    @Autowired
+    private ExportEventHub exportEventHub;
+
     /**
      * 启动导出任务
      *
@@ -71,6 +80,26 @@ public class ExcelExportController {
         }
     }
 
+    /**
+     * 直接流式导出
+     * 工作簿直接写入响应流，不生成临时文件和任务记录，适用于小数据量的交互式导出
+     *
+     * @param request 导出请求
+     * @return 文件流
+     */
+    @PostMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamExport(@RequestBody ExportRequest request) {
+        try {
+            log.info("开始流式导出，创建人: {}", request.getCreateBy());
+            
+            return excelExportService.streamExport(request);
+            
+        } catch (Exception e) {
+            log.error("流式导出失败", e);
+            throw new RuntimeException("流式导出失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 查询导出任务状态
      *
@@ -94,21 +123,72 @@ public class ExcelExportController {
     }
 
     /**
-     * 下载导出文件
+     * 取消导出任务
+     * 排队中的任务立即取消，处理中的任务在下一批数据处中断并删除未完成的文件
      *
      * @param taskId 任务ID
-     * @return 文件流
+     * @return 统一响应
+     */
+    @PostMapping("/cancel/{taskId}")
+    public ApiResponse<ExportResponse> cancelExport(@PathVariable String taskId) {
+        try {
+            if (!StringUtils.hasText(taskId)) {
+                return ApiResponse.error("任务ID不能为空");
+            }
+            
+            ExportResponse response = excelExportService.cancelExport(taskId);
+            return ApiResponse.success(response);
+            
+        } catch (Exception e) {
+            log.error("取消导出任务失败, taskId: {}", taskId, e);
+            return ApiResponse.error("取消导出任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 订阅导出任务进度（Server-Sent Events）
+     * 连接建立后先推送一次当前状态，之后推送progress（进度）和status（状态变更）事件，任务结束后服务端关闭连接
+     *
+     * @param taskId 任务ID
+     * @return SSE连接
+     */
+    @GetMapping(value = "/progress/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeProgress(@PathVariable String taskId) {
+        try {
+            if (!StringUtils.hasText(taskId)) {
+                throw new RuntimeException("任务ID不能为空");
+            }
+            
+            return exportEventHub.subscribe(taskId, () -> excelExportService.getExportStatus(taskId));
+            
+        } catch (Exception e) {
+            log.error("订阅导出任务进度失败, taskId: {}", taskId, e);
+            throw new RuntimeException("订阅任务进度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 下载导出文件，支持Range断点续传
+     *
+     * @param taskId 任务ID
+     * @param request 请求
+     * @param response 响应
      */
     @GetMapping("/download/{taskId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String taskId) {
+    public void downloadFile(@PathVariable String taskId, HttpServletRequest request,
+                             HttpServletResponse response) {
         try {
             if (!StringUtils.hasText(taskId)) {
                 throw new RuntimeException("任务ID不能为空");
             }
             
-            return fileDownloadService.downloadFile(taskId);
+            fileDownloadService.downloadFile(taskId, request, response);
             
+        } catch (ClientAbortException e) {
+            // 客户端中断下载，可带Range从已收到的位置继续
+            log.info("下载中断, taskId: {}, 原因: {}", taskId, e.getMessage());
         } catch (Exception e) {
+            // 读取文件或远端存储失败：响应未提交时返回500；已提交时抛出异常由容器中断连接，客户端不会把残缺内容当作完整文件
             log.error("下载文件失败, taskId: {}", taskId, e);
             throw new RuntimeException("下载文件失败: " + e.getMessage());
         }
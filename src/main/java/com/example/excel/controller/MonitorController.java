@@ -1,6 +1,14 @@
 package com.example.excel.controller;
 
+import com.example.excel.service.ExcelExportService;
+import com.example.excel.service.ExportCountService;
+import com.example.excel.service.ExportEventHub;
+import com.example.excel.service.ExportJobScheduler;
+import com.example.excel.service.ExportResultCache;
+import com.example.excel.service.ExportStorageManager;
+import com.example.excel.service.ExportTaskCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -22,6 +30,27 @@ import java.util.Map;
 @RequestMapping("/api/monitor")
 public class MonitorController {
 
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ExportJobScheduler exportJobScheduler;
+
+    @Autowired
+    private ExportEventHub exportEventHub;
+
+    @Autowired
+    private ExportTaskCache exportTaskCache;
+
+    @Autowired
+    private ExportResultCache exportResultCache;
+
+    @Autowired
+    private ExportCountService exportCountService;
+
+    @Autowired
+    private ExportStorageManager exportStorageManager;
+
     /**
      * 获取内存使用情况
      *
@@ -170,6 +199,61 @@ public class MonitorController {
         return result;
     }
     
+    /**
+     * 获取导出流水线各阶段统计
+     * 包含最近导出任务中读取、行转换、写入阶段的工作耗时和等待耗时
+     *
+     * @return 流水线监控数据
+     */
+    @GetMapping("/pipeline")
+    public Map<String, Object> getPipelineInfo() {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            result.put("tasks", excelExportService.getPipelineStats());
+            result.put("success", true);
+            result.put("timestamp", System.currentTimeMillis());
+            
+        } catch (Exception e) {
+            log.error("获取流水线统计失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        
+        return result;
+    }
+
+    /**
+     * 获取导出任务调度器状态
+     *
+     * @return 调度器状态
+     */
+    @GetMapping("/scheduler")
+    public Map<String, Object> getSchedulerInfo() {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            result.put("scheduler", exportJobScheduler.getSchedulerStats());
+            // 本实例上的进度订阅连接数
+            result.put("progressSubscribers", exportEventHub.getSubscriberCount());
+            // 任务状态近端缓存命中情况
+            result.put("taskCache", exportTaskCache.getStats());
+            // 导出结果缓存占用与命中情况
+            result.put("resultCache", exportResultCache.getStats());
+            result.put("countCache", exportCountService.getStats());
+            result.put("storage", exportStorageManager.getStats());
+            result.put("success", true);
+            result.put("timestamp", System.currentTimeMillis());
+            
+        } catch (Exception e) {
+            log.error("获取调度器状态失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
     /**
      * 获取系统综合信息
      *
@@ -1,16 +1,46 @@
 package com.example.excel.controller;
 
 import com.example.excel.dto.ExportRequest;
+import com.example.excel.entity.ExportTask;
+import com.example.excel.entity.User;
 import com.example.excel.service.ExcelExportService;
+import com.example.excel.service.ExportCountService;
+import com.example.excel.service.ExportTaskCache;
+import com.example.excel.service.ExportTaskStateStore;
 import com.example.excel.service.TraditionalExportService;
 import com.example.excel.mapper.UserMapper;
 import com.example.excel.util.MemoryMonitor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 性能对比控制器
@@ -29,6 +59,18 @@ public class PerformanceController {
     
     @Autowired
     private UserMapper userMapper;
+    
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private ExportTaskStateStore taskStateStore;
+    
+    @Autowired
+    private ExportCountService exportCountService;
+    
+    @Autowired
+    private ExportTaskCache exportTaskCache;
 
     /**
      * 性能对比测试
@@ -46,8 +88,8 @@ public class PerformanceController {
             // 构建查询参数
             Map<String, Object> queryParams = buildQueryParams(request);
             
-            // 先统计数据量
-            Long totalCount = userMapper.countUserForExport(queryParams);
+            // 先统计数据量（相同条件的行数有缓存）
+            Long totalCount = exportCountService.count(queryParams);
             log.info("测试数据量: {} 条", totalCount);
             
             if (totalCount == 0) {
@@ -132,6 +174,365 @@ public class PerformanceController {
         return result;
     }
     
+    /**
+     * 分页方式性能对比测试
+     * 分别用offset分页和keyset分页连续读取若干批次，记录每一批的查询耗时，
+     * 用于观察offset分页耗时随页数增长、keyset分页耗时保持平稳的现象
+     *
+     * @param request 导出请求（仅使用查询条件）
+     * @param batches 读取批次数
+     * @param batchSize 每批数据量
+     * @return 对比结果
+     */
+    @PostMapping("/pagination-compare")
+    public Map<String, Object> paginationCompare(@RequestBody ExportRequest request,
+                                                 @RequestParam(defaultValue = "50") Integer batches,
+                                                 @RequestParam(defaultValue = "10000") Integer batchSize) {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            log.info("开始分页方式对比测试，批次数: {}, 每批: {} 条", batches, batchSize);
+            
+            Map<String, Object> queryParams = buildQueryParams(request);
+            
+            cleanupEnvironment();
+            Map<String, Object> offsetResult = measureOffsetPagination(queryParams, batches, batchSize);
+            
+            cleanupEnvironment();
+            Map<String, Object> keysetResult = measureKeysetPagination(queryParams, batches, batchSize);
+            
+            result.put("success", true);
+            result.put("batchSize", batchSize);
+            result.put("offset", offsetResult);
+            result.put("keyset", keysetResult);
+            
+            log.info("分页方式对比测试完成 - offset总耗时: {} ms, keyset总耗时: {} ms",
+                offsetResult.get("totalTime"), keysetResult.get("totalTime"));
+            
+        } catch (Exception e) {
+            log.error("分页方式对比测试失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 任务状态缓存对比测试
+     * 对比原有RedisTemplate整体JSON存取与按字段存储的哈希：进度更新写入、状态查询读取的单次耗时和存储大小
+     *
+     * @param iterations 每种操作的执行次数
+     * @return 对比结果
+     */
+    @PostMapping("/task-state-compare")
+    public Map<String, Object> taskStateCompare(@RequestParam(defaultValue = "1000") Integer iterations) {
+        Map<String, Object> result = new HashMap<>();
+        String taskId = "bench" + System.nanoTime();
+        String legacyKey = "export:task:" + taskId;
+        
+        try {
+            log.info("开始任务状态缓存对比测试，次数: {}", iterations);
+            ExportTask task = buildBenchmarkTask(taskId);
+            
+            // 原有方式：每次进度更新整体序列化写入，每次查询整体反序列化
+            Map<String, Object> legacy = new HashMap<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                task.setProcessedCount((long) i);
+                redisTemplate.opsForValue().set(legacyKey, task, 5, TimeUnit.MINUTES);
+            }
+            legacy.put("progressWriteAvgMicros", (System.nanoTime() - start) / 1000.0 / iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                redisTemplate.opsForValue().get(legacyKey);
+            }
+            legacy.put("statusReadAvgMicros", (System.nanoTime() - start) / 1000.0 / iterations);
+            @SuppressWarnings("unchecked")
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            byte[] legacyPayload = valueSerializer.serialize(task);
+            legacy.put("payloadBytes", legacyPayload != null ? legacyPayload.length : 0);
+            
+            // 哈希方式：进度更新只写两个字段，查询只读取响应需要的字段
+            Map<String, Object> hash = new HashMap<>();
+            taskStateStore.save(task);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                taskStateStore.updateProgress(taskId, i, i * 100.0 / iterations);
+            }
+            hash.put("progressWriteAvgMicros", (System.nanoTime() - start) / 1000.0 / iterations);
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                taskStateStore.load(taskId);
+            }
+            hash.put("statusReadAvgMicros", (System.nanoTime() - start) / 1000.0 / iterations);
+            int hashPayload = 0;
+            for (Map.Entry<String, String> field : ExportTaskStateStore.encode(task).entrySet()) {
+                hashPayload += field.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + field.getValue().getBytes(StandardCharsets.UTF_8).length;
+            }
+            hash.put("payloadBytes", hashPayload);
+            
+            result.put("success", true);
+            result.put("iterations", iterations);
+            result.put("redisTemplateJson", legacy);
+            result.put("fieldHash", hash);
+            
+            log.info("任务状态缓存对比测试完成 - JSON: {}, 哈希: {}", legacy, hash);
+            
+        } catch (Exception e) {
+            log.error("任务状态缓存对比测试失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        } finally {
+            redisTemplate.delete(legacyKey);
+            taskStateStore.delete(taskId);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 文件下载方式对比测试
+     * 通过本机回环连接发送已完成任务的导出文件，对比下载接口实际使用的两条路径：
+     * 容器不支持sendfile或区间较小时，经响应输出流写出（FileChannel.transferTo到包装OutputStream的通道，实际为逐块复制）；
+     * 容器接受sendfile属性时，由容器把文件通道transferTo到套接字（sendfile，由内核复制）。
+     * 原有的流复制（与ResourceHttpMessageConverter相同）作为基准，记录吞吐量和发送线程每GB消耗的CPU时间
+     *
+     * @param taskId 已成功的导出任务ID
+     * @param rounds 每种方式的执行轮数
+     * @param request 请求，用于判断当前容器是否支持sendfile
+     * @return 对比结果
+     */
+    @PostMapping("/download-compare")
+    public Map<String, Object> downloadCompare(@RequestParam String taskId,
+                                               @RequestParam(defaultValue = "3") Integer rounds,
+                                               HttpServletRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            ExportTask task = exportTaskCache.get(taskId);
+            if (task == null || !"SUCCESS".equals(task.getStatus()) || task.getFilePath() == null
+                    || !new File(task.getFilePath()).isFile()) {
+                result.put("success", false);
+                result.put("message", "任务不存在或导出文件不可用");
+                return result;
+            }
+            File file = new File(task.getFilePath());
+            log.info("开始文件下载方式对比测试，文件: {}, 大小: {} bytes, 轮数: {}", file, file.length(), rounds);
+            
+            // 各方式交替执行，减少页缓存预热等因素的影响
+            List<Map<String, Object>> streamRounds = new ArrayList<>();
+            List<Map<String, Object>> outputStreamRounds = new ArrayList<>();
+            List<Map<String, Object>> sendfileRounds = new ArrayList<>();
+            for (int i = 0; i < rounds; i++) {
+                streamRounds.add(measureDownload(file, DownloadMode.STREAM_COPY));
+                outputStreamRounds.add(measureDownload(file, DownloadMode.OUTPUT_STREAM));
+                sendfileRounds.add(measureDownload(file, DownloadMode.SENDFILE));
+            }
+            
+            result.put("success", true);
+            result.put("fileSize", file.length());
+            // 为false时下载接口始终走输出流路径
+            result.put("sendfileSupported", Boolean.TRUE.equals(
+                request.getAttribute("org.apache.tomcat.sendfile.support")));
+            result.put("streamCopy", summarizeDownloadRounds(streamRounds));
+            result.put("outputStream", summarizeDownloadRounds(outputStreamRounds));
+            result.put("sendfile", summarizeDownloadRounds(sendfileRounds));
+            
+            log.info("文件下载方式对比测试完成 - 流复制: {}, 输出流: {}, sendfile: {}",
+                result.get("streamCopy"), result.get("outputStream"), result.get("sendfile"));
+            
+        } catch (Exception e) {
+            log.error("文件下载方式对比测试失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 下载测试的发送方式
+     */
+    private enum DownloadMode {
+        /**
+         * 流复制（基准）
+         */
+        STREAM_COPY,
+        /**
+         * 经响应输出流写出，与LocalExportStorage.read相同
+         */
+        OUTPUT_STREAM,
+        /**
+         * 文件通道直接transferTo到套接字，与容器处理sendfile属性相同
+         */
+        SENDFILE
+    }
+    
+    /**
+     * 通过回环连接发送一次文件，接收端读取后丢弃
+     */
+    private Map<String, Object> measureDownload(File file, DownloadMode mode) throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            CompletableFuture<Long> received = CompletableFuture.supplyAsync(() -> drain(server));
+            
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            long cpuStart = threadBean.getCurrentThreadCpuTime();
+            long start = System.nanoTime();
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                if (mode != DownloadMode.STREAM_COPY) {
+                    // 输出流路径下目标通道是包装OutputStream的通道，JDK无法使用sendfile
+                    WritableByteChannel target = mode == DownloadMode.SENDFILE
+                        ? client : Channels.newChannel(Channels.newOutputStream(client));
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        long position = 0L;
+                        long size = channel.size();
+                        while (position < size) {
+                            position += channel.transferTo(position, size - position, target);
+                        }
+                    }
+                } else {
+                    try (InputStream inputStream = new FileInputStream(file)) {
+                        StreamUtils.copy(inputStream, Channels.newOutputStream(client));
+                    }
+                }
+                client.shutdownOutput();
+                long cpuNanos = threadBean.getCurrentThreadCpuTime() - cpuStart;
+                long bytes = received.get(10, TimeUnit.MINUTES);
+                long elapsedNanos = System.nanoTime() - start;
+                
+                double gigabytes = (double) bytes / (1024 * 1024 * 1024);
+                Map<String, Object> round = new HashMap<>();
+                round.put("bytes", bytes);
+                round.put("timeMs", elapsedNanos / 1_000_000.0);
+                round.put("throughputMBps", bytes / 1024.0 / 1024.0 / (elapsedNanos / 1_000_000_000.0));
+                round.put("cpuMsPerGB", gigabytes > 0 ? cpuNanos / 1_000_000.0 / gigabytes : 0.0);
+                return round;
+            }
+        }
+    }
+    
+    /**
+     * 接收并丢弃回环连接上的数据
+     */
+    private long drain(ServerSocketChannel server) {
+        try (SocketChannel channel = server.accept()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            long total = 0L;
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        } catch (IOException e) {
+            throw new RuntimeException("接收测试数据失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 汇总多轮下载测试结果
+     */
+    private Map<String, Object> summarizeDownloadRounds(List<Map<String, Object>> rounds) {
+        double throughput = 0;
+        double cpu = 0;
+        for (Map<String, Object> round : rounds) {
+            throughput += (Double) round.get("throughputMBps");
+            cpu += (Double) round.get("cpuMsPerGB");
+        }
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("rounds", rounds);
+        summary.put("avgThroughputMBps", throughput / rounds.size());
+        summary.put("avgCpuMsPerGB", cpu / rounds.size());
+        return summary;
+    }
+    
+    /**
+     * 构造与真实任务字段一致的测试任务
+     */
+    private ExportTask buildBenchmarkTask(String taskId) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        ExportTask task = new ExportTask();
+        task.setId(1L);
+        task.setTaskId(taskId);
+        task.setTaskName("用户数据导出");
+        task.setExportType("user");
+        task.setStatus("PROCESSING");
+        task.setPriority(5);
+        task.setTotalCount(1000000L);
+        task.setProcessedCount(0L);
+        task.setProgress(0.0);
+        task.setQueryParams("{\"department\":\"技术部\"}");
+        task.setCreateBy("admin");
+        task.setStartTime(now);
+        task.setCreateTime(now);
+        task.setUpdateTime(now);
+        return task;
+    }
+    
+    /**
+     * 测量offset分页每批次耗时
+     */
+    private Map<String, Object> measureOffsetPagination(Map<String, Object> queryParams, int batches, int batchSize) {
+        List<Long> batchTimes = new ArrayList<>();
+        long offset = 0L;
+        
+        for (int i = 0; i < batches; i++) {
+            long start = System.nanoTime();
+            List<User> batchData = userMapper.selectUserListForExport(queryParams, offset, batchSize);
+            batchTimes.add((System.nanoTime() - start) / 1_000_000);
+            
+            if (batchData.size() < batchSize) {
+                break;
+            }
+            offset += batchSize;
+        }
+        
+        return summarizeBatchTimes(batchTimes);
+    }
+    
+    /**
+     * 测量keyset分页每批次耗时
+     */
+    private Map<String, Object> measureKeysetPagination(Map<String, Object> queryParams, int batches, int batchSize) {
+        List<Long> batchTimes = new ArrayList<>();
+        Long lastId = null;
+        
+        for (int i = 0; i < batches; i++) {
+            long start = System.nanoTime();
+            List<User> batchData = userMapper.selectUserListAfterId(queryParams, lastId, batchSize);
+            batchTimes.add((System.nanoTime() - start) / 1_000_000);
+            
+            if (batchData.size() < batchSize) {
+                break;
+            }
+            lastId = batchData.get(batchData.size() - 1).getId();
+        }
+        
+        return summarizeBatchTimes(batchTimes);
+    }
+    
+    /**
+     * 汇总每批次耗时：首批、末批、平均值及末批相对首批的增长倍数
+     */
+    private Map<String, Object> summarizeBatchTimes(List<Long> batchTimes) {
+        Map<String, Object> summary = new HashMap<>();
+        long total = batchTimes.stream().mapToLong(Long::longValue).sum();
+        long first = batchTimes.isEmpty() ? 0 : batchTimes.get(0);
+        long last = batchTimes.isEmpty() ? 0 : batchTimes.get(batchTimes.size() - 1);
+        
+        summary.put("batchTimes", batchTimes);
+        summary.put("batchCount", batchTimes.size());
+        summary.put("totalTime", total);
+        summary.put("firstBatchTime", first);
+        summary.put("lastBatchTime", last);
+        summary.put("avgBatchTime", batchTimes.isEmpty() ? 0 : (double) total / batchTimes.size());
+        summary.put("growthRatio", (double) last / Math.max(first, 1));
+        return summary;
+    }
+    
     /**
      * 测试优化导出方式
      */
@@ -151,6 +552,8 @@ public class PerformanceController {
             
             // 使用优化的导出服务（同步方式，便于测试）
             request.setAsync(false); // 设置为同步导出
+            // 每次都实际执行导出，不命中结果缓存、不跟随相同条件的任务
+            request.setBypassCache(true);
             com.example.excel.dto.ExportResponse exportResponse = excelExportService.startExport(request);
             String taskId = exportResponse.getTaskId();
             
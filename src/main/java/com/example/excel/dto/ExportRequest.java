@@ -31,6 +31,11 @@ public class ExportRequest {
      */
     private Boolean async = true;
 
+    /**
+     * 调度优先级（0-9，数值越大越先执行，默认5）
+     */
+    private Integer priority;
+
     /**
      * 创建人
      */
@@ -41,6 +46,26 @@ public class ExportRequest {
      */
     private String[] fields;
 
+    /**
+     * 导出模式：FULL 全量（默认），DELTA 只导出导出定义上次导出之后变更的数据
+     */
+    private String exportMode;
+
+    /**
+     * 导出定义标识，指定后按定义记录水位线（全量导出重置基准，增量导出从水位线继续）
+     */
+    private String definitionKey;
+
+    /**
+     * 增量导出时把变更合并到上一次的快照中，输出新的完整快照（仅CSV/TSV）
+     */
+    private Boolean mergeSnapshot;
+
+    /**
+     * 是否跳过结果缓存和合并执行，每次都重新导出（性能测试使用，默认false）
+     */
+    private Boolean bypassCache;
+
     /**
      * 文件名前缀
      */
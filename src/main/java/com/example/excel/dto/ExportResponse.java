@@ -30,11 +30,21 @@ public class ExportResponse {
      */
     private Double progress;
 
+    /**
+     * 排队位置（仅排队中的任务，1表示下一个执行）
+     */
+    private Integer queuePosition;
+
     /**
      * 总记录数
      */
     private Long totalCount;
 
+    /**
+     * 总记录数是否为估算值（精确计数完成前）
+     */
+    private Boolean totalEstimated;
+
     /**
      * 已处理记录数
      */
@@ -55,6 +65,11 @@ public class ExportResponse {
      */
     private Long fileSize;
 
+    /**
+     * 工作表数量
+     */
+    private Integer sheetCount;
+
     /**
      * 错误信息
      */
@@ -79,7 +94,8 @@ public class ExportResponse {
      * 是否完成
      */
     public boolean isCompleted() {
-        return "SUCCESS".equals(status) || "FAILED".equals(status);
+        return "SUCCESS".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status)
+            || "EXPIRED".equals(status);
     }
 
     /**
@@ -96,6 +112,27 @@ public class ExportResponse {
         return "FAILED".equals(status);
     }
 
+    /**
+     * 是否已取消
+     */
+    public boolean isCancelled() {
+        return "CANCELLED".equals(status);
+    }
+
+    /**
+     * 文件是否已过期清理
+     */
+    public boolean isExpired() {
+        return "EXPIRED".equals(status);
+    }
+
+    /**
+     * 是否排队中
+     */
+    public boolean isPending() {
+        return "PENDING".equals(status);
+    }
+
     /**
      * 是否处理中
      */
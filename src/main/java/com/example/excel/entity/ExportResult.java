@@ -0,0 +1,75 @@
+package com.example.excel.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 导出结果缓存实体类
+ * 记录已生成的导出文件，查询条件、导出字段、格式和数据版本都相同的请求直接复用
+ */
+@Data
+@TableName("export_result_cache")
+public class ExportResult {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 缓存键（查询条件、导出字段、格式和数据版本的SHA-256）
+     */
+    private String cacheKey;
+
+    /**
+     * 导出类型
+     */
+    private String exportType;
+
+    /**
+     * 文件路径
+     */
+    private String filePath;
+
+    /**
+     * 文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小(字节)
+     */
+    private Long fileSize;
+
+    /**
+     * 工作表数量
+     */
+    private Integer sheetCount;
+
+    /**
+     * 数据行数
+     */
+    private Long totalCount;
+
+    /**
+     * 生成该文件的任务ID
+     */
+    private String sourceTaskId;
+
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+
+    /**
+     * 最近访问时间
+     */
+    private LocalDateTime lastAccessTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
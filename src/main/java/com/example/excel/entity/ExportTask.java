@@ -34,7 +34,7 @@ public class ExportTask {
     private String exportType;
 
     /**
-     * 任务状态：PENDING(待处理), PROCESSING(处理中), SUCCESS(成功), FAILED(失败)
+     * 任务状态：PENDING(待处理), PROCESSING(处理中), SUCCESS(成功), FAILED(失败), CANCELLED(已取消), EXPIRED(文件已清理)
      */
     private String status;
 
@@ -68,6 +68,61 @@ public class ExportTask {
      */
     private Long fileSize;
 
+    /**
+     * 文件的强ETag（含引号），由文件的对象键和大小生成，与保存文件的存储无关
+     */
+    private String fileEtag;
+
+    /**
+     * 工作表数量（超过单表行数上限时自动拆分为多个工作表）
+     */
+    private Integer sheetCount;
+
+    /**
+     * 调度优先级，数值越大越先执行
+     */
+    private Integer priority;
+
+    /**
+     * 查询条件(JSON)，调度器按此执行排队中的任务
+     */
+    private String queryParams;
+
+    /**
+     * 检查点已导出记录数
+     */
+    private Long checkpointRows;
+
+    /**
+     * 导出检查点(JSON)，任务中断后从此处继续
+     */
+    private String checkpoint;
+
+    /**
+     * 总记录数是否为估算值
+     */
+    private Boolean totalEstimated;
+
+    /**
+     * 导出结果缓存键，任务成功后按此登记生成的文件
+     */
+    private String resultKey;
+
+    /**
+     * 跟随的主任务ID，相同请求合并执行时与主任务共享文件
+     */
+    private String followTaskId;
+
+    /**
+     * 执行租约令牌，认领时生成，执行实例的进度、检查点、状态更新都需带上该令牌
+     */
+    private String leaseToken;
+
+    /**
+     * 执行租约到期时间（数据库时间），到期未续租的任务放回队列
+     */
+    private LocalDateTime leaseExpireTime;
+
     /**
      * 错误信息
      */
@@ -88,6 +143,11 @@ public class ExportTask {
      */
     private LocalDateTime endTime;
 
+    /**
+     * 文件最近下载时间
+     */
+    private LocalDateTime lastAccessTime;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,65 @@
+package com.example.excel.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 增量导出水位线实体类
+ * 每个导出定义记录两条水位线：增量水位线供只取变更的消费方使用，快照水位线记录合并快照已包含到的时间
+ */
+@Data
+@TableName("export_watermark")
+public class ExportWatermark {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 导出定义标识
+     */
+    private String definitionKey;
+
+    /**
+     * 查询条件、导出字段和格式的SHA-256
+     */
+    private String signature;
+
+    /**
+     * 导出类型
+     */
+    private String exportType;
+
+    /**
+     * 增量水位线
+     */
+    private LocalDateTime highWaterMark;
+
+    /**
+     * 快照水位线
+     */
+    private LocalDateTime snapshotMark;
+
+    /**
+     * 最新快照文件路径（仅CSV/TSV）
+     */
+    private String snapshotPath;
+
+    /**
+     * 最近推进水位线的任务ID
+     */
+    private String lastTaskId;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
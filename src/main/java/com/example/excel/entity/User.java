@@ -1,10 +1,12 @@
 package com.example.excel.entity;
 
+import com.alibaba.excel.annotation.ExcelIgnore;
 import com.alibaba.excel.annotation.ExcelProperty;
 import com.alibaba.excel.annotation.write.style.ColumnWidth;
 import com.alibaba.excel.annotation.write.style.ContentRowHeight;
 import com.alibaba.excel.annotation.write.style.HeadRowHeight;
 import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import lombok.Data;
@@ -74,4 +76,11 @@ public class User {
     @ExcelProperty(value = "更新时间", index = 12)
     @ColumnWidth(20)
     private LocalDateTime updateTime;
+
+    /**
+     * 变更类型（仅增量导出时查询）：UPSERT 新增或修改，DELETE 删除
+     */
+    @TableField(exist = false)
+    @ExcelIgnore
+    private String changeType;
 }
\ No newline at end of file
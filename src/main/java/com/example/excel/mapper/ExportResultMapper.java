@@ -0,0 +1,69 @@
+package com.example.excel.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.excel.entity.ExportResult;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 导出结果缓存数据访问层
+ */
+@Mapper
+public interface ExportResultMapper extends BaseMapper<ExportResult> {
+
+    /**
+     * 根据缓存键查询有效期内的导出结果
+     *
+     * @param cacheKey 缓存键
+     * @param ttlSeconds 有效期(秒)，按登记时间计算
+     * @return 导出结果
+     */
+    ExportResult selectByCacheKey(@Param("cacheKey") String cacheKey, @Param("ttlSeconds") Integer ttlSeconds);
+
+    /**
+     * 记录一次命中
+     *
+     * @param cacheKey 缓存键
+     * @return 更新行数
+     */
+    int touch(@Param("cacheKey") String cacheKey);
+
+    /**
+     * 登记导出结果，缓存键已存在时覆盖
+     *
+     * @param result 导出结果
+     * @return 影响行数
+     */
+    int upsert(ExportResult result);
+
+    /**
+     * 统计缓存文件占用的总字节数
+     *
+     * @return 总字节数
+     */
+    long sumFileSize();
+
+    /**
+     * 统计缓存条目数
+     *
+     * @return 条目数
+     */
+    int countEntries();
+
+    /**
+     * 删除缓存条目（仅当条目仍指向该文件时删除，避免误删被重新登记的条目）
+     *
+     * @param cacheKey 缓存键
+     * @param filePath 文件路径
+     * @return 删除行数
+     */
+    int deleteEntry(@Param("cacheKey") String cacheKey, @Param("filePath") String filePath);
+
+    /**
+     * 删除指向指定文件的缓存条目
+     *
+     * @param filePath 文件路径
+     * @return 删除行数
+     */
+    int deleteByFilePath(@Param("filePath") String filePath);
+}
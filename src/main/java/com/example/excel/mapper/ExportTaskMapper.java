@@ -5,7 +5,9 @@ import com.example.excel.entity.ExportTask;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 导出任务数据访问层
@@ -22,42 +24,86 @@ public interface ExportTaskMapper extends BaseMapper<ExportTask> {
     ExportTask selectByTaskId(@Param("taskId") String taskId);
 
     /**
-     * 更新任务进度
+     * 更新任务进度（仅本实例持有租约的处理中任务）
      *
      * @param taskId 任务ID
+     * @param leaseToken 租约令牌
      * @param processedCount 已处理数量
      * @param progress 进度百分比
-     * @return 更新行数
+     * @return 更新行数，0表示任务已被取消或已被回收
      */
     int updateProgress(@Param("taskId") String taskId,
+                       @Param("leaseToken") String leaseToken,
                        @Param("processedCount") Long processedCount,
                        @Param("progress") Double progress);
 
     /**
-     * 更新任务状态
+     * 取消排队中或处理中的任务
      *
      * @param taskId 任务ID
+     * @return 更新行数，0表示任务不存在或已结束
+     */
+    int cancelTask(@Param("taskId") String taskId);
+
+    /**
+     * 更新执行中任务的状态（仅本实例持有租约的处理中任务），离开处理中时放弃租约
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
      * @param status 状态
      * @param errorMessage 错误信息（可选）
-     * @return 更新行数
+     * @return 更新行数，0表示任务已被取消或已被回收
      */
     int updateStatus(@Param("taskId") String taskId,
+                     @Param("leaseToken") String leaseToken,
                      @Param("status") String status,
                      @Param("errorMessage") String errorMessage);
 
     /**
-     * 更新文件信息
+     * 保存导出检查点（仅本实例持有租约的处理中任务）
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
+     * @param checkpointRows 检查点已导出记录数
+     * @param checkpoint 检查点(JSON)
+     * @return 更新行数，0表示任务已被取消或已被回收
+     */
+    int updateCheckpoint(@Param("taskId") String taskId,
+                         @Param("leaseToken") String leaseToken,
+                         @Param("checkpointRows") Long checkpointRows,
+                         @Param("checkpoint") String checkpoint);
+
+    /**
+     * 回填精确的总记录数
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
+     * @param totalCount 总记录数
+     * @return 更新行数
+     */
+    int updateTotalCount(@Param("taskId") String taskId,
+                         @Param("leaseToken") String leaseToken,
+                         @Param("totalCount") Long totalCount);
+
+    /**
+     * 更新文件信息（仅本实例持有租约的处理中任务）
      *
      * @param taskId 任务ID
+     * @param leaseToken 租约令牌
      * @param filePath 文件路径
      * @param fileName 文件名
      * @param fileSize 文件大小
-     * @return 更新行数
+     * @param fileEtag 文件的强ETag
+     * @param sheetCount 工作表数量
+     * @return 更新行数，0表示任务已被取消或已被回收
      */
     int updateFileInfo(@Param("taskId") String taskId,
+                       @Param("leaseToken") String leaseToken,
                        @Param("filePath") String filePath,
                        @Param("fileName") String fileName,
-                       @Param("fileSize") Long fileSize);
+                       @Param("fileSize") Long fileSize,
+                       @Param("fileEtag") String fileEtag,
+                       @Param("sheetCount") Integer sheetCount);
 
     /**
      * 查询正在处理的任务数量
@@ -66,6 +112,174 @@ public interface ExportTaskMapper extends BaseMapper<ExportTask> {
      */
     int countProcessingTasks();
 
+    /**
+     * 查询排队中的任务数量
+     *
+     * @return 排队中的任务数量
+     */
+    int countPendingTasks();
+
+    /**
+     * 按优先级查询待执行的任务
+     *
+     * @param limit 限制数量
+     * @return 任务列表
+     */
+    List<ExportTask> selectPendingTasks(@Param("limit") Integer limit);
+
+    /**
+     * 统计排在指定任务之前的排队任务数
+     *
+     * @param priority 任务优先级
+     * @param createTime 任务创建时间
+     * @param id 任务主键
+     * @return 排在前面的任务数
+     */
+    int countTasksAhead(@Param("priority") Integer priority,
+                        @Param("createTime") LocalDateTime createTime,
+                        @Param("id") Long id);
+
+    /**
+     * 认领待执行任务（PENDING -> PROCESSING），同时写入执行租约
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
+     * @param leaseSeconds 租约时长(秒)
+     * @return 更新行数，0表示任务已被其他实例认领
+     */
+    int claimTask(@Param("taskId") String taskId,
+                  @Param("leaseToken") String leaseToken,
+                  @Param("leaseSeconds") Integer leaseSeconds);
+
+    /**
+     * 延长本实例持有的执行租约
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
+     * @param leaseSeconds 租约时长(秒)
+     * @return 更新行数，0表示任务已被取消或已被回收
+     */
+    int renewLease(@Param("taskId") String taskId,
+                   @Param("leaseToken") String leaseToken,
+                   @Param("leaseSeconds") Integer leaseSeconds);
+
+    /**
+     * 将租约已过期的处理中任务放回队列（没有租约的任务按超时未更新判断）
+     *
+     * @param staleMinutes 没有租约的任务超时分钟数
+     * @return 更新行数
+     */
+    int requeueStaleTasks(@Param("staleMinutes") Integer staleMinutes);
+
+    /**
+     * 将执行中断的处理中任务放回队列，保留检查点
+     *
+     * @param taskId 任务ID
+     * @param leaseToken 租约令牌
+     * @return 更新行数
+     */
+    int requeueTask(@Param("taskId") String taskId,
+                    @Param("leaseToken") String leaseToken);
+
+    /**
+     * 同步跟随任务的进度
+     *
+     * @param leaderTaskId 主任务ID
+     * @param processedCount 已处理数量
+     * @param progress 进度百分比
+     * @return 更新行数
+     */
+    int updateFollowerProgress(@Param("leaderTaskId") String leaderTaskId,
+                               @Param("processedCount") Long processedCount,
+                               @Param("progress") Double progress);
+
+    /**
+     * 主任务结束后同步结束跟随任务，主任务未结束时不更新
+     *
+     * @param leaderTaskId 主任务ID
+     * @return 更新行数
+     */
+    int completeFollowers(@Param("leaderTaskId") String leaderTaskId);
+
+    /**
+     * 主任务被取消时把跟随任务提升为主任务：不再跟随、以主任务的优先级重新排队
+     *
+     * @param leaderTaskId 原主任务ID
+     * @param followerTaskId 跟随任务ID
+     * @return 更新行数，跟随任务已结束时为0
+     */
+    int promoteFollower(@Param("leaderTaskId") String leaderTaskId,
+                        @Param("followerTaskId") String followerTaskId);
+
+    /**
+     * 原主任务未结束的跟随任务改为跟随新的主任务
+     *
+     * @param leaderTaskId 原主任务ID
+     * @param newLeaderTaskId 新的主任务ID
+     * @return 更新行数
+     */
+    int reassignFollowers(@Param("leaderTaskId") String leaderTaskId,
+                          @Param("newLeaderTaskId") String newLeaderTaskId);
+
+    /**
+     * 查询主任务的跟随任务
+     *
+     * @param leaderTaskId 主任务ID
+     * @return 跟随任务列表
+     */
+    List<ExportTask> selectFollowers(@Param("leaderTaskId") String leaderTaskId);
+
+    /**
+     * 记录文件下载时间
+     *
+     * @param taskId 任务ID
+     * @return 更新行数
+     */
+    int touchLastAccess(@Param("taskId") String taskId);
+
+    /**
+     * 按最近使用时间从旧到新查询已完成任务的文件（不含增量导出的当前快照）
+     *
+     * @param usedBefore 只查询最近使用时间早于该时间的文件，为null时不限
+     * @param offset 跳过的数量
+     * @param limit 限制数量
+     * @return filePath、lastUsed
+     */
+    List<Map<String, Object>> selectFilesByLastUse(@Param("usedBefore") LocalDateTime usedBefore,
+                                                   @Param("offset") Integer offset,
+                                                   @Param("limit") Integer limit);
+
+    /**
+     * 查询仍在使用的文件路径
+     *
+     * @return 文件路径
+     */
+    List<String> selectRetainedFilePaths();
+
+    /**
+     * 把引用指定文件的已成功任务标记为已过期
+     *
+     * @param filePath 文件路径
+     * @return 更新行数
+     */
+    int expireByFilePath(@Param("filePath") String filePath);
+
+    /**
+     * 把失败任务标记为已过期
+     *
+     * @param taskId 任务ID
+     * @return 更新行数
+     */
+    int expireFailedTask(@Param("taskId") String taskId);
+
+    /**
+     * 查询引用指定文件的任务
+     *
+     * @param filePath 文件路径
+     * @return 任务列表
+     */
+    List<ExportTask> selectByFilePath(@Param("filePath") String filePath);
+
     /**
      * 查询用户的导出任务列表
      *
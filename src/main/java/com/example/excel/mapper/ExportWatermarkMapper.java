@@ -0,0 +1,69 @@
+package com.example.excel.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.excel.entity.ExportWatermark;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * 增量导出水位线数据访问层
+ */
+@Mapper
+public interface ExportWatermarkMapper extends BaseMapper<ExportWatermark> {
+
+    /**
+     * 根据导出定义查询水位线
+     *
+     * @param definitionKey 导出定义标识
+     * @return 水位线
+     */
+    ExportWatermark selectByDefinitionKey(@Param("definitionKey") String definitionKey);
+
+    /**
+     * 查询数据库当前时间往前推指定秒数，作为本次导出的截止时间
+     *
+     * @param lagSeconds 回退秒数
+     * @return 截止时间
+     */
+    LocalDateTime selectCutoff(@Param("lagSeconds") Integer lagSeconds);
+
+    /**
+     * 全量导出完成后重置基准（水位线只前进不后退）
+     *
+     * @param watermark 水位线
+     * @return 影响行数
+     */
+    int upsertBaseline(ExportWatermark watermark);
+
+    /**
+     * 推进增量水位线，仅当水位线仍为本次导出的起点时更新
+     *
+     * @param definitionKey 导出定义标识
+     * @param expectedMark 本次导出的起点
+     * @param newMark 本次导出的截止时间
+     * @param taskId 任务ID
+     * @return 更新行数，为0说明已被其他任务推进
+     */
+    int advanceHighWaterMark(@Param("definitionKey") String definitionKey,
+                             @Param("expectedMark") LocalDateTime expectedMark,
+                             @Param("newMark") LocalDateTime newMark,
+                             @Param("taskId") String taskId);
+
+    /**
+     * 推进快照水位线并替换快照文件，仅当快照水位线仍为本次合并的起点时更新
+     *
+     * @param definitionKey 导出定义标识
+     * @param expectedMark 本次合并的起点
+     * @param newMark 本次合并的截止时间
+     * @param snapshotPath 新快照文件路径
+     * @param taskId 任务ID
+     * @return 更新行数，为0说明已被其他任务推进
+     */
+    int advanceSnapshot(@Param("definitionKey") String definitionKey,
+                        @Param("expectedMark") LocalDateTime expectedMark,
+                        @Param("newMark") LocalDateTime newMark,
+                        @Param("snapshotPath") String snapshotPath,
+                        @Param("taskId") String taskId);
+}
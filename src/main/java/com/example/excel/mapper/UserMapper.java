@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.example.excel.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,29 @@ public interface UserMapper extends BaseMapper<User> {
      */
     Long countUserForExport(@Param("params") Map<String, Object> params);
 
+    /**
+     * 查询用户表的数据版本（最大主键和最大更新时间）
+     *
+     * @return maxId、maxUpdateTime
+     */
+    Map<String, Object> selectTableVersion();
+
+    /**
+     * 获取优化器对导出查询的执行计划（行数估算）
+     *
+     * @param params 查询条件
+     * @return 执行计划
+     */
+    List<Map<String, Object>> explainUserForExport(@Param("params") Map<String, Object> params);
+
+    /**
+     * 是否存在符合条件的用户
+     *
+     * @param params 查询条件
+     * @return 存在时返回1，否则返回null
+     */
+    Integer existsUserForExport(@Param("params") Map<String, Object> params);
+
     /**
      * 流式查询用户数据（用于大数据量导出）
      * 使用游标方式，逐条读取数据，避免内存溢出
@@ -46,4 +70,47 @@ public interface UserMapper extends BaseMapper<User> {
     List<User> selectUserListForExport(@Param("params") Map<String, Object> params,
                                        @Param("offset") Long offset,
                                        @Param("limit") Integer limit);
+
+    /**
+     * 基于主键的游标分页查询（Keyset分页）
+     * 通过 id > lastId 定位起点，避免深分页时扫描并丢弃前面的数据
+     *
+     * @param params 查询条件
+     * @param lastId 上一批次最后一条记录的ID（首批传null）
+     * @param limit 限制数量
+     * @return 用户列表
+     */
+    List<User> selectUserListAfterId(@Param("params") Map<String, Object> params,
+                                     @Param("lastId") Long lastId,
+                                     @Param("limit") Integer limit);
+
+    /**
+     * 服务端流式查询用户数据
+     * 只发送一次查询，驱动按行推送结果，由ResultHandler逐条处理，内存中不保留完整结果集
+     *
+     * @param params 查询条件
+     * @param handler 结果处理器
+     */
+    void streamUserForExport(@Param("params") Map<String, Object> params,
+                             ResultHandler<User> handler);
+
+    /**
+     * 查询符合条件数据的主键范围
+     *
+     * @param params 查询条件
+     * @return 包含minId、maxId的结果（无数据时为null）
+     */
+    Map<String, Object> selectIdRangeForExport(@Param("params") Map<String, Object> params);
+
+    /**
+     * 按主键区间查询用户数据（用于分片并行导出）
+     *
+     * @param params 查询条件
+     * @param startId 起始ID（包含）
+     * @param endId 结束ID（不包含）
+     * @return 用户列表
+     */
+    List<User> selectUserListInIdRange(@Param("params") Map<String, Object> params,
+                                       @Param("startId") Long startId,
+                                       @Param("endId") Long endId);
 }
\ No newline at end of file
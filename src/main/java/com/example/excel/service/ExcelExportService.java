@@ -1,31 +1,65 @@
 package com.example.excel.service;
 
-import com.alibaba.excel.EasyExcel;
-import com.alibaba.excel.ExcelWriter;
-import com.alibaba.excel.write.metadata.WriteSheet;
 import com.example.excel.dto.ExportRequest;
 import com.example.excel.dto.ExportResponse;
+import com.example.excel.entity.ExportResult;
 import com.example.excel.entity.ExportTask;
 import com.example.excel.entity.User;
 import com.example.excel.mapper.ExportTaskMapper;
 import com.example.excel.mapper.UserMapper;
+import com.example.excel.storage.StorageOutputStream;
 import com.example.excel.util.MemoryMonitor;
+import com.example.excel.util.UserRowConverter;
+import com.example.excel.writer.DelimitedExportWriter;
+import com.example.excel.writer.EasyExcelExportWriter;
+import com.example.excel.writer.ExcelColumnMeta;
+import com.example.excel.writer.ExportFormat;
+import com.example.excel.writer.ExportWriter;
+import com.example.excel.writer.OoxmlExportWriter;
+import com.example.excel.writer.OoxmlSheetPartWriter;
+import com.example.excel.writer.SnapshotMergeWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Excel导出服务
@@ -42,22 +76,97 @@ public class ExcelExportService {
     private ExportTaskMapper exportTaskMapper;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private ExportTaskCache taskCache;
+
+    @Autowired
+    private ExportDataReader exportDataReader;
+
+    @Autowired
+    private ShardedZipExporter shardedZipExporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ExportSemaphore exportSemaphore;
+
+    @Autowired
+    private ExportTaskLeases taskLeases;
+
+    @Autowired
+    private ExportEventHub exportEventHub;
+
+    @Autowired
+    private ExportProgressReporter progressReporter;
+
+    @Autowired
+    private ExportCancellation exportCancellation;
+
+    @Autowired
+    private ExportResultCache resultCache;
+
+    @Autowired
+    private ExportSingleFlight singleFlight;
+
+    @Autowired
+    private ExportDeltaService deltaService;
+
+    @Autowired
+    private ExportCountService countService;
+
+    @Autowired
+    private ExportStorageManager storageManager;
 
     @Value("${export.batch-size:10000}")
     private Integer batchSize;
 
-    @Value("${export.temp-path:/tmp/excel/}")
-    private String tempPath;
+    @Value("${export.scheduler.max-pending-tasks:100}")
+    private Integer maxPendingTasks;
+
+    @Value("${export.stream.max-rows:50000}")
+    private Long streamMaxRows;
+
+    @Value("${export.max-rows-per-sheet:1000000}")
+    private Long maxRowsPerSheet;
+
+    @Value("${export.pipeline.enabled:true}")
+    private Boolean pipelineEnabled;
+
+    @Value("${export.pipeline.max-in-flight-batches:4}")
+    private Integer maxInFlightBatches;
+
+    @Value("${export.pipeline.stop-timeout:30000}")
+    private Long pipelineStopTimeout;
 
-    @Value("${export.timeout:30}")
-    private Integer timeoutMinutes;
+    @Autowired
+    @Qualifier("exportStageExecutor")
+    private ThreadPoolTaskExecutor exportStageExecutor;
+
+    @Value("${export.checkpoint.interval-rows:100000}")
+    private Long checkpointIntervalRows;
+
+    private static final int PIPELINE_STATS_LIMIT = 50;
+    private static final int DEFAULT_PRIORITY = 5;
+
+    /**
+     * 用户导出列定义，启动时解析一次
+     */
+    private static final List<ExcelColumnMeta> USER_COLUMNS = ExcelColumnMeta.fromClass(User.class);
 
-    @Value("${export.max-concurrent-tasks:5}")
-    private Integer maxConcurrentTasks;
+    /**
+     * 最近导出任务的流水线阶段统计
+     */
+    private final Map<String, Map<String, Object>> pipelineStats = new LinkedHashMap<>();
+
+    /**
+     * 以估算总数开始执行的任务，后台精确计数完成后记录精确总数（未完成时为-1），进度按精确总数计算
+     */
+    private final Map<String, Long> exactTotals = new ConcurrentHashMap<>();
 
-    private static final String TASK_CACHE_PREFIX = "export:task:";
-    private static final String PROCESSING_COUNT_KEY = "export:processing:count";
+    /**
+     * 应用正在停止，执行中的导出在下一批数据处写出检查点后中断并放回队列
+     */
+    private volatile boolean shuttingDown;
 
     /**
      * 启动导出任务
@@ -66,42 +175,212 @@ public class ExcelExportService {
      * @return 导出响应
      */
     public ExportResponse startExport(ExportRequest request) {
-        // 检查并发任务数限制
-        int processingCount = exportTaskMapper.countProcessingTasks();
-        if (processingCount >= maxConcurrentTasks) {
-            throw new RuntimeException("当前导出任务过多，请稍后再试");
-        }
-
         // 生成任务ID
         String taskId = UUID.randomUUID().toString().replace("-", "");
         
-        // 构建查询参数
+        // 构建查询参数，按导出定义执行时确定本次导出的时间窗口
         Map<String, Object> queryParams = buildQueryParams(request);
+        ExportFormat format = ExportFormat.fromExportType(request.getExportType());
+        deltaService.prepare(request, queryParams, format);
         
-        // 统计总数据量
-        Long totalCount = userMapper.countUserForExport(queryParams);
-        if (totalCount == 0) {
+        // 统计总数据量（缓存的精确值或优化器估算值），同时取得数据版本，作为结果缓存和合并执行的标识
+        ExportCountService.CountResult count = countService.resolve(queryParams);
+        Long totalCount = count.getTotal();
+        if (totalCount == 0 && !deltaService.isDelta(queryParams)) {
+            // 增量导出没有变更时仍然执行，生成空的增量文件（或与原快照相同的新快照）并推进水位线
             throw new RuntimeException("没有符合条件的数据可导出");
         }
+        String resultKey = resultCache.buildKey(queryParams, format, count.getVersion());
+        boolean bypassCache = Boolean.TRUE.equals(request.getBypassCache());
 
-        // 创建导出任务记录
-        ExportTask task = createExportTask(taskId, request, totalCount);
+        // 相同条件、相同数据版本的文件已生成过，新任务直接指向该文件
+        if (resultCache.isEnabled() && !bypassCache) {
+            ExportResult cached = resultCache.lookup(resultKey);
+            if (cached != null) {
+                return startCachedExport(taskId, request, queryParams, cached);
+            }
+        }
+
+        // 相同请求正在排队或执行时跟随该任务，不再重复导出
+        boolean leading = false;
+        if (singleFlight.isEnabled() && !bypassCache) {
+            ExportTask leader = null;
+            while (!leading && leader == null) {
+                String leaderTaskId = singleFlight.tryLead(resultKey, taskId);
+                if (leaderTaskId == null) {
+                    leading = true;
+                    continue;
+                }
+                if (leaderTaskId.isEmpty()) {
+                    // 登记恰好被删除，重新登记
+                    continue;
+                }
+                ExportTask current = exportTaskMapper.selectByTaskId(leaderTaskId);
+                if (current != null && ("PENDING".equals(current.getStatus())
+                        || "PROCESSING".equals(current.getStatus()))) {
+                    leader = current;
+                } else if (current == null && singleFlight.isCreating(resultKey)) {
+                    // 主任务已登记但尚未写入任务记录，稍后重试，不抢占登记
+                    singleFlight.awaitRetry();
+                } else {
+                    // 登记已失效（主任务已结束，或超过宽限期仍未创建），清除后重新登记
+                    singleFlight.release(resultKey, leaderTaskId);
+                }
+            }
+            if (leader != null) {
+                return startFollowerExport(taskId, request, queryParams, leader);
+            }
+        }
+
+        // 同步导出需要立即获得集群许可，许可已满时与异步任务一样进入队列排队
+        boolean runNow = !request.getAsync() && exportSemaphore.tryAcquire(taskId);
+        // 立即执行的任务创建时即持有执行租约
+        String leaseToken = runNow ? taskLeases.newToken() : null;
+        try {
+            // 磁盘空间不足时尽早拒绝，不等到写文件时失败
+            storageManager.checkCapacity();
+            if (!runNow && exportTaskMapper.countPendingTasks() >= maxPendingTasks) {
+                throw new RuntimeException("导出排队任务过多，请稍后再试");
+            }
+
+            // 创建导出任务记录，排队任务以PENDING状态入队，立即执行的任务直接标记为处理中，避免被调度器认领
+            ExportTask task = createExportTask(taskId, request, totalCount, queryParams, runNow);
+            task.setTotalEstimated(count.isEstimated());
+            task.setResultKey(resultKey);
+            task.setLeaseToken(leaseToken);
+            exportTaskMapper.insert(task);
+            if (runNow) {
+                taskLeases.hold(taskId, leaseToken);
+            }
+
+            // 缓存任务信息
+            cacheTaskInfo(taskId, task);
+
+            if (runNow) {
+                // 同步导出（小数据量）
+                executeExportSync(taskId, queryParams);
+            } else {
+                // 由导出任务调度器按优先级认领执行，请求线程直接返回
+                log.info("导出任务已进入队列: {}, 优先级: {}", taskId, task.getPriority());
+            }
+
+            return buildExportResponse(task);
+        } catch (RuntimeException e) {
+            if (leading) {
+                // 任务没有创建成功或同步执行失败，后续相同请求不再跟随本任务
+                singleFlight.release(resultKey, taskId);
+            }
+            throw e;
+        } finally {
+            if (runNow) {
+                taskLeases.release(taskId, leaseToken);
+                exportSemaphore.release(taskId);
+            }
+        }
+    }
+
+    /**
+     * 命中结果缓存：创建一个已成功的任务，指向缓存的文件，不占用导出许可
+     */
+    private ExportResponse startCachedExport(String taskId, ExportRequest request, Map<String, Object> queryParams,
+                                             ExportResult cached) {
+        ExportTask task = createExportTask(taskId, request, cached.getTotalCount(), queryParams, true);
+        task.setStatus("SUCCESS");
+        task.setResultKey(cached.getCacheKey());
+        task.setFilePath(cached.getFilePath());
+        // 下载文件名按本次任务名生成，文件内容与缓存一致
+        task.setFileName(generateFileName(task.getTaskName(), ExportFormat.fromExportType(task.getExportType())));
+        task.setFileSize(cached.getFileSize());
+        task.setFileEtag(ExportStorageManager.etagOf(cached.getFilePath(), cached.getFileSize()));
+        task.setSheetCount(cached.getSheetCount());
+        task.setProcessedCount(cached.getTotalCount());
+        task.setProgress(100.0);
+        task.setEndTime(task.getStartTime());
         exportTaskMapper.insert(task);
 
-        // 缓存任务信息
         cacheTaskInfo(taskId, task);
+        log.info("导出任务 {} 命中结果缓存，复用任务 {} 生成的文件: {}", taskId, cached.getSourceTaskId(),
+            cached.getFilePath());
+        return buildExportResponse(task);
+    }
 
-        // 异步执行导出
-        if (request.getAsync()) {
-            executeExportAsync(taskId, queryParams);
-        } else {
-            // 同步导出（小数据量）
-            executeExportSync(taskId, queryParams);
-        }
+    /**
+     * 相同请求正在执行：创建跟随任务，进度随主任务更新，主任务结束时同时结束并共享文件
+     */
+    private ExportResponse startFollowerExport(String taskId, ExportRequest request, Map<String, Object> queryParams,
+                                               ExportTask leader) {
+        ExportTask task = createExportTask(taskId, request, leader.getTotalCount(), queryParams, false);
+        task.setStatus(leader.getStatus());
+        task.setResultKey(leader.getResultKey());
+        task.setTotalEstimated(leader.getTotalEstimated());
+        task.setFollowTaskId(leader.getTaskId());
+        task.setFileName(generateFileName(task.getTaskName(), ExportFormat.fromExportType(task.getExportType())));
+        task.setProcessedCount(leader.getProcessedCount());
+        task.setProgress(leader.getProgress());
+        exportTaskMapper.insert(task);
+        singleFlight.addFollower(leader.getTaskId(), taskId);
 
+        // 主任务可能在跟随任务写入前已经结束，此时立即同步结束
+        if (exportTaskMapper.completeFollowers(leader.getTaskId()) > 0) {
+            task = exportTaskMapper.selectByTaskId(taskId);
+        }
+        cacheTaskInfo(taskId, task);
+        log.info("导出任务 {} 与正在执行的任务 {} 条件相同，合并执行", taskId, leader.getTaskId());
         return buildExportResponse(task);
     }
 
+    /**
+     * 直接以流的方式导出到HTTP响应
+     * 不落临时文件、不创建导出任务记录，工作簿边生成边以chunked方式写给客户端，仅允许小数据量导出
+     *
+     * @param request 导出请求
+     * @return 流式响应
+     */
+    public ResponseEntity<StreamingResponseBody> streamExport(ExportRequest request) {
+        Map<String, Object> queryParams = buildQueryParams(request);
+        
+        // 先限制数据量，超过上限的导出需要走异步任务
+        long totalCount = countService.count(queryParams);
+        if (totalCount > streamMaxRows) {
+            throw new RuntimeException(String.format(
+                "数据量 %d 条超过直接下载上限 %d 条，请使用异步导出", totalCount, streamMaxRows));
+        }
+        
+        String taskName = StringUtils.hasText(request.getTaskName()) ? request.getTaskName() : "用户数据导出";
+        // 直接下载只生成单个文件，分片ZIP按默认xlsx处理
+        ExportFormat format = ExportFormat.fromExportType(request.getExportType());
+        if (format == ExportFormat.ZIP) {
+            format = ExportFormat.XLSX;
+        }
+        ExportFormat streamFormat = format;
+        String fileName = generateFileName(taskName, format);
+        List<ExcelColumnMeta> columns = resolveColumns(queryParams);
+        Function<List<User>, List<List<Object>>> converter = UserRowConverter.forColumns(columns);
+        
+        StreamingResponseBody body = outputStream -> {
+            long startTime = System.currentTimeMillis();
+            try (ExportWriter exportWriter = createWriter(streamFormat, columns, outputStream, false)) {
+                exportDataReader.read(queryParams, 
+                    batchData -> exportWriter.write(converter.apply(batchData)));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("流式导出失败: " + e.getMessage(), e);
+            }
+            outputStream.flush();
+            log.info("流式导出完成，文件: {}, 数据量: {} 条，耗时: {} ms", 
+                fileName, totalCount, System.currentTimeMillis() - startTime);
+        };
+        
+        String encodedFileName = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFileName)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate")
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .body(body);
+    }
+
     /**
      * 查询导出任务状态
      *
@@ -109,33 +388,106 @@ public class ExcelExportService {
      * @return 导出响应
      */
     public ExportResponse getExportStatus(String taskId) {
-        // 先从缓存获取
-        ExportTask task = getTaskFromCache(taskId);
+        // 依次从本地缓存、Redis、数据库获取
+        ExportTask task = taskCache.get(taskId);
         if (task == null) {
-            // 从数据库获取
-            task = exportTaskMapper.selectByTaskId(taskId);
-            if (task == null) {
-                throw new RuntimeException("导出任务不存在");
-            }
-            // 更新缓存
-            cacheTaskInfo(taskId, task);
+            throw new RuntimeException("导出任务不存在");
         }
 
         return buildExportResponse(task);
     }
 
     /**
-     * 异步执行导出
+     * 取消导出任务
+     * 排队中的任务直接取消；处理中的任务由执行实例（可能是其他实例）在下一批数据处中断，
+     * 删除未完成的文件并释放导出许可。
+     * 取消合并执行的主任务时，只要还有跟随任务，导出就交给最早的跟随任务继续，不影响其他请求
      *
      * @param taskId 任务ID
-     * @param queryParams 查询参数
+     * @return 导出响应
+     */
+    public ExportResponse cancelExport(String taskId) {
+        if (exportTaskMapper.cancelTask(taskId) == 0) {
+            if (exportTaskMapper.selectByTaskId(taskId) == null) {
+                throw new RuntimeException("导出任务不存在");
+            }
+            throw new RuntimeException("任务已结束，无法取消");
+        }
+        
+        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+        cacheTaskInfo(taskId, task);
+        if (task.getFollowTaskId() != null) {
+            // 跟随任务单独取消，主任务继续为其他请求执行
+            singleFlight.removeFollower(task.getFollowTaskId(), taskId);
+        } else if (!handOverToFollower(task)) {
+            syncFollowers(task);
+        }
+        ExportResponse response = buildExportResponse(task);
+        
+        // 本实例直接标记，其他实例通过状态事件收到取消
+        exportCancellation.cancelLocal(taskId);
+        exportEventHub.publishStatus(response);
+        
+        log.info("导出任务已取消: {}", taskId);
+        return response;
+    }
+
+    /**
+     * 已取消的主任务仍有跟随任务时，把导出交给最早的跟随任务：该任务以主任务的优先级重新排队并从头导出，
+     * 其余跟随任务改为跟随它，合并执行的登记也指向它
+     *
+     * @param leader 已取消的主任务
+     * @return 是否已交接，没有未结束的跟随任务时返回false
+     */
+    private boolean handOverToFollower(ExportTask leader) {
+        List<ExportTask> candidates = new ArrayList<>();
+        for (ExportTask follower : exportTaskMapper.selectFollowers(leader.getTaskId())) {
+            if ("PENDING".equals(follower.getStatus()) || "PROCESSING".equals(follower.getStatus())) {
+                candidates.add(follower);
+            }
+        }
+        candidates.sort(Comparator.comparing(ExportTask::getId));
+        for (ExportTask candidate : candidates) {
+            // 跟随任务可能同时被取消，依次尝试下一个
+            if (exportTaskMapper.promoteFollower(leader.getTaskId(), candidate.getTaskId()) == 0) {
+                continue;
+            }
+            String newLeaderTaskId = candidate.getTaskId();
+            exportTaskMapper.reassignFollowers(leader.getTaskId(), newLeaderTaskId);
+            if (leader.getResultKey() != null) {
+                singleFlight.handOver(leader.getResultKey(), leader.getTaskId(), newLeaderTaskId);
+            }
+
+            ExportTask promoted = exportTaskMapper.selectByTaskId(newLeaderTaskId);
+            cacheTaskInfo(newLeaderTaskId, promoted);
+            exportEventHub.publishStatus(buildExportResponse(promoted));
+            for (ExportTask follower : exportTaskMapper.selectFollowers(newLeaderTaskId)) {
+                if ("PENDING".equals(follower.getStatus())) {
+                    singleFlight.addFollower(newLeaderTaskId, follower.getTaskId());
+                    cacheTaskInfo(follower.getTaskId(), follower);
+                    exportEventHub.publishStatus(buildExportResponse(follower));
+                }
+            }
+            log.info("合并执行的主任务 {} 已取消，导出由跟随任务 {} 接手", leader.getTaskId(), newLeaderTaskId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 执行调度器认领的排队任务
+     * 由导出任务调度器在导出线程池中调用，任务已被认领为处理中
+     *
+     * @param task 导出任务
      */
-    @Async
-    public void executeExportAsync(String taskId, Map<String, Object> queryParams) {
+    public void executeQueuedTask(ExportTask task) {
+        String taskId = task.getTaskId();
+        exportCancellation.register(taskId);
         try {
             log.info("开始异步导出任务: {}", taskId);
+            Map<String, Object> queryParams = parseQueryParams(task.getQueryParams());
             
-            // 更新任务状态为处理中
+            // 更新任务状态为处理中（认领时已更新数据库，这里同步刷新缓存）
             updateTaskStatus(taskId, "PROCESSING", null);
             
             // 执行导出
@@ -147,8 +499,48 @@ public class ExcelExportService {
             log.info("异步导出任务完成: {}", taskId);
             
         } catch (Exception e) {
+            if (exportCancellation.isStopped(taskId)) {
+                // 已取消或已被回收，任务状态已由取消方或回收方更新
+                progressReporter.discard(taskId);
+                log.info("导出任务 {} 已停止执行: {}", taskId, e.getMessage());
+                return;
+            }
+            if (shuttingDown) {
+                requeueInterruptedTask(taskId);
+                return;
+            }
             log.error("异步导出任务失败: {}", taskId, e);
             updateTaskStatus(taskId, "FAILED", e.getMessage());
+        } finally {
+            exportCancellation.unregister(taskId);
+        }
+    }
+
+    /**
+     * 应用停止时通知执行中的导出中断
+     * 导出线程池会等待任务结束，任务在下一批数据处中断，由{@link #executeQueuedTask}放回队列，
+     * 重启后的实例从检查点继续
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        shuttingDown = true;
+    }
+
+    /**
+     * 把因应用停止而中断的任务放回队列，保留检查点
+     */
+    private void requeueInterruptedTask(String taskId) {
+        try {
+            progressReporter.complete(taskId);
+            exportTaskMapper.requeueTask(taskId, taskLeases.tokenOf(taskId));
+            ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+            if (task != null) {
+                cacheTaskInfo(taskId, task);
+            }
+            log.warn("应用正在停止，导出任务 {} 已放回队列，重启后从检查点继续", taskId);
+        } catch (Exception e) {
+            // 放回失败时任务保持处理中，由超时回收放回队列
+            log.warn("导出任务 {} 放回队列失败: {}", taskId, e.getMessage());
         }
     }
 
@@ -159,6 +551,7 @@ public class ExcelExportService {
      * @param queryParams 查询参数
      */
     public void executeExportSync(String taskId, Map<String, Object> queryParams) {
+        exportCancellation.register(taskId);
         try {
             log.info("开始同步导出任务: {}", taskId);
             
@@ -174,9 +567,15 @@ public class ExcelExportService {
             log.info("同步导出任务完成: {}", taskId);
             
         } catch (Exception e) {
+            if (exportCancellation.isCancelled(taskId)) {
+                progressReporter.discard(taskId);
+                throw new RuntimeException("导出已取消");
+            }
             log.error("同步导出任务失败: {}", taskId, e);
             updateTaskStatus(taskId, "FAILED", e.getMessage());
             throw new RuntimeException("导出失败: " + e.getMessage());
+        } finally {
+            exportCancellation.unregister(taskId);
         }
     }
 
@@ -191,72 +590,111 @@ public class ExcelExportService {
         if (task == null) {
             throw new RuntimeException("任务不存在");
         }
+        if ("CANCELLED".equals(task.getStatus())) {
+            // 认领后、开始执行前被取消
+            exportCancellation.cancelLocal(taskId);
+            exportCancellation.checkStopped(taskId);
+        }
 
         // 创建内存监控器
         MemoryMonitor memoryMonitor = new MemoryMonitor(taskId, 50); // 每50ms监控一次
         memoryMonitor.startMonitoring();
         
         try {
-            // 创建临时目录
-            File tempDir = new File(tempPath);
-            if (!tempDir.exists()) {
-                tempDir.mkdirs();
+            // 有检查点时沿用上次的文件，否则按任务ID分配文件，下载文件名按任务名生成
+            ExportFormat format = ExportFormat.fromExportType(task.getExportType());
+            ExportCheckpoint checkpoint = parseCheckpoint(task.getCheckpoint());
+            if (checkpoint == null) {
+                checkpoint = new ExportCheckpoint();
+                checkpoint.setFileName(generateFileName(task.getTaskName(), format));
+                checkpoint.setFilePath(storageManager.allocate(taskId, format));
+                saveCheckpoint(taskId, checkpoint);
+            } else {
+                log.info("任务 {} 从检查点继续导出，检查点已导出 {} 条", taskId, checkpoint.getRows());
             }
-
-            // 生成文件名
-            String fileName = generateFileName(task.getTaskName());
-            String filePath = tempPath + fileName;
-        
-        // 使用EasyExcel进行分批写入
-        try (FileOutputStream outputStream = new FileOutputStream(filePath);
-             ExcelWriter excelWriter = EasyExcel.write(outputStream, User.class).build()) {
-            
-            WriteSheet writeSheet = EasyExcel.writerSheet("用户数据").build();
+            String fileName = checkpoint.getFileName();
+            String filePath = checkpoint.getFilePath();
             
+            List<ExcelColumnMeta> columns = resolveColumns(queryParams);
             Long totalCount = task.getTotalCount();
-            Long processedCount = 0L;
-            Long offset = 0L;
+            if (Boolean.TRUE.equals(task.getTotalEstimated())) {
+                // 以估算总数开始导出，精确总数在后台统计完成后回填
+                startExactCount(taskId, queryParams);
+            }
+            AtomicLong processedCount = new AtomicLong(0L);
+            int sheetCount;
             
-            // 分批处理数据
-            while (processedCount < totalCount) {
-                // 查询当前批次数据
-                List<User> batchData = userMapper.selectUserListForExport(
-                    queryParams, offset, batchSize);
-                
-                if (batchData.isEmpty()) {
-                    break;
+            try {
+                if (format == ExportFormat.ZIP) {
+                    // 按主键区间并行生成多个xlsx分卷并打包，进度回调来自多个分卷线程
+                    ExportCheckpoint zipCheckpoint = checkpoint;
+                    sheetCount = shardedZipExporter.export(taskId, task.getTaskName(), queryParams, columns,
+                        filePath, zipCheckpoint, () -> saveCheckpoint(taskId, zipCheckpoint),
+                        rows -> {
+                            synchronized (processedCount) {
+                                onRowsWritten(taskId, processedCount.addAndGet(rows), totalCount);
+                            }
+                        });
+                } else if (deltaService.isMerge(queryParams)) {
+                    // 合并快照依赖旧快照的读取位置，不记录检查点，重新执行时从头合并
+                    sheetCount = exportMergedSnapshot(taskId, format, columns, queryParams, filePath,
+                        processedCount, totalCount);
+                } else if (format == ExportFormat.CSV || format == ExportFormat.TSV) {
+                    sheetCount = exportDelimitedFile(taskId, format, columns, queryParams, checkpoint,
+                        processedCount, totalCount);
+                } else if (checkpoint.getParts() != null || (totalCount != null && totalCount > maxRowsPerSheet)) {
+                    // 超过一个工作表的xlsx按工作表分段生成，每个工作表完成后写出检查点
+                    sheetCount = exportSheetParts(taskId, columns, queryParams, checkpoint,
+                        processedCount, totalCount);
+                } else {
+                    // 单个工作表的xlsx为zip容器，中断后无法在原文件上续写，重新执行时从头生成
+                    sheetCount = exportSingleFile(taskId, format, columns, queryParams, filePath,
+                        processedCount, totalCount);
                 }
-                
-                // 写入Excel
-                excelWriter.write(batchData, writeSheet);
-                
-                // 更新进度
-                processedCount += batchData.size();
-                offset += batchSize;
-                
-                double progress = (double) processedCount / totalCount * 100;
-                updateTaskProgress(taskId, processedCount, progress);
-                
-                log.info("任务 {} 进度: {}/{} ({}%)", 
-                    taskId, processedCount, totalCount, String.format("%.2f", progress));
-                
-                // 智能内存管理和GC触发
-                if (processedCount % (batchSize * 20) == 0) {
-                    manageMemory(taskId, processedCount);
+            } catch (Exception e) {
+                boolean hasParts = checkpoint.getParts() != null;
+                if (exportCancellation.isCancelled(taskId)) {
+                    // 任务已取消，删除未完成的文件
+                    new File(filePath).delete();
+                    if (hasParts) {
+                        shardedZipExporter.discardParts(filePath);
+                    }
+                } else if (!shuttingDown && !exportCancellation.isStopped(taskId) && hasParts) {
+                    // 任务失败不再续写，删除保留的分段
+                    shardedZipExporter.discardParts(filePath);
                 }
+                throw e;
+            }
+            if (format != ExportFormat.XLSX && format != ExportFormat.XLSX_FAST) {
+                // 需要续写或随机写入的格式生成完成后再保存到远端存储，xlsx在写入时已同时上传
+                storageManager.publish(filePath);
             }
-        }
         
             // 获取文件信息
             File file = new File(filePath);
             long fileSize = file.length();
             
-            // 更新文件信息
-            exportTaskMapper.updateFileInfo(taskId, filePath, fileName, fileSize);
+            // 更新文件信息，租约已失效时不再登记结果
+            String leaseToken = taskLeases.tokenOf(taskId);
+            if (leaseToken == null
+                    || exportTaskMapper.updateFileInfo(taskId, leaseToken, filePath, fileName, fileSize,
+                        ExportStorageManager.etagOf(filePath, fileSize), sheetCount) == 0) {
+                taskLeases.onLeaseLost(taskId, leaseToken);
+                throw new IllegalStateException("导出任务已不由本实例执行");
+            }
+
+            if (deltaService.isDefinitionExport(queryParams)) {
+                // 按导出定义推进水位线；该文件可能作为后续合并的快照，不登记到结果缓存，避免被淘汰
+                deltaService.commit(task, queryParams, format, filePath);
+            } else {
+                // 登记到结果缓存，相同请求可直接复用
+                resultCache.register(task, filePath, fileSize, sheetCount);
+            }
             
-            log.info("导出完成，文件路径: {}, 文件大小: {} bytes", filePath, fileSize);
+            log.info("导出完成，文件路径: {}, 文件大小: {} bytes, 工作表数: {}", filePath, fileSize, sheetCount);
             
         } finally {
+            exactTotals.remove(taskId);
             // 停止内存监控并记录统计信息
             memoryMonitor.stopMonitoring();
             MemoryMonitor.MemoryStats memoryStats = memoryMonitor.getMemoryStats();
@@ -269,13 +707,425 @@ public class ExcelExportService {
         }
     }
 
+    /**
+     * 导出为单个xlsx文件
+     *
+     * @return 工作表数量
+     */
+    private int exportSingleFile(String taskId, ExportFormat format, List<ExcelColumnMeta> columns,
+                                 Map<String, Object> queryParams, String filePath,
+                                 AtomicLong processedCount, Long totalCount) throws Exception {
+        // 分批写入，超过单表行数上限时自动切换工作表；配置了远端存储时边写边分段上传
+        try (StorageOutputStream outputStream = storageManager.openOutput(filePath)) {
+            int sheetCount;
+            try (ExportWriter exportWriter = createWriter(format, columns, outputStream, false)) {
+                
+                // 写入阶段：写入Excel并更新进度
+                ExportPipeline.BatchWriter batchWriter = rows -> {
+                    exportWriter.write(rows);
+                    onRowsWritten(taskId, processedCount.addAndGet(rows.size()), totalCount);
+                };
+                
+                // 分批处理数据，具体的拉取方式（keyset/offset/stream/partition）由读取器决定
+                runExportStages(taskId, queryParams, UserRowConverter.forColumns(columns), batchWriter);
+                sheetCount = exportWriter.getSheetCount();
+            }
+            // 写入器关闭后文件才完整，未提交就关闭时丢弃文件并中止上传
+            outputStream.commit();
+            return sheetCount;
+        }
+    }
+
+    /**
+     * 按工作表分段导出xlsx，每个工作表完成后写出检查点
+     * 每个工作表单独编码为一个分段文件，保存在导出文件旁的分段目录中；任务中断后重新执行时复用已完成的分段，
+     * 只查询最后一个已完成分段之后的数据。全部完成后把分段组装成一个xlsx（直接复制压缩数据，不重新压缩），
+     * 配置了远端存储时组装的同时上传。工作表统一按{@link OoxmlSheetPartWriter}的格式编码，
+     * 按EasyExcel格式请求的大数据量导出也由此生成
+     *
+     * @return 工作表数量
+     */
+    private int exportSheetParts(String taskId, List<ExcelColumnMeta> columns, Map<String, Object> queryParams,
+                                 ExportCheckpoint checkpoint, AtomicLong processedCount, Long totalCount)
+            throws Exception {
+        String filePath = checkpoint.getFilePath();
+        File partDir = ShardedZipExporter.getPartDir(filePath);
+        partDir.mkdirs();
+
+        // 只复用从第一个开始连续的、文件仍在的已完成分段
+        List<ExportCheckpoint.Part> parts = new ArrayList<>();
+        if (checkpoint.getParts() != null) {
+            for (ExportCheckpoint.Part part : checkpoint.getParts()) {
+                if (!part.isFinished() || !new File(partDir, part.getPartNo() + ".xml").isFile()) {
+                    break;
+                }
+                parts.add(part);
+            }
+        }
+        checkpoint.setParts(parts);
+        checkpoint.setRows(parts.stream().mapToLong(ExportCheckpoint.Part::getRows).sum());
+        processedCount.set(checkpoint.getRows());
+        Map<String, Object> readParams = new HashMap<>(queryParams);
+        if (!parts.isEmpty()) {
+            readParams.put("resumeAfterId", parts.get(parts.size() - 1).getLastId());
+            log.info("任务 {} 复用已完成的工作表 {} 个（{} 条）", taskId, parts.size(), checkpoint.getRows());
+        }
+
+        // 工作表可能在一批数据中间切换，读取阶段按顺序记录每批数据的主键，写入阶段按相同顺序取出
+        Queue<long[]> batchIds = new ConcurrentLinkedQueue<>();
+        Function<List<User>, List<List<Object>>> rowConverter = UserRowConverter.forColumns(columns);
+        Function<List<User>, List<List<Object>>> converter = batch -> {
+            if (!batch.isEmpty()) {
+                batchIds.add(batch.stream().mapToLong(User::getId).toArray());
+            }
+            return rowConverter.apply(batch);
+        };
+
+        long rowsPerSheet = Math.max(1, Math.min(maxRowsPerSheet, EasyExcelExportWriter.XLSX_MAX_ROWS - 1));
+        OoxmlSheetPartWriter[] current = new OoxmlSheetPartWriter[1];
+        Long[] lastId = {null};
+        try {
+            ExportPipeline.BatchWriter batchWriter = rows -> {
+                if (rows.isEmpty()) {
+                    return;
+                }
+                long[] ids = batchIds.poll();
+                int offset = 0;
+                while (offset < rows.size()) {
+                    if (current[0] == null) {
+                        current[0] = new OoxmlSheetPartWriter(
+                            new File(partDir, (parts.size() + 1) + ".xml"), columns);
+                    }
+                    int count = (int) Math.min(rows.size() - offset, rowsPerSheet - current[0].getRows());
+                    current[0].write(rows.subList(offset, offset + count));
+                    offset += count;
+                    lastId[0] = ids[offset - 1];
+                    if (current[0].getRows() >= rowsPerSheet) {
+                        finishSheetPart(taskId, checkpoint, current[0], lastId[0]);
+                        current[0] = null;
+                    }
+                }
+                onRowsWritten(taskId, processedCount.addAndGet(rows.size()), totalCount);
+            };
+            runExportStages(taskId, readParams, converter, batchWriter);
+
+            if (current[0] != null || parts.isEmpty()) {
+                // 最后一个未写满的工作表；没有数据时生成一个只有表头的工作表
+                if (current[0] == null) {
+                    current[0] = new OoxmlSheetPartWriter(new File(partDir, "1.xml"), columns);
+                }
+                finishSheetPart(taskId, checkpoint, current[0], lastId[0]);
+                current[0] = null;
+            }
+        } finally {
+            if (current[0] != null) {
+                // 未完成的分段不记录到检查点，重新执行时覆盖
+                current[0].close();
+            }
+        }
+
+        List<OoxmlSheetPartWriter.SheetPart> sheetParts = new ArrayList<>(parts.size());
+        for (ExportCheckpoint.Part part : parts) {
+            sheetParts.add(new OoxmlSheetPartWriter.SheetPart(
+                new File(partDir, part.getPartNo() + ".xml"), part.getCrc(), part.getSize()));
+        }
+        try (StorageOutputStream outputStream = storageManager.openOutput(filePath)) {
+            OoxmlSheetPartWriter.assemble(outputStream, "用户数据", sheetParts);
+            outputStream.commit();
+        }
+        shardedZipExporter.discardParts(filePath);
+        return sheetParts.size();
+    }
+
+    /**
+     * 工作表分段已写满或数据已读完：关闭分段并写出检查点
+     */
+    private void finishSheetPart(String taskId, ExportCheckpoint checkpoint, OoxmlSheetPartWriter writer,
+                                 Long lastId) throws IOException {
+        writer.close();
+        ExportCheckpoint.Part part = new ExportCheckpoint.Part();
+        part.setPartNo(checkpoint.getParts().size() + 1);
+        part.setRows(writer.getRows());
+        part.setLastId(lastId);
+        part.setCrc(writer.getCrc());
+        part.setSize(writer.getSize());
+        part.setSheetCount(1);
+        part.setFinished(true);
+        checkpoint.getParts().add(part);
+        checkpoint.setRows(checkpoint.getRows() + part.getRows());
+        saveCheckpoint(taskId, checkpoint);
+    }
+
+    /**
+     * 把增量合并到上一次的快照中，输出新的完整快照（CSV/TSV）
+     *
+     * @return 工作表数量（文本格式为0）
+     */
+    private int exportMergedSnapshot(String taskId, ExportFormat format, List<ExcelColumnMeta> columns,
+                                     Map<String, Object> queryParams, String filePath,
+                                     AtomicLong processedCount, Long totalCount) throws Exception {
+        String snapshotPath = (String) queryParams.get(ExportDeltaService.PARAM_SNAPSHOT);
+        // 快照可能由其他节点生成，本地没有时先从远端存储下载
+        storageManager.ensureLocal(snapshotPath);
+        File snapshot = new File(snapshotPath);
+        char delimiter = format == ExportFormat.CSV ? ',' : '\t';
+        SnapshotMergeWriter mergeWriter;
+        try (FileOutputStream outputStream = new FileOutputStream(filePath)) {
+            // 表头从旧快照复制
+            mergeWriter = new SnapshotMergeWriter(snapshot, new DelimitedExportWriter(
+                outputStream.getChannel(), delimiter, columns, false, false), delimiter);
+            try (SnapshotMergeWriter writer = mergeWriter) {
+                ExportPipeline.BatchWriter batchWriter = rows -> {
+                    writer.write(rows);
+                    onRowsWritten(taskId, processedCount.addAndGet(rows.size()), totalCount);
+                };
+                runExportStages(taskId, queryParams, UserRowConverter.forColumns(columns), batchWriter);
+            }
+        }
+        log.info("任务 {} 快照合并完成，复制未变更 {} 行，新增或修改 {} 行，删除 {} 行", taskId,
+            mergeWriter.getCopiedRows(), mergeWriter.getUpsertedRows(), mergeWriter.getDeletedRows());
+        return 0;
+    }
+
+    /**
+     * 导出为CSV/TSV文件，定期写出检查点
+     * 检查点记录最后写出的主键和对应的文件偏移；从检查点继续时先把文件截断到该偏移，
+     * 再只查询主键大于检查点的数据追加到文件末尾
+     *
+     * @return 工作表数量（文本格式为0）
+     */
+    private int exportDelimitedFile(String taskId, ExportFormat format, List<ExcelColumnMeta> columns,
+                                    Map<String, Object> queryParams, ExportCheckpoint checkpoint,
+                                    AtomicLong processedCount, Long totalCount) throws Exception {
+        File file = new File(checkpoint.getFilePath());
+        boolean resume = checkpoint.getLastId() != null && checkpoint.getFileOffset() != null
+            && file.isFile() && file.length() >= checkpoint.getFileOffset();
+        Map<String, Object> readParams = new HashMap<>(queryParams);
+        long startOffset = 0L;
+        if (resume) {
+            readParams.put("resumeAfterId", checkpoint.getLastId());
+            startOffset = checkpoint.getFileOffset();
+            processedCount.set(checkpoint.getRows());
+        } else {
+            checkpoint.setLastId(null);
+            checkpoint.setRows(0L);
+            checkpoint.setFileOffset(null);
+        }
+
+        // 读取阶段按主键顺序投递批次，记录每批最后一条的主键，写入阶段按相同顺序取出
+        Queue<Long> batchLastIds = new ConcurrentLinkedQueue<>();
+        Function<List<User>, List<List<Object>>> rowConverter = UserRowConverter.forColumns(columns);
+        Function<List<User>, List<List<Object>>> converter = batch -> {
+            if (!batch.isEmpty()) {
+                batchLastIds.add(batch.get(batch.size() - 1).getId());
+            }
+            return rowConverter.apply(batch);
+        };
+
+        try (FileOutputStream outputStream = new FileOutputStream(file, resume)) {
+            FileChannel channel = outputStream.getChannel();
+            if (resume) {
+                // 丢弃检查点之后写出的不完整数据
+                channel.truncate(startOffset);
+            }
+            char delimiter = format == ExportFormat.CSV ? ',' : '\t';
+            long baseOffset = startOffset;
+            long[] checkpointRows = {processedCount.get()};
+
+            try (DelimitedExportWriter exportWriter = new DelimitedExportWriter(
+                    channel, delimiter, columns, false, !resume)) {
+                ExportPipeline.BatchWriter batchWriter = rows -> {
+                    if (rows.isEmpty()) {
+                        return;
+                    }
+                    exportWriter.write(rows);
+                    long processed = processedCount.addAndGet(rows.size());
+                    Long lastId = batchLastIds.poll();
+                    if (processed - checkpointRows[0] >= checkpointIntervalRows || shuttingDown) {
+                        checkpoint.setLastId(lastId);
+                        checkpoint.setRows(processed);
+                        checkpoint.setFileOffset(baseOffset + exportWriter.flush());
+                        saveCheckpoint(taskId, checkpoint);
+                        checkpointRows[0] = processed;
+                    }
+                    onRowsWritten(taskId, processed, totalCount);
+                };
+                runExportStages(taskId, readParams, converter, batchWriter);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 保存检查点
+     */
+    private void saveCheckpoint(String taskId, ExportCheckpoint checkpoint) {
+        try {
+            String leaseToken = taskLeases.tokenOf(taskId);
+            if (leaseToken == null || exportTaskMapper.updateCheckpoint(taskId, leaseToken, checkpoint.getRows(),
+                    objectMapper.writeValueAsString(checkpoint)) == 0) {
+                // 任务已被取消或已被回收，本实例在下一批数据处停止
+                taskLeases.onLeaseLost(taskId, leaseToken);
+            }
+        } catch (Exception e) {
+            // 检查点写出失败不影响导出本身，中断后从更早的检查点继续
+            log.warn("任务 {} 检查点保存失败: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 解析检查点，不存在或无法解析时返回null
+     */
+    private ExportCheckpoint parseCheckpoint(String json) {
+        if (!StringUtils.hasText(json)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, ExportCheckpoint.class);
+        } catch (JsonProcessingException e) {
+            log.warn("导出检查点无法解析，重新导出: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按导出格式创建写入器
+     *
+     * @param format 导出格式
+     * @param columns 导出列
+     * @param outputStream 输出流
+     * @param closeStream 写入完成后是否关闭输出流
+     * @return 写入器
+     */
+    private ExportWriter createWriter(ExportFormat format, List<ExcelColumnMeta> columns,
+                                      OutputStream outputStream, boolean closeStream) throws IOException {
+        if (format == ExportFormat.CSV || format == ExportFormat.TSV) {
+            // 写文件时直接使用FileChannel，由写入器的大缓冲区整块写出
+            WritableByteChannel channel = outputStream instanceof FileOutputStream
+                ? ((FileOutputStream) outputStream).getChannel()
+                : Channels.newChannel(outputStream);
+            char delimiter = format == ExportFormat.CSV ? ',' : '\t';
+            return new DelimitedExportWriter(channel, delimiter, columns, closeStream);
+        }
+        if (format == ExportFormat.XLSX_FAST) {
+            return new OoxmlExportWriter(outputStream, "用户数据", maxRowsPerSheet, columns, closeStream);
+        }
+        return new EasyExcelExportWriter(outputStream, "用户数据", maxRowsPerSheet, columns, closeStream);
+    }
+
+    /**
+     * 在后台精确统计总数，完成后回填到任务中并推送
+     */
+    private void startExactCount(String taskId, Map<String, Object> queryParams) {
+        // 与startExport统计时的数据版本可能不同，这里按当前版本统计和缓存
+        String version = countService.tableVersion();
+        exactTotals.put(taskId, -1L);
+        countService.countExactAsync(queryParams, version, total -> {
+            // 任务已结束时不再回填
+            if (exactTotals.replace(taskId, total) == null
+                    || exportTaskMapper.updateTotalCount(taskId, taskLeases.tokenOf(taskId), total) == 0) {
+                return;
+            }
+            ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+            if (task != null) {
+                cacheTaskInfo(taskId, task);
+                exportEventHub.publishStatus(buildExportResponse(task));
+            }
+            log.info("任务 {} 精确总数统计完成: {}", taskId, total);
+        });
+    }
+
+    /**
+     * 一批数据写入完成后更新进度
+     */
+    private void onRowsWritten(String taskId, long processed, Long totalCount) {
+        // 每批数据之间检查任务是否已取消
+        exportCancellation.checkStopped(taskId);
+        if (shuttingDown) {
+            // 应用正在停止：本批数据已写出（CSV/TSV已写出检查点），中断后由调用方放回队列
+            throw new IllegalStateException("应用正在停止，导出已中断");
+        }
+        Long exactTotal = exactTotals.get(taskId);
+        double progress;
+        if (exactTotal == null) {
+            progress = (double) processed / totalCount * 100;
+        } else if (exactTotal < 0) {
+            // 总数仍为估算值，进度可能超出，完成前最多显示99%
+            progress = Math.min(99.0, (double) processed / Math.max(totalCount, 1L) * 100);
+        } else {
+            totalCount = exactTotal;
+            progress = exactTotal > 0 ? Math.min(100.0, (double) processed / exactTotal * 100) : 100.0;
+        }
+        // 进度先记录在内存中，按时间或进度阈值合并写出
+        progressReporter.report(taskId, processed, progress);
+        
+        log.info("任务 {} 进度: {}/{} ({}%)", 
+            taskId, processed, totalCount, String.format("%.2f", progress));
+        
+        // 智能内存管理和GC触发
+        if (processed % (batchSize * 20) == 0) {
+            manageMemory(taskId, processed);
+        }
+    }
+
+    /**
+     * 执行 读取 -> 行转换 -> 写入 各阶段
+     * 开启流水线时三个阶段并行执行，否则在当前线程上依次执行
+     */
+    private void runExportStages(String taskId, Map<String, Object> queryParams,
+                                 Function<List<User>, List<List<Object>>> converter,
+                                 ExportPipeline.BatchWriter batchWriter) throws Exception {
+        // 读取阶段执行的查询登记到任务的取消令牌，取消时可以直接中止
+        if (!pipelineEnabled) {
+            exportCancellation.runBound(taskId, () -> exportDataReader.read(queryParams,
+                batchData -> batchWriter.write(converter.apply(batchData))));
+            return;
+        }
+        
+        ExportPipeline pipeline = new ExportPipeline(taskId, maxInFlightBatches, exportStageExecutor,
+            pipelineStopTimeout);
+        try {
+            pipeline.run(handler -> exportCancellation.runBound(taskId,
+                    () -> exportDataReader.read(queryParams, handler)),
+                converter, batchWriter);
+        } finally {
+            Map<String, Object> stageStats = pipeline.getStageStats();
+            recordPipelineStats(taskId, stageStats);
+            log.info("任务 {} 流水线阶段统计: {}", taskId, stageStats);
+        }
+    }
+
+    /**
+     * 记录流水线阶段统计，仅保留最近的若干个任务
+     */
+    private void recordPipelineStats(String taskId, Map<String, Object> stageStats) {
+        synchronized (pipelineStats) {
+            pipelineStats.put(taskId, stageStats);
+            while (pipelineStats.size() > PIPELINE_STATS_LIMIT) {
+                String eldest = pipelineStats.keySet().iterator().next();
+                pipelineStats.remove(eldest);
+            }
+        }
+    }
+
+    /**
+     * 获取最近导出任务的流水线阶段统计
+     *
+     * @return 任务ID -> 阶段统计
+     */
+    public Map<String, Map<String, Object>> getPipelineStats() {
+        synchronized (pipelineStats) {
+            return new LinkedHashMap<>(pipelineStats);
+        }
+    }
+
     /**
      * 构建查询参数
      */
     private Map<String, Object> buildQueryParams(ExportRequest request) {
         Map<String, Object> params = request.getQueryParams();
         if (params == null) {
-            params = new java.util.HashMap<>();
+            params = new HashMap<>();
         }
         
         if (StringUtils.hasText(request.getUsername())) {
@@ -290,62 +1140,156 @@ public class ExcelExportService {
         if (request.getEndTime() != null) {
             params.put("endTime", request.getEndTime());
         }
+        if (request.getFields() != null && request.getFields().length > 0) {
+            // 先按导出列校验字段，SQL只查询选中的列
+            List<String> fields = new ArrayList<>();
+            for (ExcelColumnMeta column : ExcelColumnMeta.select(USER_COLUMNS, Arrays.asList(request.getFields()))) {
+                fields.add(column.getProperty());
+            }
+            params.put("fields", fields);
+        }
         
         return params;
     }
 
+    /**
+     * 根据查询参数中的导出字段确定导出列，未指定时导出全部列；增量导出在最后追加变更类型列
+     */
+    private List<ExcelColumnMeta> resolveColumns(Map<String, Object> queryParams) {
+        List<ExcelColumnMeta> columns = USER_COLUMNS;
+        Object fields = queryParams.get("fields");
+        if (fields instanceof Collection && !((Collection<?>) fields).isEmpty()) {
+            List<String> properties = new ArrayList<>();
+            for (Object field : (Collection<?>) fields) {
+                properties.add(String.valueOf(field));
+            }
+            columns = ExcelColumnMeta.select(USER_COLUMNS, properties);
+        }
+        if (deltaService.isDelta(queryParams)) {
+            columns = new ArrayList<>(columns);
+            columns.add(UserRowConverter.CHANGE_TYPE_COLUMN);
+        }
+        return columns;
+    }
+
+    /**
+     * 查询条件序列化为JSON，随任务持久化
+     */
+    private String toQueryParamsJson(Map<String, Object> queryParams) {
+        try {
+            return objectMapper.writeValueAsString(queryParams);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("查询条件序列化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从任务中恢复查询条件，时间条件还原为LocalDateTime
+     */
+    private Map<String, Object> parseQueryParams(String json) throws JsonProcessingException {
+        Map<String, Object> params = new HashMap<>();
+        if (StringUtils.hasText(json)) {
+            params.putAll(objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {}));
+        }
+        for (String key : new String[]{"startTime", "endTime",
+                ExportDeltaService.PARAM_SINCE, ExportDeltaService.PARAM_UNTIL}) {
+            Object value = params.get(key);
+            if (value instanceof String) {
+                params.put(key, LocalDateTime.parse((String) value));
+            }
+        }
+        return params;
+    }
+
     /**
      * 创建导出任务
      */
-    private ExportTask createExportTask(String taskId, ExportRequest request, Long totalCount) {
+    private ExportTask createExportTask(String taskId, ExportRequest request, Long totalCount,
+                                        Map<String, Object> queryParams, boolean runNow) {
         ExportTask task = new ExportTask();
         task.setTaskId(taskId);
         task.setTaskName(StringUtils.hasText(request.getTaskName()) ? 
             request.getTaskName() : "用户数据导出");
         task.setExportType(request.getExportType());
-        task.setStatus("PENDING");
+        task.setStatus(runNow ? "PROCESSING" : "PENDING");
+        task.setPriority(request.getPriority() != null
+            ? Math.max(0, Math.min(9, request.getPriority())) : DEFAULT_PRIORITY);
+        task.setQueryParams(toQueryParamsJson(queryParams));
         task.setTotalCount(totalCount);
         task.setProcessedCount(0L);
         task.setProgress(0.0);
         task.setCreateBy(request.getCreateBy());
-        task.setStartTime(LocalDateTime.now());
-        task.setCreateTime(LocalDateTime.now());
-        task.setUpdateTime(LocalDateTime.now());
+        // 与数据库datetime精度一致，排队位置按创建时间比较
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        task.setStartTime(now);
+        task.setCreateTime(now);
+        task.setUpdateTime(now);
         return task;
     }
 
     /**
      * 生成文件名
      */
-    private String generateFileName(String taskName) {
+    private String generateFileName(String taskName, ExportFormat format) {
         String timestamp = LocalDateTime.now().format(
             DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        return String.format("%s_%s.xlsx", taskName, timestamp);
+        return String.format("%s_%s.%s", taskName, timestamp, format.getExtension());
     }
 
     /**
      * 更新任务状态
      */
     private void updateTaskStatus(String taskId, String status, String errorMessage) {
-        exportTaskMapper.updateStatus(taskId, status, errorMessage);
+        if (!"PROCESSING".equals(status)) {
+            // 状态变更前立即写出尚未写出的进度
+            progressReporter.complete(taskId);
+        }
+        String leaseToken = taskLeases.tokenOf(taskId);
+        if (leaseToken == null || exportTaskMapper.updateStatus(taskId, leaseToken, status, errorMessage) == 0) {
+            // 租约已失效：任务状态由取消方或接手的执行实例负责，本实例停止执行
+            taskLeases.onLeaseLost(taskId, leaseToken);
+            if (!"FAILED".equals(status)) {
+                throw new IllegalStateException("导出任务已不由本实例执行");
+            }
+            return;
+        }
         
-        // 更新缓存
+        // 更新缓存并推送给订阅者
         ExportTask task = exportTaskMapper.selectByTaskId(taskId);
         if (task != null) {
             cacheTaskInfo(taskId, task);
+            exportEventHub.publishStatus(buildExportResponse(task));
+            syncFollowers(task);
         }
     }
 
     /**
-     * 更新任务进度
+     * 主任务状态变更后同步跟随任务：开始处理时跟随任务进入处理中，结束时同时结束并共享主任务的文件
      */
-    private void updateTaskProgress(String taskId, Long processedCount, Double progress) {
-        exportTaskMapper.updateProgress(taskId, processedCount, progress);
-        
-        // 更新缓存
-        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
-        if (task != null) {
-            cacheTaskInfo(taskId, task);
+    private void syncFollowers(ExportTask leader) {
+        String status = leader.getStatus();
+        boolean completed = "SUCCESS".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status);
+        if (completed && leader.getResultKey() != null && singleFlight.isEnabled()) {
+            singleFlight.release(leader.getResultKey(), leader.getTaskId());
+        }
+
+        int updated;
+        if (completed) {
+            updated = exportTaskMapper.completeFollowers(leader.getTaskId());
+        } else if ("PROCESSING".equals(status)) {
+            updated = exportTaskMapper.updateFollowerProgress(leader.getTaskId(),
+                leader.getProcessedCount(), leader.getProgress());
+        } else {
+            updated = 0;
+        }
+        if (updated == 0) {
+            return;
+        }
+        for (ExportTask follower : exportTaskMapper.selectFollowers(leader.getTaskId())) {
+            if (status.equals(follower.getStatus())) {
+                cacheTaskInfo(follower.getTaskId(), follower);
+                exportEventHub.publishStatus(buildExportResponse(follower));
+            }
         }
     }
 
@@ -353,16 +1297,7 @@ public class ExcelExportService {
      * 缓存任务信息
      */
     private void cacheTaskInfo(String taskId, ExportTask task) {
-        String cacheKey = TASK_CACHE_PREFIX + taskId;
-        redisTemplate.opsForValue().set(cacheKey, task, timeoutMinutes, TimeUnit.MINUTES);
-    }
-
-    /**
-     * 从缓存获取任务信息
-     */
-    private ExportTask getTaskFromCache(String taskId) {
-        String cacheKey = TASK_CACHE_PREFIX + taskId;
-        return (ExportTask) redisTemplate.opsForValue().get(cacheKey);
+        taskCache.put(task);
     }
 
     /**
@@ -375,14 +1310,24 @@ public class ExcelExportService {
         response.setStatus(task.getStatus());
         response.setProgress(task.getProgress());
         response.setTotalCount(task.getTotalCount());
+        response.setTotalEstimated(task.getTotalEstimated());
         response.setProcessedCount(task.getProcessedCount());
         response.setFileName(task.getFileName());
         response.setFileSize(task.getFileSize());
+        response.setSheetCount(task.getSheetCount());
         response.setErrorMessage(task.getErrorMessage());
         response.setStartTime(task.getStartTime());
         response.setEndTime(task.getEndTime());
         response.setCreateTime(task.getCreateTime());
         
+        // 排队中的任务返回当前排队位置，跟随任务返回主任务的排队位置
+        ExportTask queued = task.getFollowTaskId() != null ? taskCache.get(task.getFollowTaskId()) : task;
+        if ("PENDING".equals(task.getStatus()) && queued != null && "PENDING".equals(queued.getStatus())
+                && queued.getId() != null) {
+            response.setQueuePosition(exportTaskMapper.countTasksAhead(
+                queued.getPriority(), queued.getCreateTime(), queued.getId()) + 1);
+        }
+        
         // 如果任务完成且成功，生成下载URL
         if ("SUCCESS".equals(task.getStatus()) && StringUtils.hasText(task.getFilePath())) {
             response.setDownloadUrl("/api/export/download/" + task.getTaskId());
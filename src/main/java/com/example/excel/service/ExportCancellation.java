@@ -0,0 +1,256 @@
+package com.example.excel.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导出任务取消
+ * 本实例执行中的任务各持有一个取消令牌。取消接口把任务状态改为CANCELLED后发布状态事件，
+ * 执行该任务的实例收到事件后标记令牌，导出在下一批数据处中断；令牌同时记录读取线程上正在执行的查询，
+ * 停止时直接中止查询，流式读取的游标不必等结果集读完才能关闭。
+ * 任务被回收到其他实例执行时同样停止，但不删除已生成的文件（新的执行实例会从检查点继续）。
+ */
+@Slf4j
+@Component
+public class ExportCancellation implements MessageListener {
+
+    /**
+     * 可抛出异常的任务
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * 当前线程所属导出任务的令牌，供语句拦截器登记正在执行的查询
+     */
+    private static final ThreadLocal<Token> CURRENT_TOKEN = new ThreadLocal<>();
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(ExportEventHub.EVENT_CHANNEL));
+    }
+
+    /**
+     * 导出开始时登记任务
+     *
+     * @param taskId 任务ID
+     */
+    public void register(String taskId) {
+        tokens.put(taskId, new Token());
+    }
+
+    /**
+     * 导出结束时注销任务
+     *
+     * @param taskId 任务ID
+     */
+    public void unregister(String taskId) {
+        tokens.remove(taskId);
+    }
+
+    /**
+     * 任务是否已被取消
+     *
+     * @param taskId 任务ID
+     * @return 是否已取消
+     */
+    public boolean isCancelled(String taskId) {
+        Token token = tokens.get(taskId);
+        return token != null && token.cancelled;
+    }
+
+    /**
+     * 任务是否需要停止执行（已取消或已被回收）
+     *
+     * @param taskId 任务ID
+     * @return 是否需要停止
+     */
+    public boolean isStopped(String taskId) {
+        Token token = tokens.get(taskId);
+        return token != null && token.stopped;
+    }
+
+    /**
+     * 任务需要停止时抛出异常，导出循环在每批数据之间调用
+     *
+     * @param taskId 任务ID
+     */
+    public void checkStopped(String taskId) {
+        Token token = tokens.get(taskId);
+        if (token != null && token.stopped) {
+            throw new IllegalStateException(token.cancelled ? "导出任务已取消" : "导出任务已被回收，停止执行");
+        }
+    }
+
+    /**
+     * 取消本实例上执行的任务：标记令牌并中止正在执行的查询
+     *
+     * @param taskId 任务ID
+     */
+    public void cancelLocal(String taskId) {
+        stop(taskId, true);
+    }
+
+    /**
+     * 停止本实例上已被回收的任务（任务已不在处理中，但没有被取消）
+     *
+     * @param taskId 任务ID
+     */
+    public void abandonLocal(String taskId) {
+        stop(taskId, false);
+    }
+
+    private void stop(String taskId, boolean cancelled) {
+        Token token = tokens.get(taskId);
+        if (token == null || token.stopped) {
+            return;
+        }
+        token.cancelled = cancelled;
+        token.stopped = true;
+        for (Statement statement : token.statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                log.warn("任务 {} 中止查询失败: {}", taskId, e.getMessage());
+            }
+        }
+        log.info("导出任务 {} 已标记停止，原因: {}", taskId, cancelled ? "取消" : "已被回收");
+    }
+
+    /**
+     * 在当前线程上以任务身份执行读取，期间执行的查询会登记到任务的令牌上
+     *
+     * @param taskId 任务ID
+     * @param task 读取任务
+     */
+    public void runBound(String taskId, Task task) throws Exception {
+        callBound(taskId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在当前线程上以任务身份执行并返回结果，用于提交到线程池的任务（如分卷生成）
+     *
+     * @param taskId 任务ID
+     * @param task 任务
+     * @return 任务结果
+     */
+    public <T> T callBound(String taskId, Callable<T> task) throws Exception {
+        return callWithToken(tokens.get(taskId), task);
+    }
+
+    /**
+     * 把当前线程所属任务的令牌带到其他线程上执行的任务（如分片查询），
+     * 任务停止时这些线程上的查询同样被中止；当前线程不属于导出任务时原样返回
+     *
+     * @param task 提交到其他线程的任务
+     * @return 绑定了当前任务令牌的任务
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Token token = CURRENT_TOKEN.get();
+        if (token == null) {
+            return task;
+        }
+        return () -> callWithToken(token, task);
+    }
+
+    private static <T> T callWithToken(Token token, Callable<T> task) throws Exception {
+        if (token == null) {
+            return task.call();
+        }
+        Token previous = CURRENT_TOKEN.get();
+        CURRENT_TOKEN.set(token);
+        try {
+            return task.call();
+        } finally {
+            if (previous != null) {
+                CURRENT_TOKEN.set(previous);
+            } else {
+                CURRENT_TOKEN.remove();
+            }
+        }
+    }
+
+    /**
+     * 登记当前线程正在执行的查询（由语句拦截器调用）
+     *
+     * @param statement JDBC语句
+     * @return 当前线程不属于导出任务时返回false
+     */
+    public static boolean trackStatement(Statement statement) throws SQLException {
+        Token token = CURRENT_TOKEN.get();
+        if (token == null) {
+            return false;
+        }
+        token.statements.add(statement);
+        if (token.stopped) {
+            statement.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * 查询结束后注销
+     *
+     * @param statement JDBC语句
+     */
+    public static void untrackStatement(Statement statement) {
+        Token token = CURRENT_TOKEN.get();
+        if (token != null) {
+            token.statements.remove(statement);
+        }
+    }
+
+    /**
+     * 收到取消状态事件时取消本实例上执行的任务
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode node = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (ExportEventHub.EVENT_STATUS.equals(node.path("event").asText())
+                    && "CANCELLED".equals(node.path("data").path("status").asText())) {
+                cancelLocal(node.path("taskId").asText());
+            }
+        } catch (Exception e) {
+            log.warn("任务取消事件处理失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 取消令牌
+     */
+    private static class Token {
+        private volatile boolean stopped;
+        private volatile boolean cancelled;
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.excel.service;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 导出检查点
+ * 以JSON保存在export_task.checkpoint中，任务被放回队列后由新的执行实例据此继续导出：
+ * CSV/TSV记录最后写出的主键和对应的文件偏移，ZIP记录每个分卷的主键区间和是否已生成，
+ * 可能超过一个工作表的xlsx记录每个已完成工作表分段的行数和最后一条数据的主键。
+ */
+@Data
+public class ExportCheckpoint {
+
+    /**
+     * 导出文件名，续写时沿用
+     */
+    private String fileName;
+
+    /**
+     * 导出文件路径，续写时沿用
+     */
+    private String filePath;
+
+    /**
+     * 已写出的最后一条数据的主键（CSV/TSV）
+     */
+    private Long lastId;
+
+    /**
+     * 已写出的数据行数
+     */
+    private Long rows;
+
+    /**
+     * lastId对应的文件偏移，续写前把文件截断到该位置（CSV/TSV）
+     */
+    private Long fileOffset;
+
+    /**
+     * 分卷列表，主键区间在首次执行时确定，续写时不再重新切分（ZIP）；已完成的工作表分段（xlsx）
+     */
+    private List<Part> parts;
+
+    /**
+     * 分卷检查点
+     */
+    @Data
+    public static class Part {
+
+        /**
+         * 分卷序号，从1开始
+         */
+        private Integer partNo;
+
+        /**
+         * 起始ID（包含）
+         */
+        private Long startId;
+
+        /**
+         * 结束ID（不包含）
+         */
+        private Long endId;
+
+        /**
+         * 是否已生成完成
+         */
+        private boolean finished;
+
+        /**
+         * 分卷数据行数
+         */
+        private Long rows;
+
+        /**
+         * 分卷文件CRC，追加到zip时使用
+         */
+        private Long crc;
+
+        /**
+         * 分卷工作表数量
+         */
+        private Integer sheetCount;
+
+        /**
+         * 分段最后一条数据的主键，从下一个工作表继续时只查询主键更大的数据（xlsx）
+         */
+        private Long lastId;
+
+        /**
+         * 工作表XML的原始大小，组装xlsx时使用（xlsx）
+         */
+        private Long size;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.excel.service;
+
+import com.example.excel.mapper.UserMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 导出行数统计
+ * 精确行数按查询条件缓存在Redis中，值中带有用户表的数据版本（最大主键和最大更新时间），
+ * 数据有新增或修改时版本变化，旧的行数不再使用；物理删除不改变版本，由缓存过期时间兜底。
+ * 缓存未命中时先取优化器的行数估算（EXPLAIN），估算值不超过阈值时直接精确统计，
+ * 否则以估算值开始导出，精确行数在后台统计完成后回填到任务中。
+ */
+@Slf4j
+@Component
+public class ExportCountService {
+
+    private static final String KEY_PREFIX = "export:count:";
+
+    /**
+     * 不影响结果行数的参数：导出字段、增量导出的定义信息和续写位置
+     */
+    private static final Set<String> IGNORED_PARAMS = new HashSet<>(Arrays.asList(
+        "fields", ExportDeltaService.PARAM_DEFINITION, ExportDeltaService.PARAM_SIGNATURE,
+        ExportDeltaService.PARAM_SNAPSHOT, "resumeAfterId"));
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("exportCountExecutor")
+    private ThreadPoolTaskExecutor countExecutor;
+
+    @Value("${export.count.cache-ttl:600000}")
+    private Long cacheTtl;
+
+    @Value("${export.count.exact-threshold:100000}")
+    private Long exactThreshold;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong estimates = new AtomicLong();
+    private final AtomicLong asyncCounts = new AtomicLong();
+
+    /**
+     * 查询用户表的数据版本
+     *
+     * @return 数据版本（最大主键|最大更新时间）
+     */
+    public String tableVersion() {
+        Map<String, Object> version = userMapper.selectTableVersion();
+        if (version == null) {
+            return "0|null";
+        }
+        return version.get("maxId") + "|" + version.get("maxUpdateTime");
+    }
+
+    /**
+     * 统计导出前的行数：缓存命中或估算值较小时为精确值，否则为估算值
+     *
+     * @param queryParams 查询条件
+     * @return 统计结果
+     */
+    public CountResult resolve(Map<String, Object> queryParams) {
+        String version = tableVersion();
+        Long cached = getCached(queryParams, version);
+        if (cached != null) {
+            return new CountResult(version, cached, false);
+        }
+        long estimated = estimate(queryParams);
+        if (estimated <= exactThreshold) {
+            return new CountResult(version, countExact(queryParams, version), false);
+        }
+        // 估算值可能与实际相差很大，确认至少有一条数据后才以估算值开始导出
+        if (!exists(queryParams)) {
+            putCached(queryParams, version, 0L);
+            return new CountResult(version, 0L, false);
+        }
+        estimates.incrementAndGet();
+        return new CountResult(version, estimated, true);
+    }
+
+    /**
+     * 精确行数，优先使用缓存
+     *
+     * @param queryParams 查询条件
+     * @return 行数
+     */
+    public long count(Map<String, Object> queryParams) {
+        String version = tableVersion();
+        Long cached = getCached(queryParams, version);
+        return cached != null ? cached : countExact(queryParams, version);
+    }
+
+    /**
+     * 在后台精确统计行数，完成后回调；线程池已满时放弃统计，任务成功时以已导出行数作为总数
+     *
+     * @param queryParams 查询条件
+     * @param version 数据版本
+     * @param callback 统计完成后的回调
+     */
+    public void countExactAsync(Map<String, Object> queryParams, String version, LongConsumer callback) {
+        asyncCounts.incrementAndGet();
+        CompletableFuture.supplyAsync(() -> countExact(queryParams, version), countExecutor)
+            .thenAccept(callback::accept)
+            .exceptionally(e -> {
+                log.warn("后台统计导出行数失败: {}", e.getMessage());
+                return null;
+            });
+    }
+
+    /**
+     * 精确统计行数并缓存
+     */
+    private long countExact(Map<String, Object> queryParams, String version) {
+        misses.incrementAndGet();
+        Long total = userMapper.countUserForExport(queryParams);
+        long count = total != null ? total : 0L;
+        putCached(queryParams, version, count);
+        return count;
+    }
+
+    /**
+     * 优化器估算的行数（rows × filtered%），取执行计划中最大的一项
+     */
+    private long estimate(Map<String, Object> queryParams) {
+        List<Map<String, Object>> plan = userMapper.explainUserForExport(queryParams);
+        long estimated = 0L;
+        for (Map<String, Object> row : plan) {
+            Object rows = row.get("rows");
+            if (rows == null) {
+                continue;
+            }
+            Object filtered = row.get("filtered");
+            double ratio = filtered != null ? Double.parseDouble(filtered.toString()) / 100 : 1.0;
+            estimated = Math.max(estimated, (long) Math.ceil(Long.parseLong(rows.toString()) * ratio));
+        }
+        return estimated;
+    }
+
+    private boolean exists(Map<String, Object> queryParams) {
+        return userMapper.existsUserForExport(queryParams) != null;
+    }
+
+    private Long getCached(Map<String, Object> queryParams, String version) {
+        String value = redisTemplate.opsForValue().get(buildKey(queryParams));
+        if (value == null) {
+            return null;
+        }
+        int separator = value.lastIndexOf('#');
+        if (separator < 0 || !version.equals(value.substring(0, separator))) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return Long.parseLong(value.substring(separator + 1));
+    }
+
+    private void putCached(Map<String, Object> queryParams, String version, long count) {
+        redisTemplate.opsForValue().set(buildKey(queryParams), version + "#" + count,
+            cacheTtl, TimeUnit.MILLISECONDS);
+    }
+
+    private String buildKey(Map<String, Object> queryParams) {
+        // 按键排序、去掉空值和不影响行数的参数
+        Map<String, Object> normalized = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
+            Object value = entry.getValue();
+            if (IGNORED_PARAMS.contains(entry.getKey()) || value == null || "".equals(value)
+                    || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+                continue;
+            }
+            normalized.put(entry.getKey(), value);
+        }
+        try {
+            return KEY_PREFIX + ExportResultCache.sha256(objectMapper.writeValueAsString(normalized));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("查询条件序列化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("exactCounts", misses.get());
+        stats.put("estimates", estimates.get());
+        stats.put("asyncCounts", asyncCounts.get());
+        stats.put("exactThreshold", exactThreshold);
+        stats.put("cacheTtl", cacheTtl);
+        return stats;
+    }
+
+    /**
+     * 行数统计结果
+     */
+    @Data
+    public static class CountResult {
+
+        /**
+         * 统计时用户表的数据版本
+         */
+        private final String version;
+
+        /**
+         * 行数
+         */
+        private final long total;
+
+        /**
+         * 是否为估算值
+         */
+        private final boolean estimated;
+    }
+}
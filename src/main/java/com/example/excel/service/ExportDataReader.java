@@ -0,0 +1,254 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.User;
+import com.example.excel.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 导出数据读取器
+ * 按配置的拉取模式从数据库读取导出数据，并以批次的形式推送给调用方
+ */
+@Slf4j
+@Component
+public class ExportDataReader {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Value("${export.batch-size:10000}")
+    private Integer batchSize;
+
+    @Value("${export.fetch-mode:keyset}")
+    private String fetchMode;
+
+    @Value("${export.partition.max-in-flight-shards:8}")
+    private Integer maxInFlightShards;
+
+    @Value("${export.partition.shard-size:10000}")
+    private Long shardSize;
+
+    @Autowired
+    @Qualifier("exportFetchExecutor")
+    private ThreadPoolTaskExecutor exportFetchExecutor;
+
+    /**
+     * 批次处理回调
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+
+        /**
+         * 处理一批数据
+         *
+         * @param batch 当前批次数据（调用方可以持有该列表，读取器不会复用）
+         */
+        void handle(List<User> batch) throws Exception;
+    }
+
+    /**
+     * 读取全部符合条件的数据
+     *
+     * @param queryParams 查询参数
+     * @param handler 批次处理回调
+     */
+    public void read(Map<String, Object> queryParams, BatchHandler handler) throws Exception {
+        if ("stream".equalsIgnoreCase(fetchMode)) {
+            readByStream(queryParams, handler);
+        } else if ("partition".equalsIgnoreCase(fetchMode)) {
+            readByPartition(queryParams, handler);
+        } else if ("offset".equalsIgnoreCase(fetchMode)) {
+            readByOffset(queryParams, handler);
+        } else {
+            readByKeyset(queryParams, handler);
+        }
+    }
+
+    /**
+     * 按主键区间顺序读取
+     * 区间按分片跨度逐段查询，每段最多shard-size条数据，适合由单个工作线程负责一个大区间的场景
+     *
+     * @param queryParams 查询参数
+     * @param startId 起始ID（包含）
+     * @param endId 结束ID（不包含）
+     * @param handler 批次处理回调
+     */
+    public void readRange(Map<String, Object> queryParams, long startId, long endId,
+                          BatchHandler handler) throws Exception {
+        for (long shardStart = startId; shardStart < endId; shardStart += shardSize) {
+            long shardEnd = Math.min(shardStart + shardSize, endId);
+            List<User> batchData = userMapper.selectUserListInIdRange(queryParams, shardStart, shardEnd);
+            if (!batchData.isEmpty()) {
+                handler.handle(batchData);
+            }
+        }
+    }
+
+    /**
+     * 查询符合条件数据的主键范围
+     *
+     * @param queryParams 查询参数
+     * @return [minId, maxId]，没有数据时返回null
+     */
+    public long[] getIdRange(Map<String, Object> queryParams) {
+        Map<String, Object> idRange = userMapper.selectIdRangeForExport(queryParams);
+        if (idRange == null || idRange.get("minId") == null) {
+            return null;
+        }
+        return new long[]{
+            ((Number) idRange.get("minId")).longValue(),
+            ((Number) idRange.get("maxId")).longValue()
+        };
+    }
+
+    /**
+     * offset分页读取
+     */
+    private void readByOffset(Map<String, Object> queryParams, BatchHandler handler) throws Exception {
+        long offset = 0L;
+        while (true) {
+            List<User> batchData = userMapper.selectUserListForExport(queryParams, offset, batchSize);
+            if (batchData.isEmpty()) {
+                break;
+            }
+            handler.handle(batchData);
+            if (batchData.size() < batchSize) {
+                break;
+            }
+            offset += batchSize;
+        }
+    }
+
+    /**
+     * keyset分页读取
+     */
+    private void readByKeyset(Map<String, Object> queryParams, BatchHandler handler) throws Exception {
+        Long lastId = null;
+        while (true) {
+            List<User> batchData = userMapper.selectUserListAfterId(queryParams, lastId, batchSize);
+            if (batchData.isEmpty()) {
+                break;
+            }
+            lastId = batchData.get(batchData.size() - 1).getId();
+            handler.handle(batchData);
+            if (batchData.size() < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 服务端流式读取
+     * 整个导出只执行一次查询，MySQL驱动逐行返回结果，内存中最多只保留一个批次的数据
+     */
+    private void readByStream(Map<String, Object> queryParams, BatchHandler handler) throws Exception {
+        List<List<User>> bufferHolder = new ArrayList<>(1);
+        bufferHolder.add(new ArrayList<>(batchSize));
+        Exception[] failure = new Exception[1];
+
+        userMapper.streamUserForExport(queryParams, resultContext -> {
+            List<User> buffer = bufferHolder.get(0);
+            buffer.add(resultContext.getResultObject());
+            if (buffer.size() < batchSize) {
+                return;
+            }
+            bufferHolder.set(0, new ArrayList<>(batchSize));
+            try {
+                handler.handle(buffer);
+            } catch (Exception e) {
+                failure[0] = e;
+                resultContext.stop();
+            }
+        });
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        // 处理最后不足一批的数据
+        List<User> remaining = bufferHolder.get(0);
+        if (!remaining.isEmpty()) {
+            handler.handle(remaining);
+        }
+    }
+
+    /**
+     * 按主键区间分片并行读取
+     * 多个分片在独立的连接上并发查询，按分片顺序取回结果（重排序缓冲区），保证输出仍按ID有序；
+     * 同时在途的分片数受max-in-flight-shards限制，控制内存占用
+     */
+    private void readByPartition(Map<String, Object> queryParams, BatchHandler handler) throws Exception {
+        long[] idRange = getIdRange(queryParams);
+        if (idRange == null) {
+            return;
+        }
+        long minId = idRange[0];
+        long maxId = idRange[1];
+        
+        log.debug("分片并行读取，ID范围: [{}, {}]，分片跨度: {}，在途分片上限: {}",
+            minId, maxId, shardSize, maxInFlightShards);
+        
+        Deque<Future<List<User>>> inFlight = new ArrayDeque<>();
+        List<User> buffer = new ArrayList<>(batchSize);
+        long nextStartId = minId;
+        
+        try {
+            while (nextStartId <= maxId || !inFlight.isEmpty()) {
+                // 补齐在途分片
+                while (nextStartId <= maxId && inFlight.size() < maxInFlightShards) {
+                    long startId = nextStartId;
+                    long endId = Math.min(startId + shardSize, maxId + 1);
+                    // 分片查询在线程池上执行，带上当前任务的令牌，任务停止时同样中止
+                    inFlight.add(exportFetchExecutor.submit(ExportCancellation.propagate(
+                        () -> userMapper.selectUserListInIdRange(queryParams, startId, endId))));
+                    nextStartId = endId;
+                }
+                
+                // 按顺序取回最早提交的分片
+                List<User> shardData = awaitShard(inFlight.poll());
+                buffer.addAll(shardData);
+                
+                // 过滤条件较多时单个分片可能很稀疏，凑满一批再交给调用方
+                if (buffer.size() >= batchSize) {
+                    handler.handle(buffer);
+                    buffer = new ArrayList<>(batchSize);
+                }
+            }
+        } finally {
+            for (Future<List<User>> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+        
+        if (!buffer.isEmpty()) {
+            handler.handle(buffer);
+        }
+    }
+
+    /**
+     * 等待分片查询完成
+     */
+    private List<User> awaitShard(Future<List<User>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.excel.service;
+
+import com.example.excel.dto.ExportRequest;
+import com.example.excel.entity.ExportTask;
+import com.example.excel.entity.ExportWatermark;
+import com.example.excel.mapper.ExportWatermarkMapper;
+import com.example.excel.writer.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 增量导出
+ * 导出请求指定导出定义后按定义记录水位线：全量导出完成后以本次截止时间作为基准，
+ * 增量导出只查询update_time落在 [水位线, 截止时间) 内的数据，成功后把水位线推进到截止时间。
+ * 截止时间取数据库当前时间并留出余量，避免漏掉更新时间早于提交时间的事务。
+ * 增量数据追加变更类型列，已删除或不再符合条件的行标记为删除；
+ * 选择合并快照时，增量按主键合并到上一次的CSV/TSV快照中输出新的完整快照，快照水位线单独推进。
+ * 水位线和截止时间随查询条件一起保存在任务中，任务中断后重新执行时导出的仍是同一个时间窗口。
+ */
+@Slf4j
+@Component
+public class ExportDeltaService {
+
+    public static final String PARAM_DEFINITION = "deltaDefinition";
+    public static final String PARAM_SIGNATURE = "deltaSignature";
+    public static final String PARAM_SINCE = "deltaSince";
+    public static final String PARAM_UNTIL = "deltaUntil";
+    public static final String PARAM_SNAPSHOT = "deltaSnapshot";
+
+    @Autowired
+    private ExportWatermarkMapper exportWatermarkMapper;
+
+    @Autowired
+    private ExportResultCache resultCache;
+
+    @Autowired
+    private ExportStorageManager storageManager;
+
+    @Value("${export.delta.safety-lag-seconds:5}")
+    private Integer safetyLagSeconds;
+
+    /**
+     * 按导出定义确定本次导出的时间窗口，写入查询参数
+     *
+     * @param request 导出请求
+     * @param queryParams 查询参数
+     * @param format 导出格式
+     */
+    public void prepare(ExportRequest request, Map<String, Object> queryParams, ExportFormat format) {
+        boolean delta = "DELTA".equalsIgnoreCase(request.getExportMode());
+        String definitionKey = request.getDefinitionKey();
+        if (!StringUtils.hasText(definitionKey)) {
+            if (delta) {
+                throw new RuntimeException("增量导出需要指定导出定义");
+            }
+            return;
+        }
+
+        String signature = resultCache.buildSignature(queryParams, format);
+        LocalDateTime cutoff = exportWatermarkMapper.selectCutoff(safetyLagSeconds);
+        if (delta) {
+            ExportWatermark watermark = exportWatermarkMapper.selectByDefinitionKey(definitionKey);
+            if (watermark == null) {
+                throw new RuntimeException("导出定义 " + definitionKey + " 尚无全量基准，请先执行全量导出");
+            }
+            if (!signature.equals(watermark.getSignature())) {
+                throw new RuntimeException("导出定义 " + definitionKey + " 的查询条件、导出字段或格式与全量基准不一致");
+            }
+            LocalDateTime since;
+            if (Boolean.TRUE.equals(request.getMergeSnapshot())) {
+                if (watermark.getSnapshotPath() == null || !storageManager.isAvailable(watermark.getSnapshotPath())) {
+                    throw new RuntimeException("导出定义 " + definitionKey + " 没有可合并的快照文件（仅CSV/TSV且首列为用户ID时保留快照），请重新执行全量导出");
+                }
+                since = watermark.getSnapshotMark();
+                queryParams.put(PARAM_SNAPSHOT, watermark.getSnapshotPath());
+            } else {
+                since = watermark.getHighWaterMark();
+            }
+            if (cutoff.isBefore(since)) {
+                cutoff = since;
+            }
+            queryParams.put(PARAM_SINCE, since);
+        }
+        queryParams.put(PARAM_DEFINITION, definitionKey);
+        queryParams.put(PARAM_SIGNATURE, signature);
+        queryParams.put(PARAM_UNTIL, cutoff);
+    }
+
+    /**
+     * 是否为按导出定义执行的导出（全量或增量）
+     */
+    public boolean isDefinitionExport(Map<String, Object> queryParams) {
+        return queryParams.get(PARAM_DEFINITION) != null;
+    }
+
+    /**
+     * 是否为增量导出
+     */
+    public boolean isDelta(Map<String, Object> queryParams) {
+        return queryParams.get(PARAM_SINCE) != null;
+    }
+
+    /**
+     * 是否把增量合并到快照
+     */
+    public boolean isMerge(Map<String, Object> queryParams) {
+        return queryParams.get(PARAM_SNAPSHOT) != null;
+    }
+
+    /**
+     * 导出文件生成后推进水位线，水位线已被其他任务推进时抛出异常，本次导出失败
+     *
+     * @param task 导出任务
+     * @param queryParams 查询参数
+     * @param format 导出格式
+     * @param filePath 生成的文件
+     */
+    public void commit(ExportTask task, Map<String, Object> queryParams, ExportFormat format, String filePath) {
+        String definitionKey = (String) queryParams.get(PARAM_DEFINITION);
+        if (definitionKey == null) {
+            return;
+        }
+        LocalDateTime since = (LocalDateTime) queryParams.get(PARAM_SINCE);
+        LocalDateTime until = (LocalDateTime) queryParams.get(PARAM_UNTIL);
+
+        if (since == null) {
+            // 全量导出重置基准；CSV/TSV且首列为主键时保留为快照，供增量合并
+            ExportWatermark watermark = new ExportWatermark();
+            watermark.setDefinitionKey(definitionKey);
+            watermark.setSignature((String) queryParams.get(PARAM_SIGNATURE));
+            watermark.setExportType(task.getExportType());
+            watermark.setHighWaterMark(until);
+            if (isMergeable(queryParams, format)) {
+                watermark.setSnapshotMark(until);
+                watermark.setSnapshotPath(filePath);
+            }
+            watermark.setLastTaskId(task.getTaskId());
+            exportWatermarkMapper.upsertBaseline(watermark);
+            log.info("导出定义 {} 全量基准已更新，水位线: {}", definitionKey, until);
+        } else if (isMerge(queryParams)) {
+            if (exportWatermarkMapper.advanceSnapshot(definitionKey, since, until, filePath, task.getTaskId()) == 0) {
+                throw new IllegalStateException("导出定义 " + definitionKey + " 的快照已被其他任务更新，本次合并结果作废");
+            }
+            log.info("导出定义 {} 快照已合并至 {}，新快照: {}", definitionKey, until, filePath);
+        } else {
+            if (exportWatermarkMapper.advanceHighWaterMark(definitionKey, since, until, task.getTaskId()) == 0) {
+                throw new IllegalStateException("导出定义 " + definitionKey + " 的水位线已被其他任务推进，本次增量作废");
+            }
+            log.info("导出定义 {} 水位线已推进: {} -> {}", definitionKey, since, until);
+        }
+    }
+
+    /**
+     * 快照需要逐行按主键合并：仅CSV/TSV，且第一列为用户ID
+     */
+    private static boolean isMergeable(Map<String, Object> queryParams, ExportFormat format) {
+        if (format != ExportFormat.CSV && format != ExportFormat.TSV) {
+            return false;
+        }
+        Object fields = queryParams.get("fields");
+        if (!(fields instanceof Collection) || ((Collection<?>) fields).isEmpty()) {
+            return true;
+        }
+        Iterator<?> iterator = ((Collection<?>) fields).iterator();
+        return "id".equals(String.valueOf(iterator.next()));
+    }
+}
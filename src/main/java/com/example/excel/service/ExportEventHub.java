@@ -0,0 +1,231 @@
+package com.example.excel.service;
+
+import com.example.excel.dto.ExportResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * 导出任务事件推送（SSE）
+ * 导出线程只把进度和状态变更发布到Redis频道，每个实例订阅该频道后交给本实例内该任务唯一的事件源，
+ * 再由事件源分发给连接在本实例上的所有订阅者；订阅者连在哪个实例上都能收到事件。
+ * 任务结束后事件源关闭所有连接，空闲连接定时发送心跳注释，避免被代理或浏览器断开。
+ */
+@Slf4j
+@Component
+public class ExportEventHub implements MessageListener {
+
+    /**
+     * 任务事件频道，消息为 {"taskId":..,"event":..,"data":{..}}
+     */
+    public static final String EVENT_CHANNEL = "export:task:events";
+
+    public static final String EVENT_PROGRESS = "progress";
+    public static final String EVENT_STATUS = "status";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${export.sse.timeout:1800000}")
+    private Long emitterTimeoutMs;
+
+    /**
+     * 任务ID -> 本实例内该任务的事件源
+     */
+    private final Map<String, TaskEventSource> sources = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(EVENT_CHANNEL));
+    }
+
+    /**
+     * 订阅任务事件
+     * 先注册再发送当前状态，保证注册之后发生的变更不会丢失；任务已结束时发送状态后直接关闭连接
+     *
+     * @param taskId 任务ID
+     * @param snapshot 当前任务状态
+     * @return SSE连接
+     */
+    public SseEmitter subscribe(String taskId, Supplier<ExportResponse> snapshot) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        TaskEventSource source = sources.computeIfAbsent(taskId, id -> new TaskEventSource());
+        source.emitters.add(emitter);
+        emitter.onCompletion(() -> unsubscribe(taskId, emitter));
+        emitter.onTimeout(() -> unsubscribe(taskId, emitter));
+        emitter.onError(e -> unsubscribe(taskId, emitter));
+
+        ExportResponse response;
+        try {
+            response = snapshot.get();
+        } catch (RuntimeException e) {
+            unsubscribe(taskId, emitter);
+            throw e;
+        }
+
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_STATUS).data(response, MediaType.APPLICATION_JSON));
+            if (response.isCompleted()) {
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            unsubscribe(taskId, emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * 发布进度事件（由进度上报器在写出进度时调用）
+     *
+     * @param taskId 任务ID
+     * @param processedCount 已处理数量
+     * @param progress 进度百分比
+     */
+    public void publishProgress(String taskId, long processedCount, double progress) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("taskId", taskId);
+        data.put("processedCount", processedCount);
+        data.put("progress", progress);
+        publish(taskId, EVENT_PROGRESS, data);
+    }
+
+    /**
+     * 发布状态变更事件
+     *
+     * @param response 变更后的任务状态
+     */
+    public void publishStatus(ExportResponse response) {
+        publish(response.getTaskId(), EVENT_STATUS, response);
+    }
+
+    private void publish(String taskId, String event, Object data) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("taskId", taskId);
+        message.put("event", event);
+        message.put("data", data);
+        try {
+            stringRedisTemplate.convertAndSend(EVENT_CHANNEL, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            // 推送失败不影响导出，订阅者仍可通过状态查询接口获取
+            log.warn("任务 {} 事件发布失败: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 接收Redis频道消息，交给本实例内该任务的事件源分发
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode node = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            String taskId = node.path("taskId").asText();
+            TaskEventSource source = sources.get(taskId);
+            if (source == null) {
+                // 本实例没有该任务的订阅者
+                return;
+            }
+            JsonNode data = node.path("data");
+            boolean completed = EVENT_STATUS.equals(node.path("event").asText())
+                && isCompleted(data.path("status").asText());
+            source.dispatch(taskId, node.path("event").asText(), data.toString(), completed);
+            if (completed) {
+                sources.remove(taskId, source);
+            }
+        } catch (Exception e) {
+            log.warn("任务事件处理失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 定时向所有连接发送心跳注释
+     */
+    @Scheduled(fixedDelayString = "${export.sse.heartbeat-interval:15000}")
+    public void sendHeartbeats() {
+        sources.forEach((taskId, source) -> {
+            for (SseEmitter emitter : source.emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (Exception e) {
+                    unsubscribe(taskId, emitter);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取本实例当前的订阅数
+     *
+     * @return 订阅数
+     */
+    public int getSubscriberCount() {
+        int count = 0;
+        for (TaskEventSource source : sources.values()) {
+            count += source.emitters.size();
+        }
+        return count;
+    }
+
+    private void unsubscribe(String taskId, SseEmitter emitter) {
+        TaskEventSource source = sources.get(taskId);
+        if (source != null) {
+            source.emitters.remove(emitter);
+            if (source.emitters.isEmpty()) {
+                sources.remove(taskId, source);
+            }
+        }
+    }
+
+    private static boolean isCompleted(String status) {
+        return "SUCCESS".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status)
+            || "EXPIRED".equals(status);
+    }
+
+    /**
+     * 单个任务的事件源，事件只序列化一次后分发给所有订阅者
+     */
+    private static class TaskEventSource {
+
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private void dispatch(String taskId, String event, String json, boolean completed) {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().name(event).data(json, MediaType.APPLICATION_JSON));
+                    if (completed) {
+                        emitter.complete();
+                    }
+                } catch (Exception e) {
+                    emitters.remove(emitter);
+                    log.debug("任务 {} 的订阅连接已断开: {}", taskId, e.getMessage());
+                }
+            }
+        }
+    }
+}
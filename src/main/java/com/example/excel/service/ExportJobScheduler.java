@@ -0,0 +1,150 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 导出任务调度器
+ * 异步导出任务以PENDING状态保存在export_task表中，调度器定时按优先级认领并提交到导出线程池执行。
+ * 每次只认领空闲工作线程能立即执行的数量，优先级顺序由数据库决定；任务在表中排队，应用重启后不会丢失。
+ * 认领前需要先获得集群级导出许可，许可已满时任务继续排队；认领时同时获得任务的执行租约，
+ * 执行实例停止续租后任务由回收检查放回队列。
+ */
+@Slf4j
+@Component
+public class ExportJobScheduler {
+
+    @Autowired
+    private ExportTaskMapper exportTaskMapper;
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ExportSemaphore exportSemaphore;
+
+    @Autowired
+    private ExportTaskLeases taskLeases;
+
+    @Autowired
+    @Qualifier("exportTaskExecutor")
+    private ThreadPoolTaskExecutor exportTaskExecutor;
+
+    @Value("${export.scheduler.workers:2}")
+    private Integer workers;
+
+    @Value("${export.scheduler.stale-minutes:10}")
+    private Integer staleMinutes;
+
+    /**
+     * 本实例已认领、尚未执行完的任务数
+     */
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    /**
+     * 启动时把上次停止前未执行完的任务放回队列
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        requeueStaleTasks();
+    }
+
+    /**
+     * 定时认领待执行任务
+     */
+    @Scheduled(fixedDelayString = "${export.scheduler.poll-interval:1000}")
+    public void dispatchPendingTasks() {
+        // 本实例的空闲线程数
+        int slots = workers - runningTasks.get();
+        if (slots <= 0) {
+            return;
+        }
+
+        List<ExportTask> tasks = exportTaskMapper.selectPendingTasks(slots);
+        for (ExportTask task : tasks) {
+            if (!exportSemaphore.tryAcquire(task.getTaskId())) {
+                // 集群并发已满，剩余任务继续排队
+                break;
+            }
+            String leaseToken = taskLeases.claim(task.getTaskId());
+            if (leaseToken == null) {
+                // 已被其他实例认领
+                exportSemaphore.release(task.getTaskId());
+                continue;
+            }
+            if (!submit(task, leaseToken)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 定时回收执行实例已停止的任务（执行租约已过期）
+     */
+    @Scheduled(fixedDelayString = "${export.scheduler.recover-interval:60000}")
+    public void requeueStaleTasks() {
+        int requeued = exportTaskMapper.requeueStaleTasks(staleMinutes);
+        if (requeued > 0) {
+            log.warn("{} 个处理中任务的执行租约已过期，已放回队列", requeued);
+        }
+    }
+
+    /**
+     * 提交到导出线程池，线程池拒绝时把任务放回队列
+     */
+    private boolean submit(ExportTask task, String leaseToken) {
+        runningTasks.incrementAndGet();
+        try {
+            exportTaskExecutor.execute(() -> {
+                try {
+                    excelExportService.executeQueuedTask(task);
+                } finally {
+                    taskLeases.release(task.getTaskId(), leaseToken);
+                    exportSemaphore.release(task.getTaskId());
+                    runningTasks.decrementAndGet();
+                }
+            });
+            log.info("已认领导出任务: {}, 优先级: {}", task.getTaskId(), task.getPriority());
+            return true;
+        } catch (RejectedExecutionException e) {
+            exportSemaphore.release(task.getTaskId());
+            runningTasks.decrementAndGet();
+            exportTaskMapper.updateStatus(task.getTaskId(), leaseToken, "PENDING", null);
+            taskLeases.release(task.getTaskId(), leaseToken);
+            log.warn("导出线程池已满，任务 {} 放回队列", task.getTaskId());
+            return false;
+        }
+    }
+
+    /**
+     * 获取调度器状态
+     *
+     * @return 调度器状态
+     */
+    public Map<String, Object> getSchedulerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("runningTasks", runningTasks.get());
+        stats.put("activeThreads", exportTaskExecutor.getActiveCount());
+        stats.put("pendingTasks", exportTaskMapper.countPendingTasks());
+        stats.put("processingTasks", exportTaskMapper.countProcessingTasks());
+        stats.put("usedPermits", exportSemaphore.getUsedPermits());
+        stats.put("maxPermits", exportSemaphore.getMaxPermits());
+        return stats;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 导出流水线
+ * 将导出拆分为 读取 -> 行转换 -> 写入 三个阶段，分别运行在独立线程上，阶段之间通过队列传递批次。
+ * 读取阶段在投递批次前需要获取许可，写入阶段写完后归还许可，因此同时在途的批次数不超过配置上限，
+ * 下游变慢时上游会被阻塞（背压），内存占用可控。
+ * 读取和行转换阶段运行在阶段线程池上；任一阶段失败时中断其余阶段，并等待它们退出后才返回，
+ * 调用方关闭文件、归还并发许可时不会再有读取线程占用着数据库连接。
+ */
+@Slf4j
+public class ExportPipeline {
+
+    /**
+     * 数据源：向处理器推送原始批次
+     */
+    @FunctionalInterface
+    public interface BatchSource {
+        void read(ExportDataReader.BatchHandler handler) throws Exception;
+    }
+
+    /**
+     * 写入器：消费转换后的行数据
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(List<List<Object>> rows) throws Exception;
+    }
+
+    private static final List<User> END_OF_BATCHES = new ArrayList<>(0);
+    private static final List<List<Object>> END_OF_ROWS = new ArrayList<>(0);
+
+    /**
+     * 在阶段线程池上运行的阶段数（读取、行转换）
+     */
+    private static final int BACKGROUND_STAGES = 2;
+
+    private final String taskId;
+    private final Executor stageExecutor;
+    private final long stopTimeoutMillis;
+    private final Semaphore inFlightPermits;
+    private final BlockingQueue<List<User>> batchQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<List<Object>>> rowQueue = new LinkedBlockingQueue<>();
+
+    private final StageStats readerStats = new StageStats();
+    private final StageStats converterStats = new StageStats();
+    private final StageStats writerStats = new StageStats();
+
+    /**
+     * 正在执行阶段的线程，阶段结束时移除；中断只针对仍在执行本流水线阶段的线程，不会误伤线程池复用后的其他任务
+     */
+    private final Set<Thread> stageThreads = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stagesDone = new CountDownLatch(BACKGROUND_STAGES);
+
+    private volatile Exception failure;
+
+    /**
+     * @param taskId 任务ID
+     * @param maxInFlightBatches 同时在途的最大批次数
+     * @param stageExecutor 运行读取和行转换阶段的线程池，必须能立即为两个阶段分配线程（不能排队）
+     * @param stopTimeoutMillis 失败时等待其余阶段退出的最长时间
+     */
+    public ExportPipeline(String taskId, int maxInFlightBatches, Executor stageExecutor, long stopTimeoutMillis) {
+        this.taskId = taskId;
+        this.inFlightPermits = new Semaphore(Math.max(1, maxInFlightBatches));
+        this.stageExecutor = stageExecutor;
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+
+    /**
+     * 运行流水线，写入阶段在调用线程上执行
+     *
+     * @param source 数据源
+     * @param converter 行转换函数
+     * @param writer 写入器
+     */
+    public void run(BatchSource source,
+                    Function<List<User>, List<List<Object>>> converter,
+                    BatchWriter writer) throws Exception {
+        int started = 0;
+        try {
+            stageExecutor.execute(() -> runStage(() -> runReader(source)));
+            started++;
+            stageExecutor.execute(() -> runStage(() -> runConverter(converter)));
+            started++;
+            runWriter(writer);
+        } catch (Exception e) {
+            fail(e);
+        }
+
+        if (failure != null) {
+            // 写入失败或上游失败时，唤醒可能阻塞在许可或队列上的阶段，并等待其退出
+            interruptStages();
+            for (int i = started; i < BACKGROUND_STAGES; i++) {
+                stagesDone.countDown();
+            }
+            if (!stagesDone.await(stopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("任务 {} 导出流水线中止后等待读取/转换阶段退出超时({} ms)", taskId, stopTimeoutMillis);
+            }
+            throw failure;
+        }
+
+        stagesDone.await();
+    }
+
+    /**
+     * 在阶段线程上执行一个阶段，结束时清除可能残留的中断标记，线程归还线程池后不影响其他任务
+     */
+    private void runStage(Runnable stage) {
+        Thread current = Thread.currentThread();
+        stageThreads.add(current);
+        try {
+            stage.run();
+        } finally {
+            synchronized (stageThreads) {
+                stageThreads.remove(current);
+                Thread.interrupted();
+            }
+            stagesDone.countDown();
+        }
+    }
+
+    private void interruptStages() {
+        synchronized (stageThreads) {
+            for (Thread thread : stageThreads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * 读取阶段
+     */
+    private void runReader(BatchSource source) {
+        long[] lastMark = {System.nanoTime()};
+        try {
+            if (failure != null) {
+                // 线程分配前流水线已中止，不再发起查询
+                return;
+            }
+            source.read(batch -> {
+                readerStats.addBusy(System.nanoTime() - lastMark[0]);
+                if (failure != null) {
+                    throw new IllegalStateException("导出流水线已中止");
+                }
+
+                long waitStart = System.nanoTime();
+                inFlightPermits.acquire();
+                readerStats.addWait(System.nanoTime() - waitStart);
+
+                readerStats.batches.incrementAndGet();
+                batchQueue.put(batch);
+                lastMark[0] = System.nanoTime();
+            });
+            readerStats.addBusy(System.nanoTime() - lastMark[0]);
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            batchQueue.add(END_OF_BATCHES);
+        }
+    }
+
+    /**
+     * 行转换阶段
+     */
+    private void runConverter(Function<List<User>, List<List<Object>>> converter) {
+        try {
+            while (true) {
+                long waitStart = System.nanoTime();
+                List<User> batch = batchQueue.take();
+                converterStats.addWait(System.nanoTime() - waitStart);
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+
+                long busyStart = System.nanoTime();
+                List<List<Object>> rows = converter.apply(batch);
+                converterStats.addBusy(System.nanoTime() - busyStart);
+                converterStats.batches.incrementAndGet();
+
+                rowQueue.put(rows);
+            }
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            rowQueue.add(END_OF_ROWS);
+        }
+    }
+
+    /**
+     * 写入阶段
+     */
+    private void runWriter(BatchWriter writer) throws Exception {
+        while (true) {
+            long waitStart = System.nanoTime();
+            List<List<Object>> rows = rowQueue.take();
+            writerStats.addWait(System.nanoTime() - waitStart);
+            if (rows == END_OF_ROWS || failure != null) {
+                break;
+            }
+
+            long busyStart = System.nanoTime();
+            writer.write(rows);
+            writerStats.addBusy(System.nanoTime() - busyStart);
+            writerStats.batches.incrementAndGet();
+
+            inFlightPermits.release();
+        }
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+            log.warn("任务 {} 导出流水线中止: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取各阶段统计信息
+     * busyMs为阶段实际工作耗时，waitMs为等待上游数据或下游许可的耗时；busy占比最高的阶段即瓶颈
+     *
+     * @return 阶段统计
+     */
+    public Map<String, Object> getStageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reader", readerStats.toMap());
+        stats.put("converter", converterStats.toMap());
+        stats.put("writer", writerStats.toMap());
+
+        String bottleneck = "reader";
+        long maxBusy = readerStats.busyNanos.get();
+        if (converterStats.busyNanos.get() > maxBusy) {
+            bottleneck = "converter";
+            maxBusy = converterStats.busyNanos.get();
+        }
+        if (writerStats.busyNanos.get() > maxBusy) {
+            bottleneck = "writer";
+        }
+        stats.put("bottleneck", bottleneck);
+        return stats;
+    }
+
+    /**
+     * 阶段统计数据
+     */
+    private static class StageStats {
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+
+        void addBusy(long nanos) {
+            busyNanos.addAndGet(nanos);
+        }
+
+        void addWait(long nanos) {
+            waitNanos.addAndGet(nanos);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("busyMs", busyNanos.get() / 1_000_000);
+            map.put("waitMs", waitNanos.get() / 1_000_000);
+            map.put("batches", batches.get());
+            return map;
+        }
+    }
+}
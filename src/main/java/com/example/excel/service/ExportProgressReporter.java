@@ -0,0 +1,166 @@
+package com.example.excel.service;
+
+import com.example.excel.mapper.ExportTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导出进度上报器
+ * 进度先记录在内存中，距上次写出超过时间间隔或进度增长超过阈值时才写出（write-behind）：
+ * 数据库只更新进度字段，Redis只写任务状态哈希中的两个字段，不回查数据库、不重新序列化整个任务。
+ * 每次写出同时发布一条进度事件，推送频率与写出频率一致；合并执行的跟随任务随主任务一起写出和推送。
+ * 状态变更前调用{@link #complete(String)}立即写出最终进度。
+ */
+@Slf4j
+@Component
+public class ExportProgressReporter {
+
+    @Autowired
+    private ExportTaskMapper exportTaskMapper;
+
+    @Autowired
+    private ExportTaskStateStore taskStateStore;
+
+    @Autowired
+    private ExportTaskCache taskCache;
+
+    @Autowired
+    private ExportEventHub exportEventHub;
+
+    @Autowired
+    private ExportTaskLeases taskLeases;
+
+    @Autowired
+    private ExportSingleFlight singleFlight;
+
+    @Value("${export.progress.flush-interval:1000}")
+    private Long flushIntervalMs;
+
+    @Value("${export.progress.flush-percent:5}")
+    private Double flushPercent;
+
+    private final Map<String, ProgressState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 上报进度，达到写出条件时在当前线程写出
+     *
+     * @param taskId 任务ID
+     * @param processedCount 已处理数量
+     * @param progress 进度百分比
+     */
+    public void report(String taskId, long processedCount, double progress) {
+        ProgressState state = states.computeIfAbsent(taskId, id -> new ProgressState());
+        synchronized (state) {
+            state.processedCount = processedCount;
+            state.progress = progress;
+            state.dirty = true;
+            if (System.currentTimeMillis() - state.lastFlushTime >= flushIntervalMs
+                    || progress - state.flushedProgress >= flushPercent) {
+                flush(taskId, state);
+            }
+        }
+    }
+
+    /**
+     * 任务结束（成功、失败）前调用：立即写出最终进度并清理内存状态
+     *
+     * @param taskId 任务ID
+     */
+    public void complete(String taskId) {
+        ProgressState state = states.remove(taskId);
+        if (state != null) {
+            synchronized (state) {
+                flush(taskId, state);
+            }
+        }
+    }
+
+    /**
+     * 丢弃尚未写出的进度（任务取消时调用）
+     *
+     * @param taskId 任务ID
+     */
+    public void discard(String taskId) {
+        states.remove(taskId);
+    }
+
+    /**
+     * 定时写出最近没有达到写出条件的进度，保证进度停止增长时也能最终可见
+     */
+    @Scheduled(fixedDelayString = "${export.progress.flush-interval:1000}")
+    public void flushPending() {
+        long now = System.currentTimeMillis();
+        states.forEach((taskId, state) -> {
+            synchronized (state) {
+                if (now - state.lastFlushTime >= flushIntervalMs) {
+                    flush(taskId, state);
+                }
+            }
+        });
+    }
+
+    /**
+     * 写出进度，调用方需持有state锁，保证同一任务的写出按顺序进行
+     */
+    private void flush(String taskId, ProgressState state) {
+        if (!state.dirty) {
+            return;
+        }
+        state.dirty = false;
+        state.lastFlushTime = System.currentTimeMillis();
+        state.flushedProgress = state.progress;
+
+        try {
+            String leaseToken = taskLeases.tokenOf(taskId);
+            if (leaseToken == null
+                    || exportTaskMapper.updateProgress(taskId, leaseToken, state.processedCount, state.progress) == 0) {
+                // 租约已失效（在其他实例上被取消，或已被回收），本实例停止导出
+                states.remove(taskId);
+                taskLeases.onLeaseLost(taskId, leaseToken);
+                return;
+            }
+            taskStateStore.updateProgress(taskId, state.processedCount, state.progress);
+            taskCache.updateProgress(taskId, state.processedCount, state.progress);
+            exportEventHub.publishProgress(taskId, state.processedCount, state.progress);
+            flushFollowers(taskId, state);
+        } catch (Exception e) {
+            // 进度写出失败不影响导出本身，下次上报时重试
+            state.dirty = true;
+            log.warn("任务 {} 进度写出失败: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 跟随任务的进度与主任务一致
+     */
+    private void flushFollowers(String taskId, ProgressState state) {
+        Set<String> followers = singleFlight.getFollowers(taskId);
+        if (followers.isEmpty()) {
+            return;
+        }
+        exportTaskMapper.updateFollowerProgress(taskId, state.processedCount, state.progress);
+        for (String followerTaskId : followers) {
+            taskStateStore.updateProgress(followerTaskId, state.processedCount, state.progress);
+            taskCache.updateProgress(followerTaskId, state.processedCount, state.progress);
+            exportEventHub.publishProgress(followerTaskId, state.processedCount, state.progress);
+        }
+    }
+
+    /**
+     * 任务进度状态
+     */
+    private static class ProgressState {
+        private long processedCount;
+        private double progress;
+        private boolean dirty;
+        private long lastFlushTime;
+        private double flushedProgress;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportResult;
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportResultMapper;
+import com.example.excel.writer.ExportFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出结果缓存
+ * 缓存键为 查询条件（按键排序、去掉空值）、导出字段、导出格式 和 数据版本（用户表的最大主键与最大更新时间）的SHA-256，
+ * 数据有新增或修改时版本随之变化，旧结果不再命中；数据版本只读取索引的一端，不需要按条件扫描。
+ * 数据版本看不到物理删除，也看不到与当前最大更新时间同一秒内的修改，这类变更要等条目超过有效期（ttl-seconds）后
+ * 才会反映到导出结果中；有效期按登记时间计算，命中不会延长。
+ * 命中时新任务直接指向已生成的文件，不再扫描用户表。缓存的文件就是生成它的任务的导出文件，
+ * 与其他导出文件共用存储管理的配额（export.storage.max-bytes），由存储管理按最近使用时间统一淘汰，
+ * 文件被淘汰时条目随之删除；命中创建的任务也引用该文件，命中会推迟文件被淘汰。
+ * 命中前经存储管理确认文件仍可读取（本地或远端存储）：配置了远端存储（export.storage.type）时任一实例都能命中
+ * 其他实例生成的文件；只使用本地存储时，文件不在本实例的临时目录即视为已不存在，条目被删除。
+ */
+@Component
+public class ExportResultCache {
+
+    @Autowired
+    private ExportResultMapper exportResultMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ExportStorageManager storageManager;
+
+    @Value("${export.result-cache.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${export.result-cache.ttl-seconds:3600}")
+    private Integer ttlSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(enabled);
+    }
+
+    /**
+     * 计算缓存键
+     *
+     * @param queryParams 查询条件（含导出字段）
+     * @param format 导出格式
+     * @param dataVersion 用户表的数据版本
+     * @return 缓存键
+     */
+    public String buildKey(Map<String, Object> queryParams, ExportFormat format, String dataVersion) {
+        return sha256(normalize(queryParams, format) + "|" + dataVersion);
+    }
+
+    /**
+     * 计算不含数据版本的请求签名（查询条件、导出字段和格式）
+     *
+     * @param queryParams 查询条件（含导出字段）
+     * @param format 导出格式
+     * @return 签名
+     */
+    public String buildSignature(Map<String, Object> queryParams, ExportFormat format) {
+        return sha256(normalize(queryParams, format));
+    }
+
+    private String normalize(Map<String, Object> queryParams, ExportFormat format) {
+        // 导出字段的顺序决定列顺序，保持原样；其余条件按键排序，空条件与未传等价
+        Map<String, Object> normalized = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null || "".equals(value)
+                    || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+                continue;
+            }
+            normalized.put(entry.getKey(), value);
+        }
+        try {
+            return objectMapper.writeValueAsString(normalized) + "|" + format.name();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("查询条件序列化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查找有效期内的导出结果，文件已不存在时删除条目；过期的条目不再命中，由淘汰清理或被新结果覆盖
+     *
+     * @param cacheKey 缓存键
+     * @return 导出结果，未命中时返回null
+     */
+    public ExportResult lookup(String cacheKey) {
+        ExportResult result = exportResultMapper.selectByCacheKey(cacheKey, ttlSeconds);
+        if (result != null && !storageManager.isAvailable(result.getFilePath())) {
+            exportResultMapper.deleteEntry(cacheKey, result.getFilePath());
+            result = null;
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        exportResultMapper.touch(cacheKey);
+        hits.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * 登记导出成功的任务生成的文件，文件占用计入存储管理的配额
+     *
+     * @param task 导出任务（需已设置缓存键）
+     * @param filePath 文件路径
+     * @param fileSize 文件大小
+     * @param sheetCount 工作表数量
+     */
+    public void register(ExportTask task, String filePath, long fileSize, int sheetCount) {
+        if (!isEnabled() || task.getResultKey() == null) {
+            return;
+        }
+        ExportResult result = new ExportResult();
+        result.setCacheKey(task.getResultKey());
+        result.setExportType(task.getExportType());
+        result.setFilePath(filePath);
+        result.setFileName(new File(filePath).getName());
+        result.setFileSize(fileSize);
+        result.setSheetCount(sheetCount);
+        result.setTotalCount(task.getTotalCount());
+        result.setSourceTaskId(task.getTaskId());
+        exportResultMapper.upsert(result);
+    }
+
+    /**
+     * 获取缓存统计
+     *
+     * @return 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("entries", exportResultMapper.countEntries());
+        stats.put("totalBytes", exportResultMapper.sumFileSize());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    static String sha256(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
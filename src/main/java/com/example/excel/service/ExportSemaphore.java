@@ -0,0 +1,146 @@
+package com.example.excel.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Redis的集群级导出许可
+ * 许可持有者保存在一个ZSET中（成员为任务ID，分值为租约到期时间），获取、续租都在Lua脚本中原子完成：
+ * 先清理已过期的持有者，再判断持有数是否达到上限。持有实例宕机后租约自然过期，许可不会泄漏。
+ * 租约到期时间统一按Redis服务器时间（TIME）计算，各实例的时钟偏差不影响租约长短。
+ */
+@Slf4j
+@Component
+public class ExportSemaphore {
+
+    /**
+     * 持有导出许可的任务（ZSET，基数即集群内正在处理的任务数）
+     * 旧版本的export:processing:count是字符串计数器，滚动发布期间新旧实例同时运行，使用新的键名避免类型冲突
+     */
+    public static final String PERMITS_KEY = "export:permits";
+
+    /**
+     * 按Redis服务器时间取当前毫秒数；先声明按效果复制，脚本中调用TIME后仍可写入（Redis 5以上默认如此）
+     */
+    private static final String SERVER_NOW = "redis.replicate_commands() "
+        + "local t = redis.call('TIME') "
+        + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) ";
+
+    /**
+     * KEYS[1]=许可ZSET，ARGV[1]=任务ID，ARGV[2]=租约时长(ms)，ARGV[3]=许可上限
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+        SERVER_NOW
+            + "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now) "
+            + "local expireAt = now + tonumber(ARGV[2]) "
+            + "if redis.call('ZSCORE', KEYS[1], ARGV[1]) then "
+            + "  redis.call('ZADD', KEYS[1], expireAt, ARGV[1]) return 1 end "
+            + "if redis.call('ZCARD', KEYS[1]) < tonumber(ARGV[3]) then "
+            + "  redis.call('ZADD', KEYS[1], expireAt, ARGV[1]) return 1 end "
+            + "return 0",
+        Long.class);
+
+    /**
+     * 续租：仅当仍持有未过期的许可时延长租约，返回0表示租约已过期被回收
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        SERVER_NOW
+            + "local expireAt = redis.call('ZSCORE', KEYS[1], ARGV[1]) "
+            + "if expireAt and tonumber(expireAt) > now then "
+            + "  redis.call('ZADD', KEYS[1], now + tonumber(ARGV[2]), ARGV[1]) return 1 end "
+            + "return 0",
+        Long.class);
+
+    /**
+     * 统计未过期的许可数
+     */
+    private static final DefaultRedisScript<Long> COUNT_SCRIPT = new DefaultRedisScript<>(
+        SERVER_NOW
+            + "return redis.call('ZCOUNT', KEYS[1], '(' .. now, '+inf')",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${export.max-concurrent-tasks:5}")
+    private Integer maxConcurrentTasks;
+
+    @Value("${export.admission.lease-seconds:60}")
+    private Integer leaseSeconds;
+
+    /**
+     * 本实例持有的许可，定时续租
+     */
+    private final Set<String> heldPermits = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 尝试为任务获取许可（同一任务重复获取视为续租）
+     *
+     * @param taskId 任务ID
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String taskId) {
+        Long acquired = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+            Collections.singletonList(PERMITS_KEY),
+            taskId, String.valueOf(leaseSeconds * 1000L), String.valueOf(maxConcurrentTasks));
+        if (acquired != null && acquired == 1L) {
+            heldPermits.add(taskId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 释放任务持有的许可
+     *
+     * @param taskId 任务ID
+     */
+    public void release(String taskId) {
+        heldPermits.remove(taskId);
+        stringRedisTemplate.opsForZSet().remove(PERMITS_KEY, taskId);
+    }
+
+    /**
+     * 定时为本实例持有的许可续租
+     */
+    @Scheduled(fixedDelayString = "${export.admission.renew-interval:20000}")
+    public void renewLeases() {
+        String lease = String.valueOf(leaseSeconds * 1000L);
+        List<String> keys = Collections.singletonList(PERMITS_KEY);
+        for (String taskId : heldPermits) {
+            try {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, keys, taskId, lease);
+                if (renewed == null || renewed == 0L) {
+                    log.warn("任务 {} 的导出许可租约已过期被回收", taskId);
+                    heldPermits.remove(taskId);
+                }
+            } catch (Exception e) {
+                log.warn("任务 {} 导出许可续租失败: {}", taskId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取集群内当前占用的许可数（不含已过期的租约）
+     *
+     * @return 占用的许可数
+     */
+    public long getUsedPermits() {
+        Long count = stringRedisTemplate.execute(COUNT_SCRIPT, Collections.singletonList(PERMITS_KEY));
+        return count != null ? count : 0L;
+    }
+
+    public int getMaxPermits() {
+        return maxConcurrentTasks;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.excel.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相同导出请求合并执行（single-flight）
+ * 以导出结果缓存键为标识，在Redis中登记正在执行的主任务：第一个请求成为主任务正常排队执行，
+ * 主任务结束前到达的相同请求只创建跟随任务，不再排队、不再扫描用户表；
+ * 跟随任务的进度随主任务写出，主任务结束时跟随任务与其同时结束并共享生成的文件。
+ * 登记带有过期时间，主任务所在实例宕机且任务未被回收时登记最终自然失效。
+ * 主任务先登记再创建任务记录，登记后的一小段时间内任务记录不存在属于正常情况，不视为失效。
+ * 主任务被取消而仍有跟随任务时，登记交给接手的跟随任务。
+ */
+@Slf4j
+@Component
+public class ExportSingleFlight {
+
+    private static final String INFLIGHT_KEY_PREFIX = "export:inflight:";
+    private static final String FOLLOWERS_KEY_PREFIX = "export:inflight:followers:";
+
+    /**
+     * 仅当登记仍指向该主任务时删除，KEYS[1]=登记，ARGV[1]=主任务ID
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+            + "return 0",
+        Long.class);
+
+    /**
+     * 仅当登记仍指向原主任务时改为指向接手的任务，KEYS[1]=登记，ARGV[1]=原主任务ID，ARGV[2]=接手的任务ID，ARGV[3]=过期时间
+     */
+    private static final DefaultRedisScript<Long> HAND_OVER_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+            + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1 end "
+            + "return 0",
+        Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${export.single-flight.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${export.single-flight.ttl:21600000}")
+    private Long ttlMs;
+
+    @Value("${export.single-flight.creation-grace:10000}")
+    private Long creationGraceMs;
+
+    @Value("${export.single-flight.retry-interval:50}")
+    private Long retryIntervalMs;
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(enabled);
+    }
+
+    /**
+     * 尝试登记为主任务
+     *
+     * @param resultKey 导出结果缓存键
+     * @param taskId 本次请求的任务ID
+     * @return 登记成功返回null，已有主任务时返回其任务ID
+     */
+    public String tryLead(String resultKey, String taskId) {
+        String key = INFLIGHT_KEY_PREFIX + resultKey;
+        Boolean leading = stringRedisTemplate.opsForValue().setIfAbsent(key, taskId, ttlMs, TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(leading)) {
+            return null;
+        }
+        String leaderTaskId = stringRedisTemplate.opsForValue().get(key);
+        // 登记恰好在两次调用之间被删除，视为登记失败，由调用方重试
+        return leaderTaskId != null ? leaderTaskId : "";
+    }
+
+    /**
+     * 登记是否仍在主任务创建任务记录的宽限期内
+     * 登记只在创建时设置过期时间，由剩余过期时间推算登记时长
+     *
+     * @param resultKey 导出结果缓存键
+     * @return 登记存在且未超过宽限期返回true
+     */
+    public boolean isCreating(String resultKey) {
+        Long remainingMs = stringRedisTemplate.getExpire(INFLIGHT_KEY_PREFIX + resultKey, TimeUnit.MILLISECONDS);
+        if (remainingMs == null || remainingMs < 0) {
+            return false;
+        }
+        return ttlMs - remainingMs < creationGraceMs;
+    }
+
+    /**
+     * 等待主任务创建任务记录后重试
+     */
+    public void awaitRetry() {
+        try {
+            Thread.sleep(retryIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待相同导出任务创建时被中断");
+        }
+    }
+
+    /**
+     * 主任务结束时删除登记
+     *
+     * @param resultKey 导出结果缓存键
+     * @param leaderTaskId 主任务ID
+     */
+    public void release(String resultKey, String leaderTaskId) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT,
+            Collections.singletonList(INFLIGHT_KEY_PREFIX + resultKey), leaderTaskId);
+        stringRedisTemplate.delete(FOLLOWERS_KEY_PREFIX + leaderTaskId);
+    }
+
+    /**
+     * 主任务被取消后把登记交给接手的跟随任务，其余跟随任务由调用方重新登记
+     *
+     * @param resultKey 导出结果缓存键
+     * @param leaderTaskId 原主任务ID
+     * @param newLeaderTaskId 接手的任务ID
+     * @return 登记仍指向原主任务并已交接时返回true
+     */
+    public boolean handOver(String resultKey, String leaderTaskId, String newLeaderTaskId) {
+        Long result = stringRedisTemplate.execute(HAND_OVER_SCRIPT,
+            Collections.singletonList(INFLIGHT_KEY_PREFIX + resultKey), leaderTaskId, newLeaderTaskId,
+            String.valueOf(ttlMs));
+        stringRedisTemplate.delete(FOLLOWERS_KEY_PREFIX + leaderTaskId);
+        return Long.valueOf(1L).equals(result);
+    }
+
+    /**
+     * 登记跟随任务
+     *
+     * @param leaderTaskId 主任务ID
+     * @param followerTaskId 跟随任务ID
+     */
+    public void addFollower(String leaderTaskId, String followerTaskId) {
+        String key = FOLLOWERS_KEY_PREFIX + leaderTaskId;
+        stringRedisTemplate.opsForSet().add(key, followerTaskId);
+        stringRedisTemplate.expire(key, ttlMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 跟随任务被单独取消时移除
+     *
+     * @param leaderTaskId 主任务ID
+     * @param followerTaskId 跟随任务ID
+     */
+    public void removeFollower(String leaderTaskId, String followerTaskId) {
+        stringRedisTemplate.opsForSet().remove(FOLLOWERS_KEY_PREFIX + leaderTaskId, followerTaskId);
+    }
+
+    /**
+     * 获取主任务当前的跟随任务
+     *
+     * @param leaderTaskId 主任务ID
+     * @return 跟随任务ID集合
+     */
+    public Set<String> getFollowers(String leaderTaskId) {
+        Set<String> followers = stringRedisTemplate.opsForSet().members(FOLLOWERS_KEY_PREFIX + leaderTaskId);
+        return followers != null ? followers : Collections.emptySet();
+    }
+}
@@ -0,0 +1,502 @@
+package com.example.excel.service;
+
+import com.example.excel.dto.ExportResponse;
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportResultMapper;
+import com.example.excel.mapper.ExportTaskMapper;
+import com.example.excel.storage.ExportStorage;
+import com.example.excel.storage.LocalExportStorage;
+import com.example.excel.storage.MirroredOutputStream;
+import com.example.excel.storage.StorageOutputStream;
+import com.example.excel.storage.StoredObject;
+import com.example.excel.writer.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出文件存储管理
+ * 导出文件按任务ID命名（taskId.扩展名），下载时的文件名仍按任务名生成，同名任务不会互相覆盖。
+ * 临时目录的总占用超过配额或磁盘剩余空间不足时，按最近使用时间淘汰已完成任务的文件（LRU），
+ * 超过保留时间未使用的文件也会被清理，文件被清理的任务标记为已过期（EXPIRED）；
+ * 增量导出的当前快照需要用于合并，不参与淘汰。结果缓存的文件也是任务的导出文件，使用同一个配额。
+ * 淘汰只在后台执行，启动导出时只检查占用，超出时请求后台尽快淘汰，剩余空间低于下限时拒绝新的导出。
+ * 后台定时清理失败或中断后遗留、不再被任何任务引用的未完成文件和分卷目录。
+ * 配置了远端存储（对象存储）时，导出文件同时保存到远端，本地文件只作为生成节点的副本：
+ * 下载优先读取本地文件，本地没有时从远端读取；本地空间不足时只删除已保存到远端的本地副本，任务仍可下载。
+ */
+@Slf4j
+@Component
+public class ExportStorageManager {
+
+    /**
+     * 每次淘汰查询的候选数量
+     */
+    private static final int EVICT_BATCH_SIZE = 20;
+
+    /**
+     * 占用统计的有效期，避免每次启动导出都遍历目录
+     */
+    private static final long USAGE_CACHE_MS = 5000;
+
+    @Autowired
+    private ExportTaskMapper exportTaskMapper;
+
+    @Autowired
+    private ExportResultMapper exportResultMapper;
+
+    @Autowired
+    private ExportTaskCache taskCache;
+
+    @Autowired
+    private ExportEventHub exportEventHub;
+
+    @Autowired
+    private LocalExportStorage localStorage;
+
+    @Autowired
+    private List<ExportStorage> storages;
+
+    @Value("${export.temp-path:/tmp/excel/}")
+    private String tempPath;
+
+    @Value("${export.storage.max-bytes:53687091200}")
+    private Long maxBytes;
+
+    @Value("${export.storage.min-free-bytes:5368709120}")
+    private Long minFreeBytes;
+
+    @Value("${export.storage.ttl:604800000}")
+    private Long ttl;
+
+    @Value("${export.storage.orphan-grace:3600000}")
+    private Long orphanGrace;
+
+    private volatile long usedBytes = -1L;
+    private volatile long usageTime;
+
+    /**
+     * 启动导出时发现空间不足，等待后台淘汰
+     */
+    private final AtomicBoolean evictRequested = new AtomicBoolean();
+
+    /**
+     * 远端存储，未配置时为null
+     */
+    private ExportStorage remoteStorage;
+
+    private final AtomicLong expiredFiles = new AtomicLong();
+    private final AtomicLong orphansRemoved = new AtomicLong();
+    private final AtomicLong rejectedExports = new AtomicLong();
+    private final AtomicLong droppedLocalCopies = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        for (ExportStorage storage : storages) {
+            if (storage != localStorage) {
+                remoteStorage = storage;
+            }
+        }
+    }
+
+    /**
+     * 分配任务的导出文件路径
+     *
+     * @param taskId 任务ID
+     * @param format 导出格式
+     * @return 文件路径
+     */
+    public String allocate(String taskId, ExportFormat format) {
+        File tempDir = new File(tempPath);
+        if (!tempDir.exists()) {
+            tempDir.mkdirs();
+        }
+        return localStorage.resolve(taskId + "." + format.getExtension()).getPath();
+    }
+
+    /**
+     * 打开导出文件的写入流：写入本地文件，配置了远端存储时同时分段上传
+     *
+     * @param filePath 文件路径
+     * @return 写入流，写入完成后需提交
+     */
+    public StorageOutputStream openOutput(String filePath) throws IOException {
+        String key = keyOf(filePath);
+        StorageOutputStream local = localStorage.openOutput(key);
+        if (remoteStorage == null) {
+            return local;
+        }
+        return new MirroredOutputStream(local, remoteStorage.openOutput(key));
+    }
+
+    /**
+     * 把已生成的本地文件保存到远端存储（需要随机写入、不能边写边传的格式），未配置远端存储时不处理
+     *
+     * @param filePath 文件路径
+     */
+    public void publish(String filePath) throws IOException {
+        if (remoteStorage != null) {
+            remoteStorage.upload(keyOf(filePath), new File(filePath));
+        }
+    }
+
+    /**
+     * 查找保存文件的存储，本地优先
+     *
+     * @param filePath 文件路径
+     * @return 文件信息，各存储都没有时返回null
+     */
+    public StoredObject locate(String filePath) throws IOException {
+        String key = keyOf(filePath);
+        StoredObject object = localStorage.stat(key);
+        if (object == null && remoteStorage != null) {
+            object = remoteStorage.stat(key);
+        }
+        return object;
+    }
+
+    /**
+     * 文件是否仍可读取（本地或远端）
+     *
+     * @param filePath 文件路径
+     * @return 是否可读取
+     */
+    public boolean isAvailable(String filePath) {
+        try {
+            return locate(filePath) != null;
+        } catch (IOException e) {
+            log.warn("查询导出文件失败: {}, 原因: {}", filePath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 确保本地有文件副本，本地没有时从远端存储下载（例如在其他节点上合并快照）
+     *
+     * @param filePath 文件路径
+     */
+    public void ensureLocal(String filePath) throws IOException {
+        File file = new File(filePath);
+        if (file.isFile() || remoteStorage == null) {
+            return;
+        }
+        remoteStorage.download(keyOf(filePath), localStorage.resolve(keyOf(filePath)));
+        log.info("已从{}存储下载导出文件: {}", remoteStorage.getType(), filePath);
+    }
+
+    private static String keyOf(String filePath) {
+        return new File(filePath).getName();
+    }
+
+    /**
+     * 生成文件的强ETag：导出文件生成后不再修改，按对象键（生成任务的ID）和大小计算，
+     * 本地和远端存储、跟随任务和命中结果缓存的任务得到同一个值；对象键取摘要，不暴露生成文件的任务ID
+     *
+     * @param filePath 文件路径
+     * @param fileSize 文件大小
+     * @return 强ETag（含引号）
+     */
+    public static String etagOf(String filePath, long fileSize) {
+        return "\"" + ExportResultCache.sha256(keyOf(filePath)).substring(0, 32) + "-"
+            + Long.toHexString(fileSize) + "\"";
+    }
+
+    /**
+     * 启动新的导出前检查存储空间，不在请求线程上淘汰文件：
+     * 占用超过配额时请求后台淘汰，导出照常进行；剩余空间低于下限时同时拒绝本次导出
+     */
+    public void checkCapacity() {
+        File tempDir = new File(tempPath);
+        if (!tempDir.exists()) {
+            return;
+        }
+        long usableBytes = tempDir.getUsableSpace();
+        if (currentUsage(false) <= maxBytes && usableBytes >= minFreeBytes) {
+            return;
+        }
+        evictRequested.set(true);
+        if (usableBytes < minFreeBytes) {
+            rejectedExports.incrementAndGet();
+            throw new RuntimeException(String.format("导出存储空间不足（剩余 %d MB），请稍后再试",
+                usableBytes / 1024 / 1024));
+        }
+    }
+
+    /**
+     * 启动导出时发现空间不足后，由后台尽快淘汰，不等下一次定时清理
+     */
+    @Scheduled(fixedDelayString = "${export.storage.evict-check-interval:5000}")
+    public void evictIfRequested() {
+        if (!evictRequested.getAndSet(false)) {
+            return;
+        }
+        try {
+            evict();
+        } catch (Exception e) {
+            log.warn("导出文件淘汰失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录文件下载时间，供淘汰时判断最近使用
+     *
+     * @param taskId 任务ID
+     */
+    public void touch(String taskId) {
+        exportTaskMapper.touchLastAccess(taskId);
+    }
+
+    /**
+     * 清理文件：删除结果缓存条目，引用该文件的已成功任务标记为已过期，再删除本地和远端的文件
+     *
+     * @param filePath 文件路径
+     */
+    public void expireFile(String filePath) {
+        exportResultMapper.deleteByFilePath(filePath);
+        int expired = exportTaskMapper.expireByFilePath(filePath);
+        File file = new File(filePath);
+        long fileSize = file.length();
+        file.delete();
+        if (remoteStorage != null) {
+            try {
+                remoteStorage.delete(keyOf(filePath));
+            } catch (IOException e) {
+                log.warn("删除{}存储中的导出文件失败: {}, 原因: {}", remoteStorage.getType(), filePath, e.getMessage());
+            }
+        }
+        if (expired > 0) {
+            for (ExportTask task : exportTaskMapper.selectByFilePath(filePath)) {
+                if ("EXPIRED".equals(task.getStatus())) {
+                    publishExpired(task);
+                }
+            }
+        }
+        expiredFiles.incrementAndGet();
+        usedBytes = -1L;
+        log.info("清理导出文件: {}, 大小: {} bytes, 过期任务数: {}", filePath, fileSize, expired);
+    }
+
+    /**
+     * 定时清理：过期文件、超出配额的文件和遗留的未完成文件
+     */
+    @Scheduled(fixedDelayString = "${export.storage.sweep-interval:600000}",
+        initialDelayString = "${export.storage.sweep-interval:600000}")
+    public void sweep() {
+        File tempDir = new File(tempPath);
+        if (!tempDir.isDirectory()) {
+            return;
+        }
+        try {
+            evict();
+            removeOrphans(tempDir);
+        } catch (Exception e) {
+            log.warn("导出文件清理失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 先清理超过保留时间未使用的文件，再按最近使用时间淘汰到配额和剩余空间以内
+     * 保留时间对整个集群生效；配额只按本节点的临时目录统计，只淘汰本节点磁盘上的文件
+     */
+    private synchronized void evict() {
+        LocalDateTime usedBefore = LocalDateTime.now().minus(ttl, ChronoUnit.MILLIS);
+        List<Map<String, Object>> expired;
+        do {
+            expired = exportTaskMapper.selectFilesByLastUse(usedBefore, 0, EVICT_BATCH_SIZE);
+            for (Map<String, Object> candidate : expired) {
+                expireFile((String) candidate.get("filePath"));
+            }
+        } while (expired.size() == EVICT_BATCH_SIZE);
+
+        File tempDir = new File(tempPath);
+        long usage = currentUsage(true);
+        // 只删除本地副本的文件仍在查询结果中，跳过这些文件继续向后查询
+        int offset = 0;
+        while (usage > maxBytes || tempDir.getUsableSpace() < minFreeBytes) {
+            List<Map<String, Object>> candidates = exportTaskMapper.selectFilesByLastUse(null, offset,
+                EVICT_BATCH_SIZE);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> candidate : candidates) {
+                String filePath = (String) candidate.get("filePath");
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    // 配额按本节点的临时目录统计，其他节点生成的文件不占本节点空间，不能由本节点淘汰
+                    offset++;
+                    continue;
+                }
+                usage -= file.length();
+                if (dropLocalCopy(filePath)) {
+                    offset++;
+                } else {
+                    expireFile(filePath);
+                }
+                if (usage <= maxBytes && tempDir.getUsableSpace() >= minFreeBytes) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 文件已保存到远端存储时只删除本地副本
+     *
+     * @return 是否已保存到远端（本地副本已删除或本来就不存在）
+     */
+    private boolean dropLocalCopy(String filePath) {
+        if (remoteStorage == null) {
+            return false;
+        }
+        try {
+            if (remoteStorage.stat(keyOf(filePath)) == null) {
+                return false;
+            }
+        } catch (IOException e) {
+            // 无法确认远端是否有文件时保留本地文件，也不标记过期
+            log.warn("查询{}存储中的导出文件失败: {}, 原因: {}", remoteStorage.getType(), filePath, e.getMessage());
+            return true;
+        }
+        File file = new File(filePath);
+        if (file.delete()) {
+            droppedLocalCopies.incrementAndGet();
+            usedBytes = -1L;
+            log.info("删除已保存到{}存储的本地副本: {}", remoteStorage.getType(), filePath);
+        }
+        return true;
+    }
+
+    /**
+     * 清理不再被任何任务引用的文件和分卷目录
+     * 排队和处理中的任务可能从检查点继续，按文件名中的任务ID识别后保留；
+     * 最近修改过的文件可能正在写入，超过宽限时间后才清理
+     */
+    private void removeOrphans(File tempDir) {
+        Set<String> retained = new HashSet<>();
+        for (String filePath : exportTaskMapper.selectRetainedFilePaths()) {
+            retained.add(new File(filePath).getAbsolutePath());
+        }
+        File[] entries = tempDir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File entry : entries) {
+            if (retained.contains(entry.getAbsolutePath()) || now - entry.lastModified() < orphanGrace) {
+                continue;
+            }
+            String name = entry.getName();
+            int dot = name.indexOf('.');
+            ExportTask task = dot > 0 ? exportTaskMapper.selectByTaskId(name.substring(0, dot)) : null;
+            if (task != null && ("PENDING".equals(task.getStatus()) || "PROCESSING".equals(task.getStatus()))) {
+                continue;
+            }
+            if (!deleteRecursively(entry)) {
+                continue;
+            }
+            orphansRemoved.incrementAndGet();
+            usedBytes = -1L;
+            log.info("清理遗留的导出文件: {}", entry);
+            if (task != null && exportTaskMapper.expireFailedTask(task.getTaskId()) > 0) {
+                ExportTask expired = exportTaskMapper.selectByTaskId(task.getTaskId());
+                if (expired != null) {
+                    publishExpired(expired);
+                }
+            }
+        }
+    }
+
+    /**
+     * 临时目录的总占用（文件和分卷目录）
+     */
+    private long currentUsage(boolean refresh) {
+        long now = System.currentTimeMillis();
+        if (!refresh && usedBytes >= 0 && now - usageTime < USAGE_CACHE_MS) {
+            return usedBytes;
+        }
+        long total = sizeOf(new File(tempPath));
+        usedBytes = total;
+        usageTime = now;
+        return total;
+    }
+
+    private static long sizeOf(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long total = 0L;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                total += sizeOf(child);
+            }
+        }
+        return total;
+    }
+
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return file.delete();
+    }
+
+    /**
+     * 更新缓存并推送已过期状态
+     */
+    private void publishExpired(ExportTask task) {
+        taskCache.put(task);
+        ExportResponse response = new ExportResponse();
+        response.setTaskId(task.getTaskId());
+        response.setTaskName(task.getTaskName());
+        response.setStatus(task.getStatus());
+        response.setProgress(task.getProgress());
+        response.setTotalCount(task.getTotalCount());
+        response.setProcessedCount(task.getProcessedCount());
+        response.setFileName(task.getFileName());
+        response.setErrorMessage(task.getErrorMessage());
+        response.setStartTime(task.getStartTime());
+        response.setEndTime(task.getEndTime());
+        response.setCreateTime(task.getCreateTime());
+        exportEventHub.publishStatus(response);
+    }
+
+    /**
+     * 获取存储统计
+     *
+     * @return 存储统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        File tempDir = new File(tempPath);
+        stats.put("remoteStorage", remoteStorage != null ? remoteStorage.getType() : null);
+        stats.put("usedBytes", tempDir.exists() ? currentUsage(false) : 0L);
+        stats.put("maxBytes", maxBytes);
+        stats.put("usableBytes", tempDir.exists() ? tempDir.getUsableSpace() : 0L);
+        stats.put("minFreeBytes", minFreeBytes);
+        stats.put("ttl", ttl);
+        stats.put("expiredFiles", expiredFiles.get());
+        stats.put("orphansRemoved", orphansRemoved.get());
+        stats.put("droppedLocalCopies", droppedLocalCopies.get());
+        stats.put("rejectedExports", rejectedExports.get());
+        return stats;
+    }
+}
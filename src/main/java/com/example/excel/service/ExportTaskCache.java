@@ -0,0 +1,195 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportTaskMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出任务近端缓存
+ * 查询顺序为 本地缓存 -> Redis任务状态 -> 数据库，状态查询和文件下载共用同一份缓存。
+ * 本地缓存按LRU淘汰，已结束（成功、失败、取消）的任务状态不再变化，缓存时间较长；排队和处理中的任务只缓存很短时间。
+ * 本实例的状态变更直接写入缓存，其他实例的状态变更通过任务事件频道收到后淘汰对应条目。
+ */
+@Slf4j
+@Component
+public class ExportTaskCache implements MessageListener {
+
+    @Autowired
+    private ExportTaskMapper exportTaskMapper;
+
+    @Autowired
+    private ExportTaskStateStore taskStateStore;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${export.near-cache.max-size:1000}")
+    private Integer maxSize;
+
+    @Value("${export.near-cache.terminal-ttl:600000}")
+    private Long terminalTtlMs;
+
+    @Value("${export.near-cache.active-ttl:1000}")
+    private Long activeTtlMs;
+
+    /**
+     * 访问顺序的LinkedHashMap，超过容量时淘汰最久未访问的条目
+     */
+    private Map<String, CacheEntry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(ExportEventHub.EVENT_CHANNEL));
+    }
+
+    /**
+     * 获取任务
+     * 返回的对象由缓存共享，调用方不应修改
+     *
+     * @param taskId 任务ID
+     * @return 导出任务，不存在时返回null
+     */
+    public ExportTask get(String taskId) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CacheEntry entry = entries.get(taskId);
+            if (entry != null) {
+                if (entry.expireAt > now) {
+                    hits.incrementAndGet();
+                    return entry.task;
+                }
+                entries.remove(taskId);
+            }
+        }
+        misses.incrementAndGet();
+
+        ExportTask task = taskStateStore.load(taskId);
+        if (task == null) {
+            task = exportTaskMapper.selectByTaskId(taskId);
+            if (task == null) {
+                return null;
+            }
+            taskStateStore.save(task);
+        }
+        putLocal(task);
+        return task;
+    }
+
+    /**
+     * 任务创建或状态变更后写入缓存（同时写入Redis任务状态）
+     *
+     * @param task 导出任务
+     */
+    public void put(ExportTask task) {
+        taskStateStore.save(task);
+        putLocal(task);
+    }
+
+    /**
+     * 更新本地缓存中的进度（Redis中的进度由进度上报器写入）
+     *
+     * @param taskId 任务ID
+     * @param processedCount 已处理数量
+     * @param progress 进度百分比
+     */
+    public synchronized void updateProgress(String taskId, long processedCount, double progress) {
+        CacheEntry entry = entries.get(taskId);
+        if (entry != null) {
+            entry.task.setProcessedCount(processedCount);
+            entry.task.setProgress(progress);
+        }
+    }
+
+    /**
+     * 淘汰本地缓存条目
+     *
+     * @param taskId 任务ID
+     */
+    public synchronized void invalidate(String taskId) {
+        entries.remove(taskId);
+    }
+
+    /**
+     * 收到任务状态变更事件时淘汰本地条目，下次查询从Redis重新加载
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JsonNode node = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (ExportEventHub.EVENT_STATUS.equals(node.path("event").asText())) {
+                invalidate(node.path("taskId").asText());
+            }
+        } catch (Exception e) {
+            log.warn("任务缓存淘汰失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     *
+     * @return 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private void putLocal(ExportTask task) {
+        long ttl = isCompleted(task.getStatus()) ? terminalTtlMs : activeTtlMs;
+        CacheEntry entry = new CacheEntry(task, System.currentTimeMillis() + ttl);
+        synchronized (this) {
+            entries.put(task.getTaskId(), entry);
+        }
+    }
+
+    private static boolean isCompleted(String status) {
+        return "SUCCESS".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status)
+            || "EXPIRED".equals(status);
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class CacheEntry {
+        private final ExportTask task;
+        private final long expireAt;
+
+        private CacheEntry(ExportTask task, long expireAt) {
+            this.task = task;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 导出任务执行租约
+ * 认领任务时生成租约令牌写入export_task，执行实例对该任务的进度、检查点、文件信息和状态更新都带上令牌，
+ * 任务被取消或租约过期放回队列后令牌作废，原执行实例的更新影响0行，随即在本地停止导出，
+ * 不会出现两个实例同时写同一个任务的情况。
+ * 租约由定时任务续租，与数据批次的处理进度无关：单批数据耗时很长时租约也不会过期；
+ * 连续无法续租（如数据库不可达）接近租约时长时本实例主动停止，避免在任务被其他实例接手后继续执行。
+ */
+@Slf4j
+@Component
+public class ExportTaskLeases {
+
+    @Autowired
+    private ExportTaskMapper exportTaskMapper;
+
+    @Autowired
+    private ExportCancellation exportCancellation;
+
+    @Value("${export.scheduler.lease-seconds:60}")
+    private Integer leaseSeconds;
+
+    @Value("${export.scheduler.lease-renew-interval:15000}")
+    private Long renewInterval;
+
+    /**
+     * 本实例持有的租约
+     */
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * 生成新的租约令牌
+     *
+     * @return 租约令牌
+     */
+    public String newToken() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * 认领待执行任务并持有租约
+     *
+     * @param taskId 任务ID
+     * @return 租约令牌，任务已被其他实例认领时返回null
+     */
+    public String claim(String taskId) {
+        String token = newToken();
+        if (exportTaskMapper.claimTask(taskId, token, leaseSeconds) == 0) {
+            return null;
+        }
+        leases.put(taskId, new Lease(token));
+        return token;
+    }
+
+    /**
+     * 持有直接以处理中状态创建的任务的租约（同步导出），立即按数据库时间设置到期时间
+     *
+     * @param taskId 任务ID
+     * @param token 创建任务时写入的租约令牌
+     */
+    public void hold(String taskId, String token) {
+        leases.put(taskId, new Lease(token));
+        if (exportTaskMapper.renewLease(taskId, token, leaseSeconds) == 0) {
+            onLeaseLost(taskId, token);
+        }
+    }
+
+    /**
+     * 获取本实例持有的租约令牌
+     *
+     * @param taskId 任务ID
+     * @return 租约令牌，未持有时返回null
+     */
+    public String tokenOf(String taskId) {
+        Lease lease = leases.get(taskId);
+        return lease != null ? lease.token : null;
+    }
+
+    /**
+     * 任务执行结束后释放租约（数据库中的租约由状态更新一并清除）
+     *
+     * @param taskId 任务ID
+     * @param token 租约令牌
+     */
+    public void release(String taskId, String token) {
+        leases.computeIfPresent(taskId, (id, lease) -> lease.token.equals(token) ? null : lease);
+    }
+
+    /**
+     * 带令牌的更新影响0行：任务已被取消或已被回收，本实例停止导出
+     *
+     * @param taskId 任务ID
+     * @param token 租约令牌
+     */
+    public void onLeaseLost(String taskId, String token) {
+        if (token != null) {
+            release(taskId, token);
+        }
+        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+        if (task == null || "CANCELLED".equals(task.getStatus())) {
+            exportCancellation.cancelLocal(taskId);
+        } else {
+            exportCancellation.abandonLocal(taskId);
+        }
+    }
+
+    /**
+     * 定时为本实例持有的租约续租
+     */
+    @Scheduled(fixedDelayString = "${export.scheduler.lease-renew-interval:15000}")
+    public void renewLeases() {
+        leases.forEach((taskId, lease) -> {
+            long now = System.currentTimeMillis();
+            try {
+                if (exportTaskMapper.renewLease(taskId, lease.token, leaseSeconds) == 0) {
+                    log.warn("导出任务 {} 的执行租约已失效（任务已取消或已被回收），停止执行", taskId);
+                    onLeaseLost(taskId, lease.token);
+                } else {
+                    lease.renewedTime = now;
+                }
+            } catch (Exception e) {
+                if (now - lease.renewedTime >= leaseSeconds * 1000L - renewInterval) {
+                    // 下次续租前租约就会过期，任务随时可能被其他实例接手
+                    log.warn("导出任务 {} 长时间无法续租，停止执行: {}", taskId, e.getMessage());
+                    release(taskId, lease.token);
+                    exportCancellation.abandonLocal(taskId);
+                } else {
+                    log.warn("导出任务 {} 续租失败，稍后重试: {}", taskId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 执行租约
+     */
+    private static class Lease {
+        private final String token;
+        private volatile long renewedTime = System.currentTimeMillis();
+
+        private Lease(String token) {
+            this.token = token;
+        }
+    }
+}
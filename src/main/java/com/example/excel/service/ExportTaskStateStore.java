@@ -0,0 +1,210 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导出任务状态缓存
+ * 每个任务保存为一个Redis哈希，字段名使用短名称，字段值为纯文本（数字直接写十进制，时间写为epoch秒），
+ * 没有类型信息和JSON结构；进度更新只写两个字段，状态查询只读取构建响应需要的字段。
+ * 只有save创建哈希并设置过期时间，进度更新不会重新创建已过期的哈希。
+ */
+@Component
+public class ExportTaskStateStore {
+
+    private static final String STATE_KEY_PREFIX = "export:task:state:";
+
+    private static final String F_ID = "id";
+    private static final String F_TASK_NAME = "n";
+    private static final String F_STATUS = "s";
+    private static final String F_PRIORITY = "pr";
+    private static final String F_TOTAL_COUNT = "t";
+    private static final String F_PROCESSED_COUNT = "c";
+    private static final String F_PROGRESS = "p";
+    private static final String F_FILE_PATH = "fp";
+    private static final String F_FILE_NAME = "fn";
+    private static final String F_FILE_SIZE = "fs";
+    private static final String F_SHEET_COUNT = "sc";
+    private static final String F_ERROR_MESSAGE = "e";
+    private static final String F_START_TIME = "st";
+    private static final String F_END_TIME = "et";
+    private static final String F_CREATE_TIME = "ct";
+    private static final String F_EXPORT_TYPE = "x";
+    private static final String F_TOTAL_ESTIMATED = "te";
+    private static final String F_RESULT_KEY = "rk";
+    private static final String F_FOLLOW_TASK_ID = "f";
+    private static final String F_FILE_ETAG = "fe";
+
+    /**
+     * 状态查询和文件下载读取的字段，顺序与{@link #decode}一致
+     */
+    private static final List<Object> RESPONSE_FIELDS = Arrays.asList(
+        F_ID, F_TASK_NAME, F_STATUS, F_PRIORITY, F_TOTAL_COUNT, F_PROCESSED_COUNT, F_PROGRESS,
+        F_FILE_PATH, F_FILE_NAME, F_FILE_SIZE, F_SHEET_COUNT, F_ERROR_MESSAGE,
+        F_START_TIME, F_END_TIME, F_CREATE_TIME, F_EXPORT_TYPE, F_TOTAL_ESTIMATED, F_RESULT_KEY, F_FOLLOW_TASK_ID,
+        F_FILE_ETAG);
+
+    /**
+     * 仅当状态缓存存在时写入进度：缓存过期后不会被进度更新重新创建为没有过期时间的残缺哈希
+     * KEYS[1]=状态哈希，ARGV[1]=已处理数量，ARGV[2]=进度百分比
+     */
+    private static final DefaultRedisScript<Long> UPDATE_PROGRESS_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 1 then "
+            + "  redis.call('HSET', KEYS[1], '" + F_PROCESSED_COUNT + "', ARGV[1], '" + F_PROGRESS + "', ARGV[2]) "
+            + "  return 1 end "
+            + "return 0",
+        Long.class);
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${export.timeout:30}")
+    private Integer timeoutMinutes;
+
+    /**
+     * 保存任务状态（任务创建和状态变更时调用）
+     *
+     * @param task 导出任务
+     */
+    public void save(ExportTask task) {
+        String key = STATE_KEY_PREFIX + task.getTaskId();
+        stringRedisTemplate.opsForHash().putAll(key, encode(task));
+        stringRedisTemplate.expire(key, timeoutMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 更新进度，只写入两个字段
+     * 缓存已过期时不写入，下次读取时从数据库重新加载完整的任务
+     *
+     * @param taskId 任务ID
+     * @param processedCount 已处理数量
+     * @param progress 进度百分比
+     * @return 是否已写入
+     */
+    public boolean updateProgress(String taskId, long processedCount, double progress) {
+        Long updated = stringRedisTemplate.execute(UPDATE_PROGRESS_SCRIPT,
+            Collections.singletonList(STATE_KEY_PREFIX + taskId),
+            Long.toString(processedCount), Double.toString(progress));
+        return updated != null && updated == 1L;
+    }
+
+    /**
+     * 读取任务状态
+     *
+     * @param taskId 任务ID
+     * @return 导出任务（只包含构建响应和文件下载需要的字段），不存在时返回null
+     */
+    public ExportTask load(String taskId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(STATE_KEY_PREFIX + taskId, RESPONSE_FIELDS);
+        if (values == null || values.get(2) == null) {
+            // 没有状态字段说明缓存不存在或已过期（进度更新不会单独创建完整的缓存）
+            return null;
+        }
+        return decode(taskId, values);
+    }
+
+    /**
+     * 删除任务状态
+     *
+     * @param taskId 任务ID
+     */
+    public void delete(String taskId) {
+        stringRedisTemplate.delete(STATE_KEY_PREFIX + taskId);
+    }
+
+    /**
+     * 编码任务，值为null的字段不写入
+     *
+     * @param task 导出任务
+     * @return 哈希字段
+     */
+    public static Map<String, String> encode(ExportTask task) {
+        Map<String, String> fields = new HashMap<>(32);
+        put(fields, F_ID, task.getId());
+        put(fields, F_TASK_NAME, task.getTaskName());
+        put(fields, F_STATUS, task.getStatus());
+        put(fields, F_PRIORITY, task.getPriority());
+        put(fields, F_TOTAL_COUNT, task.getTotalCount());
+        put(fields, F_PROCESSED_COUNT, task.getProcessedCount());
+        put(fields, F_PROGRESS, task.getProgress());
+        put(fields, F_FILE_PATH, task.getFilePath());
+        put(fields, F_FILE_NAME, task.getFileName());
+        put(fields, F_FILE_SIZE, task.getFileSize());
+        put(fields, F_SHEET_COUNT, task.getSheetCount());
+        put(fields, F_ERROR_MESSAGE, task.getErrorMessage());
+        put(fields, F_START_TIME, toEpochSecond(task.getStartTime()));
+        put(fields, F_END_TIME, toEpochSecond(task.getEndTime()));
+        put(fields, F_CREATE_TIME, toEpochSecond(task.getCreateTime()));
+        put(fields, F_EXPORT_TYPE, task.getExportType());
+        put(fields, F_TOTAL_ESTIMATED, task.getTotalEstimated());
+        put(fields, F_RESULT_KEY, task.getResultKey());
+        put(fields, F_FOLLOW_TASK_ID, task.getFollowTaskId());
+        put(fields, F_FILE_ETAG, task.getFileEtag());
+        return fields;
+    }
+
+    private static ExportTask decode(String taskId, List<Object> values) {
+        ExportTask task = new ExportTask();
+        task.setTaskId(taskId);
+        task.setId(toLong(values.get(0)));
+        task.setTaskName((String) values.get(1));
+        task.setStatus((String) values.get(2));
+        task.setPriority(toInteger(values.get(3)));
+        task.setTotalCount(toLong(values.get(4)));
+        task.setProcessedCount(toLong(values.get(5)));
+        task.setProgress(values.get(6) != null ? Double.valueOf((String) values.get(6)) : null);
+        task.setFilePath((String) values.get(7));
+        task.setFileName((String) values.get(8));
+        task.setFileSize(toLong(values.get(9)));
+        task.setSheetCount(toInteger(values.get(10)));
+        task.setErrorMessage((String) values.get(11));
+        task.setStartTime(toDateTime(values.get(12)));
+        task.setEndTime(toDateTime(values.get(13)));
+        task.setCreateTime(toDateTime(values.get(14)));
+        task.setExportType((String) values.get(15));
+        task.setTotalEstimated(values.get(16) != null ? Boolean.valueOf((String) values.get(16)) : null);
+        task.setResultKey((String) values.get(17));
+        task.setFollowTaskId((String) values.get(18));
+        task.setFileEtag((String) values.get(19));
+        return task;
+    }
+
+    private static void put(Map<String, String> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, value.toString());
+        }
+    }
+
+    private static Long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZONE).toEpochSecond() : null;
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        return value != null
+            ? LocalDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong((String) value)), ZONE) : null;
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? Long.valueOf((String) value) : null;
+    }
+
+    private static Integer toInteger(Object value) {
+        return value != null ? Integer.valueOf((String) value) : null;
+    }
+}
@@ -1,21 +1,25 @@
 package com.example.excel.service;
 
 import com.example.excel.entity.ExportTask;
-import com.example.excel.mapper.ExportTaskMapper;
+import com.example.excel.storage.LocalExportStorage;
+import com.example.excel.storage.StoredObject;
+import com.example.excel.writer.ExportFormat;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * 文件下载服务
@@ -24,22 +28,53 @@ import java.nio.charset.StandardCharsets;
 @Service
 public class FileDownloadService {
 
+    /**
+     * 单个请求最多接受的区间数，超过时按完整文件响应
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * 小于该大小的区间直接写出，sendfile的额外开销不划算
+     */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Autowired
-    private ExportTaskMapper exportTaskMapper;
+    private ExportTaskCache taskCache;
+
+    @Autowired
+    private ExportStorageManager storageManager;
+
+    @Autowired
+    private LocalExportStorage localStorage;
 
     /**
      * 下载导出文件
+     * 支持单个和多个Range（206）、强ETag、If-None-Match和If-Range，中断的下载可以从已收到的位置继续；
+     * 本地有文件、整个响应是一个连续区间且容器支持sendfile时，交给容器由内核直接发送，否则经响应输出流逐块复制；
+     * 本地没有时按区间从远端存储读取。ETag随任务保存，与保存文件的存储无关，从本地切换到远端读取后断点续传仍然有效
      *
      * @param taskId 任务ID
-     * @return 文件响应
+     * @param request 请求
+     * @param response 响应
+     * @throws IOException 写出失败（通常是客户端中断了下载）
      */
-    public ResponseEntity<Resource> downloadFile(String taskId) {
+    public void downloadFile(String taskId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         // 查询任务信息
-        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+        ExportTask task = taskCache.get(taskId);
         if (task == null) {
             throw new RuntimeException("任务不存在");
         }
 
+        if ("EXPIRED".equals(task.getStatus())) {
+            throw new RuntimeException("导出文件已过期清理，请重新导出");
+        }
+
         if (!"SUCCESS".equals(task.getStatus())) {
             throw new RuntimeException("任务未完成或已失败");
         }
@@ -48,45 +83,209 @@ public class FileDownloadService {
             throw new RuntimeException("文件路径不存在");
         }
 
-        // 检查文件是否存在
-        File file = new File(task.getFilePath());
-        if (!file.exists()) {
+        // 检查文件是否存在（本地优先，其次远端存储）
+        StoredObject object = storageManager.locate(task.getFilePath());
+        if (object == null) {
             throw new RuntimeException("文件不存在");
         }
+        // 记录下载时间，最近下载过的文件最后被淘汰
+        storageManager.touch(taskId);
+
+        // 导出文件生成后不再修改，ETag为强ETag；跟随任务和命中结果缓存的任务共享同一个ETag，
+        // 升级前完成的任务没有保存ETag，按相同规则计算
+        long fileLength = object.getSize();
+        long lastModified = object.getLastModified();
+        String etag = task.getFileEtag() != null ? task.getFileEtag()
+            : ExportStorageManager.etagOf(task.getFilePath(), fileLength);
+
+        // 编码文件名，支持中文
+        String encodedFileName = URLEncoder.encode(task.getFileName(), StandardCharsets.UTF_8)
+            .replaceAll("\\+", "%20");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFileName);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        // 允许客户端保留文件，但每次使用前需用ETag验证
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String contentType = ExportFormat.fromExportType(task.getExportType()).getContentType();
+        List<long[]> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isIfRangeSatisfied(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, fileLength);
+        }
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges == null) {
+            log.info("开始下载文件: {}, 大小: {} bytes", task.getFileName(), fileLength);
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(fileLength);
+            if (!head) {
+                sendRegion(request, response, object, 0, fileLength);
+            }
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            long length = range[1] - range[0] + 1;
+            log.info("开始下载文件: {}, 区间: {}-{}/{}", task.getFileName(), range[0], range[1], fileLength);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + fileLength);
+            if (!head) {
+                sendRegion(request, response, object, range[0], length);
+            }
+            return;
+        }
+
+        // 多个区间：multipart/byteranges，先算出各部分的头部以给出准确的Content-Length
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0L;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + fileLength + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += closing.length;
+        log.info("开始下载文件: {}, 区间数: {}", task.getFileName(), ranges.size());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        OutputStream outputStream = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            outputStream.write(partHeaders.get(i));
+            object.getStorage().read(object.getKey(), range[0], range[1] - range[0] + 1, outputStream);
+        }
+        outputStream.write(closing);
+        outputStream.flush();
+    }
+
+    /**
+     * 写出文件的一个连续区间作为整个响应体
+     */
+    private void sendRegion(HttpServletRequest request, HttpServletResponse response, StoredObject object,
+                            long start, long length) throws IOException {
+        if (object.getStorage() == localStorage && length >= SENDFILE_MIN_BYTES
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // 由容器在请求处理结束后用sendfile发送，数据不经过用户态缓冲区
+            File file = localStorage.resolve(object.getKey());
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return;
+        }
+        OutputStream outputStream = response.getOutputStream();
+        object.getStorage().read(object.getKey(), start, length, outputStream);
+        outputStream.flush();
+    }
 
+    /**
+     * 解析Range请求头
+     *
+     * @param header Range请求头
+     * @param fileLength 文件大小
+     * @return 区间列表（闭区间），格式不支持时返回null（按完整文件响应），均不可满足时返回空列表
+     */
+    static List<long[]> parseRanges(String header, long fileLength) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    // 后缀区间：最后N个字节，空文件上不可满足
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0 || fileLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0L, fileLength - suffix);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= fileLength) {
+                continue;
+            }
+            ranges.add(new long[]{start, Math.min(end, fileLength - 1)});
+        }
+        return ranges;
+    }
+
+    /**
+     * If-Range与当前文件一致时才按Range响应，否则返回完整文件；弱ETag不参与比较，日期需与Last-Modified完全相同（精确到秒）
+     */
+    static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
         try {
-            // 创建文件资源
-            Resource resource = new FileSystemResource(file);
-            
-            // 编码文件名，支持中文
-            String encodedFileName = URLEncoder.encode(task.getFileName(), 
-                StandardCharsets.UTF_8.toString()).replaceAll("\\+", "%20");
-            
-            // 构建响应头
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, 
-                "attachment; filename*=UTF-8''" + encodedFileName);
-            headers.add(HttpHeaders.CONTENT_TYPE, 
-                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(file.length()));
-            headers.add(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-            headers.add(HttpHeaders.PRAGMA, "no-cache");
-            headers.add(HttpHeaders.EXPIRES, "0");
-            
-            log.info("开始下载文件: {}, 大小: {} bytes", task.getFileName(), file.length());
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(file.length())
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
-                    
-        } catch (UnsupportedEncodingException e) {
-            log.error("文件名编码失败: {}", task.getFileName(), e);
-            throw new RuntimeException("文件下载失败");
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date >= 0 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
     }
 
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate) || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 检查文件是否可下载
      *
@@ -94,7 +293,10 @@ public class FileDownloadService {
      * @return 是否可下载
      */
     public boolean isFileDownloadable(String taskId) {
-        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+        return isFileDownloadable(taskCache.get(taskId));
+    }
+
+    private boolean isFileDownloadable(ExportTask task) {
         if (task == null || !"SUCCESS".equals(task.getStatus())) {
             return false;
         }
@@ -103,8 +305,7 @@ public class FileDownloadService {
             return false;
         }
         
-        File file = new File(task.getFilePath());
-        return file.exists() && file.canRead();
+        return storageManager.isAvailable(task.getFilePath());
     }
 
     /**
@@ -114,7 +315,7 @@ public class FileDownloadService {
      * @return 文件信息
      */
     public FileInfo getFileInfo(String taskId) {
-        ExportTask task = exportTaskMapper.selectByTaskId(taskId);
+        ExportTask task = taskCache.get(taskId);
         if (task == null) {
             return null;
         }
@@ -124,7 +325,7 @@ public class FileDownloadService {
         fileInfo.setFileName(task.getFileName());
         fileInfo.setFileSize(task.getFileSize());
         fileInfo.setStatus(task.getStatus());
-        fileInfo.setDownloadable(isFileDownloadable(taskId));
+        fileInfo.setDownloadable(isFileDownloadable(task));
         
         return fileInfo;
     }
@@ -0,0 +1,374 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.User;
+import com.example.excel.util.UserRowConverter;
+import com.example.excel.writer.EasyExcelExportWriter;
+import com.example.excel.writer.ExcelColumnMeta;
+import com.example.excel.writer.ExportWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 分片ZIP导出器
+ * 将主键范围切分为多个区间，每个区间由独立的工作线程生成一个xlsx分卷，
+ * 分卷按顺序以STORED方式追加到同一个zip中（xlsx本身已压缩，无需再次压缩），
+ * 整体耗时随CPU核数扩展，而不是受限于单个压缩线程。
+ * 分卷的主键区间和完成情况记录在检查点中，分卷文件在整个zip生成完成前保留在磁盘上，
+ * 任务中断后重新执行时只生成未完成的分卷。
+ * 导出失败或取消时等待所有分卷线程退出（有超时）后才返回，调用方随后删除分卷目录、释放许可和租约。
+ */
+@Slf4j
+@Component
+public class ShardedZipExporter {
+
+    @Autowired
+    private ExportDataReader exportDataReader;
+
+    @Autowired
+    private ExportCancellation exportCancellation;
+
+    @Autowired
+    @Qualifier("exportPartExecutor")
+    private ThreadPoolTaskExecutor exportPartExecutor;
+
+    @Value("${export.zip.parts:4}")
+    private Integer parts;
+
+    @Value("${export.max-rows-per-sheet:1000000}")
+    private Long maxRowsPerSheet;
+
+    @Value("${export.pipeline.stop-timeout:30000}")
+    private Long stopTimeout;
+
+    /**
+     * 生成分片zip
+     *
+     * @param taskId 任务ID
+     * @param partNamePrefix 分卷文件名前缀
+     * @param queryParams 查询参数
+     * @param columns 导出列
+     * @param zipPath zip文件路径
+     * @param checkpoint 检查点，没有分卷信息时切分主键范围并写入；已完成且文件仍在的分卷直接复用
+     * @param checkpointSaver 保存检查点（分卷切分完成和每个分卷生成完成后调用，调用时持有checkpoint锁）
+     * @param rowsWritten 每写入一批数据后的回调（参数为本批行数，可能被多个线程并发调用），复用的分卷按其行数回调一次
+     * @return 所有分卷的工作表总数
+     */
+    public int export(String taskId, String partNamePrefix, Map<String, Object> queryParams,
+                      List<ExcelColumnMeta> columns, String zipPath, ExportCheckpoint checkpoint,
+                      Runnable checkpointSaver, LongConsumer rowsWritten) throws Exception {
+        Function<List<User>, List<List<Object>>> converter = UserRowConverter.forColumns(columns);
+        File partDir = getPartDir(zipPath);
+        partDir.mkdirs();
+
+        synchronized (checkpoint) {
+            if (checkpoint.getParts() == null) {
+                checkpoint.setParts(splitIdRange(queryParams));
+                checkpoint.setRows(0L);
+                checkpointSaver.run();
+            }
+        }
+
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        List<Future<PartFile>> futures = new ArrayList<>();
+        boolean completed = false;
+        PartWorkers workers = new PartWorkers(checkpoint.getParts().size());
+
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(zipPath)))) {
+
+            int reused = 0;
+            for (ExportCheckpoint.Part part : checkpoint.getParts()) {
+                String partName = String.format("%s_part%02d.xlsx", partNamePrefix, part.getPartNo());
+                File partFile = new File(partDir, part.getPartNo() + ".xlsx");
+                if (part.isFinished() && partFile.isFile()) {
+                    // 上次执行已生成的分卷
+                    rowsWritten.accept(part.getRows());
+                    futures.add(CompletableFuture.completedFuture(
+                        new PartFile(partName, partFile, part.getCrc(), part.getSheetCount())));
+                    reused++;
+                    workers.skip();
+                    continue;
+                }
+                // 分卷线程以任务身份执行，任务停止时中止其正在执行的查询
+                futures.add(exportPartExecutor.submit(() -> workers.run(aborted, () -> exportCancellation.callBound(
+                    taskId, () -> writePart(taskId, queryParams, columns, converter, part, partName, partFile,
+                        checkpoint, checkpointSaver, rowsWritten, aborted)))));
+                workers.started++;
+            }
+            log.info("任务 {} 分片导出，共 {} 个分卷，复用已完成分卷 {} 个", taskId, futures.size(), reused);
+
+            // 按分卷顺序追加到zip，后面的分卷仍在并行生成
+            int sheetCount = 0;
+            for (Future<PartFile> future : futures) {
+                PartFile partFile = awaitPart(future);
+                appendStoredEntry(zipOutputStream, partFile);
+                sheetCount += partFile.sheetCount;
+            }
+            completed = true;
+            return sheetCount;
+
+        } catch (Exception e) {
+            // 尚未开始的分卷启动后直接退出，正在生成的分卷被中断；等待全部退出后调用方才能删除分卷目录
+            aborted.set(true);
+            workers.interrupt();
+            if (!workers.await(stopTimeout)) {
+                log.warn("任务 {} 分片导出中止后等待分卷线程退出超时({} ms)", taskId, stopTimeout);
+            }
+            throw e;
+        } finally {
+            if (completed) {
+                discardParts(zipPath);
+            }
+        }
+    }
+
+    /**
+     * 删除保留的分段文件（导出完成或任务失败不再续写时调用）
+     *
+     * @param zipPath 导出文件路径
+     */
+    public void discardParts(String zipPath) {
+        File partDir = getPartDir(zipPath);
+        File[] leftovers = partDir.listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                leftover.delete();
+            }
+        }
+        partDir.delete();
+    }
+
+    /**
+     * 导出文件的分段目录（zip分卷、xlsx工作表分段），在整个文件生成完成前保留
+     *
+     * @param filePath 导出文件路径
+     * @return 分段目录
+     */
+    public static File getPartDir(String filePath) {
+        return new File(filePath + ".parts");
+    }
+
+    /**
+     * 按分卷数均分主键范围，没有数据时返回一个空区间（生成只有表头的分卷）
+     */
+    private List<ExportCheckpoint.Part> splitIdRange(Map<String, Object> queryParams) {
+        List<ExportCheckpoint.Part> ranges = new ArrayList<>();
+        long[] idRange = exportDataReader.getIdRange(queryParams);
+        if (idRange == null) {
+            ranges.add(newPart(1, 0L, 0L));
+            return ranges;
+        }
+
+        long minId = idRange[0];
+        long maxId = idRange[1];
+        long span = Math.max(1, (maxId - minId + parts) / parts);
+        for (long start = minId; start <= maxId; start += span) {
+            ranges.add(newPart(ranges.size() + 1, start, Math.min(start + span, maxId + 1)));
+        }
+        return ranges;
+    }
+
+    private ExportCheckpoint.Part newPart(int partNo, long startId, long endId) {
+        ExportCheckpoint.Part part = new ExportCheckpoint.Part();
+        part.setPartNo(partNo);
+        part.setStartId(startId);
+        part.setEndId(endId);
+        return part;
+    }
+
+    /**
+     * 生成单个分卷，同时计算CRC以便以STORED方式写入zip
+     */
+    private PartFile writePart(String taskId, Map<String, Object> queryParams, List<ExcelColumnMeta> columns,
+                               Function<List<User>, List<List<Object>>> converter, ExportCheckpoint.Part part,
+                               String partName, File file, ExportCheckpoint checkpoint, Runnable checkpointSaver,
+                               LongConsumer rowsWritten, AtomicBoolean aborted) throws Exception {
+        CRC32 crc = new CRC32();
+        AtomicLong rows = new AtomicLong();
+        int sheetCount;
+
+        try (CheckedOutputStream outputStream = new CheckedOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)), crc);
+             ExportWriter exportWriter = new EasyExcelExportWriter(
+                 outputStream, "用户数据", maxRowsPerSheet, columns, true)) {
+
+            exportDataReader.readRange(queryParams, part.getStartId(), part.getEndId(), batchData -> {
+                if (aborted.get()) {
+                    throw new IllegalStateException("分片导出已中止");
+                }
+                exportCancellation.checkStopped(taskId);
+                exportWriter.write(converter.apply(batchData));
+                rows.addAndGet(batchData.size());
+                rowsWritten.accept(batchData.size());
+            });
+            sheetCount = exportWriter.getSheetCount();
+        }
+
+        // 分卷文件已完整关闭，记录到检查点
+        synchronized (checkpoint) {
+            part.setFinished(true);
+            part.setRows(rows.get());
+            part.setCrc(crc.getValue());
+            part.setSheetCount(sheetCount);
+            checkpoint.setRows(checkpoint.getRows() + rows.get());
+            checkpointSaver.run();
+        }
+
+        log.debug("分卷 {} 生成完成，ID区间: [{}, {})，大小: {} bytes",
+            partName, part.getStartId(), part.getEndId(), file.length());
+        return new PartFile(partName, file, crc.getValue(), sheetCount);
+    }
+
+    /**
+     * 以STORED方式追加zip条目
+     */
+    private void appendStoredEntry(ZipOutputStream zipOutputStream, PartFile partFile) throws Exception {
+        long size = partFile.file.length();
+        ZipEntry entry = new ZipEntry(partFile.name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(partFile.crc);
+
+        zipOutputStream.putNextEntry(entry);
+        Files.copy(partFile.file.toPath(), zipOutputStream);
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * 等待分卷生成完成
+     */
+    private PartFile awaitPart(Future<PartFile> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 本次导出提交的分卷线程，中止时只中断仍在生成本次分卷的线程，不会误伤线程池复用后的其他任务
+     */
+    private static class PartWorkers {
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch done;
+        private final int expected;
+
+        /**
+         * 已提交或已复用的分卷数
+         */
+        private int started;
+
+        PartWorkers(int expected) {
+            this.expected = expected;
+            this.done = new CountDownLatch(expected);
+        }
+
+        /**
+         * 复用上次已生成的分卷，不提交线程
+         */
+        void skip() {
+            started++;
+            done.countDown();
+        }
+
+        PartFile run(AtomicBoolean aborted, Callable<PartFile> part) throws Exception {
+            Thread current = Thread.currentThread();
+            threads.add(current);
+            try {
+                if (aborted.get()) {
+                    throw new IllegalStateException("分片导出已中止");
+                }
+                return part.call();
+            } finally {
+                synchronized (threads) {
+                    threads.remove(current);
+                    Thread.interrupted();
+                }
+                done.countDown();
+            }
+        }
+
+        void interrupt() {
+            synchronized (threads) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * 等待已提交的分卷线程退出，未能提交的分卷不等待；
+         * 导出线程因取消被中断时仍等到超时，返回前恢复中断标记
+         */
+        boolean await(long timeoutMillis) {
+            for (int i = started; i < expected; i++) {
+                done.countDown();
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 分卷文件
+     */
+    private static class PartFile {
+        private final String name;
+        private final File file;
+        private final long crc;
+        private final int sheetCount;
+
+        PartFile(String name, File file, long crc, int sheetCount) {
+            this.name = name;
+            this.file = file;
+            this.crc = crc;
+            this.sheetCount = sheetCount;
+        }
+    }
+}
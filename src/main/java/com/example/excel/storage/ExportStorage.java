@@ -0,0 +1,68 @@
+package com.example.excel.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 导出文件存储
+ * 按对象键（导出文件名）保存生成的文件，下载时从保存文件的存储读取
+ */
+public interface ExportStorage {
+
+    /**
+     * 存储类型
+     *
+     * @return 存储类型
+     */
+    String getType();
+
+    /**
+     * 打开写入流，调用{@link StorageOutputStream#commit()}后文件才可见，未提交就关闭时丢弃已写入的内容
+     *
+     * @param key 对象键
+     * @return 写入流
+     */
+    StorageOutputStream openOutput(String key) throws IOException;
+
+    /**
+     * 保存已生成的文件
+     *
+     * @param key 对象键
+     * @param file 文件
+     */
+    void upload(String key, File file) throws IOException;
+
+    /**
+     * 查询文件信息
+     *
+     * @param key 对象键
+     * @return 文件信息，不存在时返回null
+     */
+    StoredObject stat(String key) throws IOException;
+
+    /**
+     * 读取文件的一个区间写入输出流
+     *
+     * @param key 对象键
+     * @param start 起始位置
+     * @param length 长度
+     * @param target 输出流
+     */
+    void read(String key, long start, long length, OutputStream target) throws IOException;
+
+    /**
+     * 下载到本地文件
+     *
+     * @param key 对象键
+     * @param target 本地文件
+     */
+    void download(String key, File target) throws IOException;
+
+    /**
+     * 删除文件，不存在时忽略
+     *
+     * @param key 对象键
+     */
+    void delete(String key) throws IOException;
+}
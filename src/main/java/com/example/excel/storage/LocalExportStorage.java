@@ -0,0 +1,139 @@
+package com.example.excel.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 本地磁盘存储
+ * 文件保存在export.temp-path下，对象键即文件名；只有写出文件的节点能读取
+ */
+@Component
+public class LocalExportStorage implements ExportStorage {
+
+    public static final String TYPE = "local";
+
+    @Value("${export.temp-path:/tmp/excel/}")
+    private String tempPath;
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    /**
+     * 对象键对应的本地文件
+     *
+     * @param key 对象键
+     * @return 本地文件
+     */
+    public File resolve(String key) {
+        return new File(tempPath, key);
+    }
+
+    @Override
+    public StorageOutputStream openOutput(String key) throws IOException {
+        File file = resolve(key);
+        file.getParentFile().mkdirs();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        return new StorageOutputStream() {
+            private boolean committed;
+
+            @Override
+            public void write(int b) throws IOException {
+                outputStream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                outputStream.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                outputStream.flush();
+            }
+
+            @Override
+            public void commit() {
+                committed = true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                outputStream.close();
+                if (!committed) {
+                    file.delete();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void upload(String key, File file) throws IOException {
+        File target = resolve(key);
+        if (!target.getCanonicalPath().equals(file.getCanonicalPath())) {
+            Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public StoredObject stat(String key) {
+        File file = resolve(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        long lastModified = file.lastModified() / 1000 * 1000;
+        StoredObject object = new StoredObject();
+        object.setStorage(this);
+        object.setKey(key);
+        object.setSize(file.length());
+        object.setLastModified(lastModified);
+        return object;
+    }
+
+    /**
+     * 用transferTo写出文件区间。目标是普通的OutputStream（如ServletOutputStream），包装出的通道不是文件或套接字通道，
+     * JDK不能使用sendfile，实际是经中间缓冲区的逐块复制，与流复制的开销相当；
+     * 下载时的零拷贝由FileDownloadService把区间交给容器的sendfile完成，不经过这里
+     */
+    @Override
+    public void read(String key, long start, long length, OutputStream target) throws IOException {
+        WritableByteChannel targetChannel = Channels.newChannel(target);
+        try (FileChannel channel = FileChannel.open(resolve(key).toPath(), StandardOpenOption.READ)) {
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, targetChannel);
+                if (transferred <= 0 && position >= channel.size()) {
+                    throw new EOFException("文件已被截断");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    @Override
+    public void download(String key, File target) throws IOException {
+        File source = resolve(key);
+        if (!source.getCanonicalPath().equals(target.getCanonicalPath())) {
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        resolve(key).delete();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.excel.storage;
+
+import java.io.IOException;
+
+/**
+ * 同时写入两个存储的写入流
+ * 导出文件写入本地的同时分段上传到远端存储，上传与生成并行；提交时两边都提交，关闭时都关闭
+ */
+public class MirroredOutputStream extends StorageOutputStream {
+
+    private final StorageOutputStream primary;
+    private final StorageOutputStream mirror;
+
+    public MirroredOutputStream(StorageOutputStream primary, StorageOutputStream mirror) {
+        this.primary = primary;
+        this.mirror = mirror;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        primary.write(b);
+        mirror.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        primary.write(b, off, len);
+        mirror.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        primary.flush();
+        mirror.flush();
+    }
+
+    @Override
+    public void commit() throws IOException {
+        // 远端先提交，远端失败时本地文件不提交，任务整体失败
+        mirror.commit();
+        primary.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mirror.close();
+        } finally {
+            primary.close();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.excel.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * S3兼容对象存储的最小客户端
+ * 只实现导出需要的对象操作和分段上传，请求按AWS Signature Version 4签名，
+ * 支持路径风格（MinIO等自建服务）和虚拟主机风格的地址
+ */
+public class S3Client {
+
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter RFC_1123 = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final Duration timeout;
+
+    public S3Client(String endpoint, String region, String bucket, String accessKey, String secretKey,
+                    boolean pathStyle, Duration timeout) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+    }
+
+    /**
+     * 上传对象（单次请求）
+     */
+    public void putObject(String key, byte[] data, int length) throws IOException {
+        send("PUT", key, null, null, data, length, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * 开始分段上传
+     *
+     * @return 上传ID
+     */
+    public String createMultipartUpload(String key) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploads", "");
+        String body = send("POST", key, query, null, null, 0, HttpResponse.BodyHandlers.ofString()).body();
+        String uploadId = extractTag(body, "UploadId");
+        if (uploadId == null) {
+            throw new IOException("对象存储未返回上传ID: " + abbreviate(body));
+        }
+        return uploadId;
+    }
+
+    /**
+     * 上传一个分段
+     *
+     * @return 分段的ETag
+     */
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("partNumber", String.valueOf(partNumber));
+        query.put("uploadId", uploadId);
+        HttpResponse<String> response = send("PUT", key, query, null, data, length,
+            HttpResponse.BodyHandlers.ofString());
+        return response.headers().firstValue("ETag")
+            .orElseThrow(() -> new IOException("对象存储未返回分段ETag, partNumber: " + partNumber));
+    }
+
+    /**
+     * 完成分段上传
+     *
+     * @param etags 按分段序号排列的ETag
+     */
+    public void completeMultipartUpload(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                .append(etags.get(i).replace("\"", "&quot;")).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploadId", uploadId);
+        String result = send("POST", key, query, null, body, body.length, HttpResponse.BodyHandlers.ofString()).body();
+        // 完成请求在返回200后仍可能失败，错误信息在响应体中
+        if (result != null && result.contains("<Error>")) {
+            throw new IOException("完成分段上传失败: " + abbreviate(result));
+        }
+    }
+
+    /**
+     * 中止分段上传，释放已上传的分段
+     */
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        Map<String, String> query = new TreeMap<>();
+        query.put("uploadId", uploadId);
+        send("DELETE", key, query, null, null, 0, HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * 查询对象信息
+     *
+     * @return 对象信息（未设置存储），不存在时返回null
+     */
+    public StoredObject headObject(String key) throws IOException {
+        HttpResponse<Void> response = execute("HEAD", key, null, null, null, 0, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        checkStatus("HEAD", key, response.statusCode(), null);
+        StoredObject object = new StoredObject();
+        object.setKey(key);
+        object.setSize(response.headers().firstValueAsLong("Content-Length").orElse(0L));
+        object.setLastModified(response.headers().firstValue("Last-Modified")
+            .map(value -> ZonedDateTime.parse(value, RFC_1123).toInstant().toEpochMilli())
+            .orElse(0L));
+        return object;
+    }
+
+    /**
+     * 读取对象的一个区间写入输出流
+     * 要求服务端返回206且Content-Range与请求区间一致；忽略Range返回200时，只有请求的正好是整个对象才接受，
+     * 否则在写出任何数据之前失败，不会把对象开头的数据当作请求的区间写给客户端
+     */
+    public void getObject(String key, long start, long length, OutputStream target) throws IOException {
+        long end = start + length - 1;
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("Range", "bytes=" + start + "-" + end);
+        HttpResponse<InputStream> response = send("GET", key, null, headers, null, 0,
+            HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream inputStream = response.body()) {
+            int status = response.statusCode();
+            boolean accepted;
+            if (status == 206) {
+                accepted = response.headers().firstValue("Content-Range")
+                    .map(value -> value.trim().startsWith("bytes " + start + "-" + end + "/"))
+                    .orElse(false);
+            } else {
+                accepted = status == 200 && start == 0
+                    && response.headers().firstValueAsLong("Content-Length").orElse(-1L) == length;
+            }
+            if (!accepted) {
+                throw new IOException(String.format("对象存储返回的区间与请求不一致: %s, HTTP %d, Content-Range: %s",
+                    key, status, response.headers().firstValue("Content-Range").orElse("")));
+            }
+            if (inputStream.transferTo(target) != length) {
+                throw new IOException("对象存储返回的数据长度与请求区间不一致: " + key);
+            }
+        }
+    }
+
+    /**
+     * 删除对象，不存在时忽略
+     */
+    public void deleteObject(String key) throws IOException {
+        send("DELETE", key, null, null, null, 0, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query,
+                                     Map<String, String> headers, byte[] body, int length,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException {
+        HttpResponse<T> response = execute(method, key, query, headers, body, length, handler);
+        Object responseBody = response.body();
+        if (response.statusCode() >= 300 && responseBody instanceof InputStream) {
+            try (InputStream inputStream = (InputStream) responseBody) {
+                responseBody = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        checkStatus(method, key, response.statusCode(), responseBody);
+        return response;
+    }
+
+    private <T> HttpResponse<T> execute(String method, String key, Map<String, String> query,
+                                        Map<String, String> headers, byte[] body, int length,
+                                        HttpResponse.BodyHandler<T> handler) throws IOException {
+        String path = pathStyle ? "/" + bucket + "/" + encodePath(key) : "/" + encodePath(key);
+        String host = pathStyle ? endpoint.getHost() : bucket + "." + endpoint.getHost();
+        int port = endpoint.getPort();
+        boolean defaultPort = port == -1 || ("https".equals(endpoint.getScheme()) && port == 443)
+            || ("http".equals(endpoint.getScheme()) && port == 80);
+        String hostHeader = defaultPort ? host : host + ":" + port;
+
+        StringBuilder canonicalQuery = new StringBuilder();
+        if (query != null) {
+            for (Map.Entry<String, String> entry : query.entrySet()) {
+                if (canonicalQuery.length() > 0) {
+                    canonicalQuery.append('&');
+                }
+                canonicalQuery.append(encode(entry.getKey(), true)).append('=').append(encode(entry.getValue(), true));
+            }
+        }
+
+        String payloadHash = body != null ? sha256Hex(body, length) : EMPTY_SHA256;
+        String amzDate = ZonedDateTime.now(ZoneOffset.UTC).format(AMZ_DATE);
+        Map<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", hostHeader);
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", amzDate);
+        String authorization = authorization(method, path, canonicalQuery.toString(), signedHeaders, payloadHash,
+            amzDate, region, accessKey, secretKey);
+
+        URI uri = URI.create(endpoint.getScheme() + "://" + hostHeader + path
+            + (canonicalQuery.length() > 0 ? "?" + canonicalQuery : ""));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("x-amz-content-sha256", payloadHash)
+            .header("x-amz-date", amzDate)
+            .header("Authorization", authorization)
+            .method(method, body != null
+                ? HttpRequest.BodyPublishers.ofByteArray(body, 0, length)
+                : HttpRequest.BodyPublishers.noBody());
+        if (headers != null) {
+            headers.forEach(builder::header);
+        }
+        try {
+            return httpClient.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("对象存储请求被中断");
+        }
+    }
+
+    private static void checkStatus(String method, String key, int status, Object body) throws IOException {
+        if (status >= 300) {
+            throw new IOException(String.format("对象存储请求失败: %s %s, HTTP %d %s", method, key, status,
+                body instanceof String ? abbreviate((String) body) : ""));
+        }
+    }
+
+    /**
+     * 按Signature Version 4计算Authorization请求头
+     *
+     * @param signedHeaders 参与签名的请求头（小写名称，按名称排序）
+     */
+    static String authorization(String method, String canonicalUri, String canonicalQuery,
+                                Map<String, String> signedHeaders, String payloadHash, String amzDate,
+                                String region, String accessKey, String secretKey) {
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header : signedHeaders.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue().trim()).append('\n');
+        }
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+            + canonicalHeaders + "\n" + signedHeaderNames + "\n" + payloadHash;
+
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+            + sha256Hex(canonicalRequest.getBytes(StandardCharsets.UTF_8), -1);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = hex(hmac(signingKey, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+            + ", SignedHeaders=" + signedHeaderNames + ", Signature=" + signature;
+    }
+
+    /**
+     * 对象键按路径编码，保留分隔符
+     */
+    private static String encodePath(String key) {
+        return encode(key, false);
+    }
+
+    /**
+     * 按RFC 3986编码，只保留非保留字符
+     */
+    private static String encode(String value, boolean encodeSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String extractTag(String xml, String tag) {
+        if (xml == null) {
+            return null;
+        }
+        int start = xml.indexOf("<" + tag + ">");
+        int end = xml.indexOf("</" + tag + ">");
+        if (start < 0 || end < start) {
+            return null;
+        }
+        return xml.substring(start + tag.length() + 2, end);
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+
+    private static String sha256Hex(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length < 0 ? data.length : length);
+            return hex(digest.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
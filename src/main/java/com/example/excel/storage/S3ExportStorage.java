@@ -0,0 +1,144 @@
+package com.example.excel.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * S3兼容对象存储（AWS S3、MinIO等）
+ * 所有节点共享同一个存储桶，任意节点都能下载其他节点生成的文件。
+ * export.storage.type为s3时启用；对象键为 前缀 + 导出文件名。
+ * 中断的分段上传会被中止，但进程崩溃时可能遗留未完成的分段，建议在存储桶上配置清理未完成分段上传的生命周期规则。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "export.storage.type", havingValue = "s3")
+public class S3ExportStorage implements ExportStorage {
+
+    public static final String TYPE = "s3";
+
+    /**
+     * S3要求除最后一段外每段不小于5MB
+     */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    @Autowired
+    @Qualifier("exportUploadExecutor")
+    private ThreadPoolTaskExecutor uploadExecutor;
+
+    @Value("${export.storage.s3.endpoint}")
+    private String endpoint;
+
+    @Value("${export.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${export.storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${export.storage.s3.access-key}")
+    private String accessKey;
+
+    @Value("${export.storage.s3.secret-key}")
+    private String secretKey;
+
+    @Value("${export.storage.s3.path-style:true}")
+    private Boolean pathStyle;
+
+    @Value("${export.storage.s3.prefix:exports/}")
+    private String prefix;
+
+    @Value("${export.storage.s3.part-size:8388608}")
+    private Integer partSize;
+
+    @Value("${export.storage.s3.max-in-flight-parts:4}")
+    private Integer maxInFlightParts;
+
+    @Value("${export.storage.s3.timeout:60000}")
+    private Long timeout;
+
+    private S3Client client;
+
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(accessKey) || !StringUtils.hasText(secretKey)) {
+            throw new IllegalStateException("已启用对象存储，但未配置访问密钥（export.storage.s3.access-key / secret-key）");
+        }
+        client = new S3Client(endpoint, region, bucket, accessKey, secretKey, pathStyle, Duration.ofMillis(timeout));
+        log.info("导出文件对象存储已启用，地址: {}, 存储桶: {}, 分段大小: {} bytes", endpoint, bucket, partSize);
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public StorageOutputStream openOutput(String key) {
+        return new S3MultipartOutputStream(client, prefix + key, Math.max(partSize, MIN_PART_SIZE),
+            maxInFlightParts, uploadExecutor);
+    }
+
+    @Override
+    public void upload(String key, File file) throws IOException {
+        // 按分段并行上传已生成的文件
+        try (StorageOutputStream outputStream = openOutput(key)) {
+            Files.copy(file.toPath(), outputStream);
+            outputStream.commit();
+        }
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        StoredObject object = client.headObject(prefix + key);
+        if (object != null) {
+            object.setStorage(this);
+            object.setKey(key);
+            // 与本地文件一致，精确到秒
+            object.setLastModified(object.getLastModified() / 1000 * 1000);
+        }
+        return object;
+    }
+
+    @Override
+    public void read(String key, long start, long length, OutputStream target) throws IOException {
+        if (length > 0) {
+            client.getObject(prefix + key, start, length, target);
+        }
+    }
+
+    @Override
+    public void download(String key, File target) throws IOException {
+        StoredObject object = stat(key);
+        if (object == null) {
+            throw new IOException("对象存储中不存在文件: " + key);
+        }
+        // 先下载到临时文件，完成后再替换，避免其他线程读到不完整的文件
+        File partial = new File(target.getPath() + ".download");
+        try (OutputStream outputStream = Files.newOutputStream(partial.toPath())) {
+            read(key, 0, object.getSize(), outputStream);
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+        Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        client.deleteObject(prefix + key);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.excel.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 分段上传写入流
+ * 写满一个分段就提交到上传线程池，生成文件和上传分段并行进行；
+ * 同时上传中的分段数有上限，上传跟不上时写入线程等待，内存占用不超过 分段大小 × 上限。
+ * 整个文件不足一个分段时提交时单次上传；未提交就关闭时中止分段上传，已上传的分段由对象存储释放。
+ */
+@Slf4j
+public class S3MultipartOutputStream extends StorageOutputStream {
+
+    private final S3Client client;
+    private final String key;
+    private final int partSize;
+    private final Executor executor;
+    private final Semaphore inFlight;
+
+    private byte[] buffer;
+    private int count;
+    private String uploadId;
+    private final List<CompletableFuture<String>> parts = new ArrayList<>();
+    private boolean committed;
+    private boolean closed;
+
+    public S3MultipartOutputStream(S3Client client, String key, int partSize, int maxInFlightParts,
+                                   Executor executor) {
+        this.client = client;
+        this.key = key;
+        this.partSize = partSize;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlightParts);
+        this.buffer = new byte[partSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == partSize) {
+            uploadPart();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == partSize) {
+                uploadPart();
+            }
+            int n = Math.min(len, partSize - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 把缓冲区作为下一个分段提交到上传线程池
+     */
+    private void uploadPart() throws IOException {
+        checkFailedParts();
+        if (uploadId == null) {
+            uploadId = client.createMultipartUpload(key);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待分段上传时被中断");
+        }
+        int partNumber = parts.size() + 1;
+        byte[] data = buffer;
+        int length = count;
+        CompletableFuture<String> part;
+        try {
+            part = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.uploadPart(key, uploadId, partNumber, data, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    inFlight.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        parts.add(part);
+        buffer = new byte[partSize];
+        count = 0;
+    }
+
+    /**
+     * 已有分段上传失败时尽早结束写入
+     */
+    private void checkFailedParts() throws IOException {
+        for (CompletableFuture<String> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                await(part);
+            }
+        }
+    }
+
+    private static String await(CompletableFuture<String> part) throws IOException {
+        try {
+            return part.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("分段上传失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        if (committed) {
+            return;
+        }
+        if (uploadId == null) {
+            client.putObject(key, buffer, count);
+        } else {
+            if (count > 0) {
+                uploadPart();
+            }
+            List<String> etags = new ArrayList<>(parts.size());
+            for (CompletableFuture<String> part : parts) {
+                etags.add(await(part));
+            }
+            client.completeMultipartUpload(key, uploadId, etags);
+        }
+        committed = true;
+        buffer = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer = null;
+        if (committed || uploadId == null) {
+            return;
+        }
+        // 等待进行中的分段结束后再中止，避免中止后仍有分段写入
+        for (CompletableFuture<String> part : parts) {
+            try {
+                part.join();
+            } catch (CompletionException ignored) {
+                // 分段失败不影响中止
+            }
+        }
+        try {
+            client.abortMultipartUpload(key, uploadId);
+        } catch (IOException e) {
+            log.warn("中止分段上传失败: {}, uploadId: {}, 原因: {}", key, uploadId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.excel.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 存储写入流
+ * 写入完成后需调用{@link #commit()}，未提交就关闭时丢弃已写入的内容（例如中止分段上传）
+ */
+public abstract class StorageOutputStream extends OutputStream {
+
+    /**
+     * 提交已写入的内容
+     */
+    public abstract void commit() throws IOException;
+}
@@ -0,0 +1,30 @@
+package com.example.excel.storage;
+
+import lombok.Data;
+
+/**
+ * 已保存的文件信息
+ */
+@Data
+public class StoredObject {
+
+    /**
+     * 保存文件的存储
+     */
+    private ExportStorage storage;
+
+    /**
+     * 对象键
+     */
+    private String key;
+
+    /**
+     * 文件大小(字节)
+     */
+    private long size;
+
+    /**
+     * 最后修改时间（毫秒，精确到秒）
+     */
+    private long lastModified;
+}
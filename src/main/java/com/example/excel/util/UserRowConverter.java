@@ -0,0 +1,128 @@
+package com.example.excel.util;
+
+import com.example.excel.entity.User;
+import com.example.excel.writer.ExcelColumnMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 用户数据行转换器
+ * 将User对象按Excel列顺序转换为行数据，写入阶段无需再通过反射读取字段
+ */
+public final class UserRowConverter {
+
+    /**
+     * 属性名 -> 取值函数，按@ExcelProperty的index顺序排列
+     */
+    private static final Map<String, Function<User, Object>> EXTRACTORS = new LinkedHashMap<>();
+
+    /**
+     * 增量导出追加的变更类型列
+     */
+    public static final ExcelColumnMeta CHANGE_TYPE_COLUMN = new ExcelColumnMeta("changeType", "变更类型", 12);
+
+    /**
+     * {@link #toRow(User)}输出的列顺序
+     */
+    private static final List<String> ROW_PROPERTIES;
+
+    static {
+        EXTRACTORS.put("id", User::getId);
+        EXTRACTORS.put("username", User::getUsername);
+        EXTRACTORS.put("realName", User::getRealName);
+        EXTRACTORS.put("email", User::getEmail);
+        EXTRACTORS.put("phone", User::getPhone);
+        EXTRACTORS.put("age", User::getAge);
+        EXTRACTORS.put("gender", User::getGender);
+        EXTRACTORS.put("department", User::getDepartment);
+        EXTRACTORS.put("position", User::getPosition);
+        EXTRACTORS.put("salary", User::getSalary);
+        EXTRACTORS.put("joinTime", User::getJoinTime);
+        EXTRACTORS.put("createTime", User::getCreateTime);
+        EXTRACTORS.put("updateTime", User::getUpdateTime);
+        ROW_PROPERTIES = new ArrayList<>(EXTRACTORS.keySet());
+        EXTRACTORS.put(CHANGE_TYPE_COLUMN.getProperty(), User::getChangeType);
+    }
+
+    private UserRowConverter() {
+    }
+
+    /**
+     * 批量转换
+     *
+     * @param users 用户列表
+     * @return 行数据列表
+     */
+    public static List<List<Object>> toRows(List<User> users) {
+        List<List<Object>> rows = new ArrayList<>(users.size());
+        for (User user : users) {
+            rows.add(toRow(user));
+        }
+        return rows;
+    }
+
+    /**
+     * 转换单行，列顺序与User上@ExcelProperty的index一致
+     *
+     * @param user 用户
+     * @return 行数据
+     */
+    public static List<Object> toRow(User user) {
+        return Arrays.asList(
+            user.getId(),
+            user.getUsername(),
+            user.getRealName(),
+            user.getEmail(),
+            user.getPhone(),
+            user.getAge(),
+            user.getGender(),
+            user.getDepartment(),
+            user.getPosition(),
+            user.getSalary(),
+            user.getJoinTime(),
+            user.getCreateTime(),
+            user.getUpdateTime()
+        );
+    }
+
+    /**
+     * 获取只转换指定列的转换函数，未选中的列不会被读取
+     *
+     * @param columns 导出列
+     * @return 批量转换函数
+     */
+    public static Function<List<User>, List<List<Object>>> forColumns(List<ExcelColumnMeta> columns) {
+        List<String> properties = new ArrayList<>(columns.size());
+        List<Function<User, Object>> extractors = new ArrayList<>(columns.size());
+        for (ExcelColumnMeta column : columns) {
+            Function<User, Object> extractor = EXTRACTORS.get(column.getProperty());
+            if (extractor == null) {
+                throw new RuntimeException("不支持的导出字段: " + column.getProperty());
+            }
+            properties.add(column.getProperty());
+            extractors.add(extractor);
+        }
+
+        // 全部列且顺序不变时直接使用固定顺序的转换
+        if (properties.equals(ROW_PROPERTIES)) {
+            return UserRowConverter::toRows;
+        }
+
+        return users -> {
+            List<List<Object>> rows = new ArrayList<>(users.size());
+            for (User user : users) {
+                Object[] row = new Object[extractors.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = extractors.get(i).apply(user);
+                }
+                rows.add(Arrays.asList(row));
+            }
+            return rows;
+        };
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.excel.writer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * CSV/TSV写入器
+ * 行数据直接编码为UTF-8字节写入复用的缓冲区，转义在编码时同步完成，缓冲区写满后整块写入通道，
+ * 没有xlsx的压缩和XML开销，适合导入其他系统的场景
+ */
+public class DelimitedExportWriter implements ExportWriter {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * UTF-8 BOM，保证Excel直接打开时中文不乱码
+     */
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final char delimiter;
+
+    /**
+     * CSV按RFC 4180加引号转义；TSV不支持引号，字段内的制表符和换行替换为空格
+     */
+    private final boolean quoting;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private final byte[] digits = new byte[20];
+
+    /**
+     * 已写入通道的字节数
+     */
+    private long bytesWritten;
+
+    /**
+     * @param channel 输出通道（文件导出时为FileChannel）
+     * @param delimiter 分隔符，','为CSV，'\t'为TSV
+     * @param columns 列定义，用于输出表头
+     * @param closeChannel 写入完成后是否关闭通道
+     */
+    public DelimitedExportWriter(WritableByteChannel channel, char delimiter,
+                                 List<ExcelColumnMeta> columns, boolean closeChannel) throws IOException {
+        this(channel, delimiter, columns, closeChannel, true);
+    }
+
+    /**
+     * @param channel 输出通道（文件导出时为FileChannel）
+     * @param delimiter 分隔符，','为CSV，'\t'为TSV
+     * @param columns 列定义，用于输出表头
+     * @param closeChannel 写入完成后是否关闭通道
+     * @param writeHeader 是否输出BOM和表头，从检查点续写已有文件时为false
+     */
+    public DelimitedExportWriter(WritableByteChannel channel, char delimiter, List<ExcelColumnMeta> columns,
+                                 boolean closeChannel, boolean writeHeader) throws IOException {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.delimiter = delimiter;
+        this.quoting = delimiter != '\t';
+
+        if (!writeHeader) {
+            return;
+        }
+        buffer.put(UTF8_BOM);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writeByte(delimiter);
+            }
+            writeText(columns.get(i).getTitle());
+        }
+        writeLineEnd();
+    }
+
+    @Override
+    public void write(List<List<Object>> rows) throws IOException {
+        for (List<Object> row : rows) {
+            for (int i = 0, size = row.size(); i < size; i++) {
+                if (i > 0) {
+                    writeByte(delimiter);
+                }
+                writeValue(row.get(i));
+            }
+            writeLineEnd();
+        }
+    }
+
+    /**
+     * 原样写入已编码的字节（合并快照时复制未变更的行）
+     *
+     * @param data 字节数组
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public void writeRaw(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            writeAscii(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Double || value instanceof Float) {
+            writeDecimal((Number) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            writeDateTime((LocalDateTime) value);
+        } else if (value instanceof LocalDate) {
+            writeDate((LocalDate) value);
+        } else if (value instanceof Date) {
+            writeDateTime(LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()));
+        } else {
+            writeText(value.toString());
+        }
+    }
+
+    /**
+     * 浮点数按普通小数输出，不使用科学计数法（1.0E7），便于其他系统按数值导入；
+     * NaN和无穷大不是合法的数值，输出为空字段
+     */
+    private void writeDecimal(Number value) throws IOException {
+        double number = value.doubleValue();
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return;
+        }
+        // Float按自身的最短表示转换，避免扩展为double后出现多余的尾数
+        BigDecimal decimal = value instanceof Float
+            ? new BigDecimal(Float.toString(value.floatValue())) : BigDecimal.valueOf(number);
+        writeAscii(decimal.toPlainString());
+    }
+
+    /**
+     * 按 yyyy-MM-dd HH:mm:ss 输出，与xlsx导出的日期格式一致
+     */
+    private void writeDateTime(LocalDateTime dateTime) throws IOException {
+        writeDate(dateTime.toLocalDate());
+        writeByte(' ');
+        writeTwoDigits(dateTime.getHour());
+        writeByte(':');
+        writeTwoDigits(dateTime.getMinute());
+        writeByte(':');
+        writeTwoDigits(dateTime.getSecond());
+    }
+
+    private void writeDate(LocalDate date) throws IOException {
+        writeLong(date.getYear());
+        writeByte('-');
+        writeTwoDigits(date.getMonthValue());
+        writeByte('-');
+        writeTwoDigits(date.getDayOfMonth());
+    }
+
+    private void writeTwoDigits(int value) throws IOException {
+        writeByte('0' + value / 10);
+        writeByte('0' + value % 10);
+    }
+
+    /**
+     * UTF-8编码文本并完成转义
+     * CSV中包含分隔符、引号或换行的字段整体加引号，字段内引号双写；
+     * 不成对的代理字符无法编码为UTF-8，直接丢弃（与xlsx_fast的处理一致）
+     */
+    private void writeText(String text) throws IOException {
+        boolean quoted = quoting && needsQuote(text);
+        if (quoted) {
+            writeByte('"');
+        }
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (BUFFER_SIZE - buffer.position() < 8) {
+                flushBuffer();
+            }
+            int position = buffer.position();
+            if (c < 0x80) {
+                if (c == '"' && quoted) {
+                    bytes[position++] = '"';
+                    bytes[position++] = '"';
+                } else if (!quoting && (c == '\t' || c == '\n' || c == '\r')) {
+                    bytes[position++] = ' ';
+                } else {
+                    bytes[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            buffer.position(position);
+        }
+        if (quoted) {
+            writeByte('"');
+        }
+    }
+
+    private boolean needsQuote(String text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeLineEnd() throws IOException {
+        writeByte('\r');
+        writeByte('\n');
+    }
+
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    /**
+     * 不经过Long.toString直接把整数写入缓冲区
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            writeByte(digits[--count]);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 把缓冲区中的数据写入通道，返回值可作为检查点的文件偏移
+     *
+     * @return 本写入器累计写入通道的字节数
+     */
+    public long flush() throws IOException {
+        flushBuffer();
+        return bytesWritten;
+    }
+
+    /**
+     * 文本格式没有工作表
+     */
+    @Override
+    public int getSheetCount() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.excel.writer;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.metadata.Head;
+import com.alibaba.excel.write.builder.ExcelWriterBuilder;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.alibaba.excel.write.style.column.AbstractHeadColumnWidthStyleStrategy;
+import com.alibaba.excel.write.style.row.SimpleRowHeightStyleStrategy;
+import com.example.excel.entity.User;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于EasyExcel的xlsx写入器
+ * 单个工作表达到行数上限后自动切换到新的工作表，每个工作表都会重复写入表头
+ */
+@Slf4j
+public class EasyExcelExportWriter implements ExportWriter {
+
+    /**
+     * xlsx单个工作表最多1,048,576行（含表头）
+     */
+    public static final long XLSX_MAX_ROWS = 1_048_576L;
+
+    /**
+     * 与User上@HeadRowHeight/@ContentRowHeight一致
+     */
+    private static final short HEAD_ROW_HEIGHT = 25;
+    private static final short CONTENT_ROW_HEIGHT = 20;
+
+    private final ExcelWriter excelWriter;
+    private final String sheetName;
+    private final long maxRowsPerSheet;
+
+    private WriteSheet currentSheet;
+    private long rowsInSheet;
+    private int sheetCount;
+
+    /**
+     * User上声明的全部导出列
+     */
+    private static final List<ExcelColumnMeta> ALL_COLUMNS = ExcelColumnMeta.fromClass(User.class);
+
+    public EasyExcelExportWriter(OutputStream outputStream, String sheetName, long maxRowsPerSheet) {
+        this(outputStream, sheetName, maxRowsPerSheet, ALL_COLUMNS, true);
+    }
+
+    /**
+     * @param columns 导出列，与行数据的列一一对应
+     * @param closeStream 写入完成后是否关闭输出流（直接写入HTTP响应时由容器负责关闭）
+     */
+    public EasyExcelExportWriter(OutputStream outputStream, String sheetName, long maxRowsPerSheet,
+                                 List<ExcelColumnMeta> columns, boolean closeStream) {
+        this.excelWriter = createBuilder(outputStream, columns).autoCloseStream(closeStream).build();
+        this.sheetName = sheetName;
+        // 预留一行给表头
+        this.maxRowsPerSheet = Math.max(1, Math.min(maxRowsPerSheet, XLSX_MAX_ROWS - 1));
+    }
+
+    @Override
+    public void write(List<List<Object>> rows) {
+        int start = 0;
+        while (start < rows.size()) {
+            if (currentSheet == null || rowsInSheet >= maxRowsPerSheet) {
+                nextSheet();
+            }
+            int count = (int) Math.min(rows.size() - start, maxRowsPerSheet - rowsInSheet);
+            excelWriter.write(rows.subList(start, start + count), currentSheet);
+            rowsInSheet += count;
+            start += count;
+        }
+    }
+
+    /**
+     * 全部列时使用User上的注解作为表头；只导出部分列时按选中的列生成表头，
+     * 避免@ExcelProperty的index使未选中的列留下空白列
+     */
+    private static ExcelWriterBuilder createBuilder(OutputStream outputStream, List<ExcelColumnMeta> columns) {
+        if (isAllColumns(columns)) {
+            return EasyExcel.write(outputStream, User.class);
+        }
+
+        List<List<String>> head = new ArrayList<>(columns.size());
+        for (ExcelColumnMeta column : columns) {
+            head.add(Collections.singletonList(column.getTitle()));
+        }
+
+        return EasyExcel.write(outputStream)
+            .head(head)
+            .registerWriteHandler(new AbstractHeadColumnWidthStyleStrategy() {
+                @Override
+                protected Integer columnWidth(Head head, Integer columnIndex) {
+                    return columns.get(columnIndex).getWidth();
+                }
+            })
+            .registerWriteHandler(new SimpleRowHeightStyleStrategy(HEAD_ROW_HEIGHT, CONTENT_ROW_HEIGHT));
+    }
+
+    private static boolean isAllColumns(List<ExcelColumnMeta> columns) {
+        if (columns.size() != ALL_COLUMNS.size()) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (!columns.get(i).getProperty().equals(ALL_COLUMNS.get(i).getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 切换到新的工作表
+     */
+    private void nextSheet() {
+        String name = sheetCount == 0 ? sheetName : sheetName + "_" + (sheetCount + 1);
+        currentSheet = EasyExcel.writerSheet(sheetCount, name).build();
+        rowsInSheet = 0;
+        sheetCount++;
+        if (sheetCount > 1) {
+            log.info("工作表行数达到上限 {}，切换到新工作表: {}", maxRowsPerSheet, name);
+        }
+    }
+
+    @Override
+    public int getSheetCount() {
+        return sheetCount;
+    }
+
+    @Override
+    public void close() {
+        // 没有数据时也生成一个只有表头的工作表
+        if (currentSheet == null) {
+            nextSheet();
+            excelWriter.write(Collections.emptyList(), currentSheet);
+        }
+        excelWriter.finish();
+    }
+}
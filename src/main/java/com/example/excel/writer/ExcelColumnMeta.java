@@ -0,0 +1,101 @@
+package com.example.excel.writer;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.annotation.write.style.ColumnWidth;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Excel列元数据
+ * 从实体类的@ExcelProperty/@ColumnWidth注解中解析一次，写入时直接使用，避免逐行反射
+ */
+public class ExcelColumnMeta {
+
+    private static final int DEFAULT_WIDTH = 15;
+
+    private final String property;
+    private final String title;
+    private final int width;
+
+    public ExcelColumnMeta(String property, String title, int width) {
+        this.property = property;
+        this.title = title;
+        this.width = width;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 按@ExcelProperty的index顺序解析实体类的列定义
+     *
+     * @param clazz 实体类
+     * @return 列元数据
+     */
+    public static List<ExcelColumnMeta> fromClass(Class<?> clazz) {
+        ColumnWidth classWidth = clazz.getAnnotation(ColumnWidth.class);
+        int defaultWidth = classWidth != null ? classWidth.value() : DEFAULT_WIDTH;
+
+        List<Field> fields = new ArrayList<>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (field.isAnnotationPresent(ExcelProperty.class)) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparingInt(field -> field.getAnnotation(ExcelProperty.class).index()));
+
+        List<ExcelColumnMeta> columns = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            String[] heads = field.getAnnotation(ExcelProperty.class).value();
+            String title = heads.length > 0 ? heads[heads.length - 1] : field.getName();
+            ColumnWidth columnWidth = field.getAnnotation(ColumnWidth.class);
+            int width = columnWidth != null ? columnWidth.value() : defaultWidth;
+            columns.add(new ExcelColumnMeta(field.getName(), title, width));
+        }
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * 按属性名从列定义中选出导出列，保持请求中的顺序并去重
+     *
+     * @param columns 全部列定义
+     * @param properties 导出字段（属性名），为空时返回全部列
+     * @return 选中的列定义
+     */
+    public static List<ExcelColumnMeta> select(List<ExcelColumnMeta> columns, Collection<String> properties) {
+        if (properties == null || properties.isEmpty()) {
+            return columns;
+        }
+
+        Map<String, ExcelColumnMeta> byProperty = new LinkedHashMap<>();
+        for (ExcelColumnMeta column : columns) {
+            byProperty.put(column.getProperty(), column);
+        }
+
+        Map<String, ExcelColumnMeta> selected = new LinkedHashMap<>();
+        for (String property : properties) {
+            ExcelColumnMeta column = byProperty.get(property);
+            if (column == null) {
+                throw new RuntimeException("不支持的导出字段: " + property);
+            }
+            selected.put(property, column);
+        }
+        return Collections.unmodifiableList(new ArrayList<>(selected.values()));
+    }
+}
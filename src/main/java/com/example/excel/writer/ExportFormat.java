@@ -0,0 +1,71 @@
+package com.example.excel.writer;
+
+/**
+ * 导出文件格式
+ * 由导出请求的exportType决定，未识别的类型按默认的xlsx格式导出
+ */
+public enum ExportFormat {
+
+    /**
+     * 单个xlsx文件（EasyExcel）
+     */
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+
+    /**
+     * 单个xlsx文件（直接生成SpreadsheetML，不经过EasyExcel）
+     */
+    XLSX_FAST("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+
+    /**
+     * 逗号分隔的文本文件（UTF-8，带BOM）
+     */
+    CSV("csv", "text/csv;charset=UTF-8"),
+
+    /**
+     * 制表符分隔的文本文件（UTF-8，带BOM）
+     */
+    TSV("tsv", "text/tab-separated-values;charset=UTF-8"),
+
+    /**
+     * 按主键区间分片并行生成多个xlsx，打包为一个zip
+     */
+    ZIP("zip", "application/zip");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 根据导出类型解析文件格式
+     *
+     * @param exportType 导出类型
+     * @return 文件格式
+     */
+    public static ExportFormat fromExportType(String exportType) {
+        if ("zip".equalsIgnoreCase(exportType)) {
+            return ZIP;
+        }
+        if ("xlsx_fast".equalsIgnoreCase(exportType)) {
+            return XLSX_FAST;
+        }
+        if ("csv".equalsIgnoreCase(exportType)) {
+            return CSV;
+        }
+        if ("tsv".equalsIgnoreCase(exportType)) {
+            return TSV;
+        }
+        return XLSX;
+    }
+}
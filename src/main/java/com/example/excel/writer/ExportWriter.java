@@ -0,0 +1,26 @@
+package com.example.excel.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 导出文件写入器
+ * 接收按列顺序排列的行数据，写入具体格式的导出文件
+ */
+public interface ExportWriter extends Closeable {
+
+    /**
+     * 写入一批行数据
+     *
+     * @param rows 行数据
+     */
+    void write(List<List<Object>> rows) throws IOException;
+
+    /**
+     * 获取已生成的工作表数量
+     *
+     * @return 工作表数量
+     */
+    int getSheetCount();
+}
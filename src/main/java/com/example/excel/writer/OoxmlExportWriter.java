@@ -0,0 +1,178 @@
+package com.example.excel.writer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 直接生成SpreadsheetML的xlsx写入器
+ * 不经过EasyExcel/POI的对象模型，按预先计算的列元数据把行数据直接编码成工作表XML写入zip
+ * （编码规则见{@link OoxmlSheetEncoder}），超过单表行数上限时切换到新的工作表
+ */
+@Slf4j
+public class OoxmlExportWriter implements ExportWriter {
+
+    private final ZipOutputStream zipOutputStream;
+    private final boolean closeStream;
+    private final String sheetName;
+    private final long maxRowsPerSheet;
+    private final OoxmlSheetEncoder encoder;
+
+    private boolean sheetOpen;
+    private int sheetCount;
+
+    public OoxmlExportWriter(OutputStream outputStream, String sheetName, long maxRowsPerSheet,
+                             List<ExcelColumnMeta> columns, boolean closeStream) {
+        this.zipOutputStream = new ZipOutputStream(outputStream);
+        this.zipOutputStream.setLevel(Deflater.BEST_SPEED);
+        this.closeStream = closeStream;
+        this.sheetName = sheetName;
+        this.maxRowsPerSheet = Math.max(1, Math.min(maxRowsPerSheet, EasyExcelExportWriter.XLSX_MAX_ROWS - 1));
+        this.encoder = new OoxmlSheetEncoder(columns);
+    }
+
+    @Override
+    public void write(List<List<Object>> rows) throws IOException {
+        for (List<Object> row : rows) {
+            if (!sheetOpen || encoder.getRowsInSheet() >= maxRowsPerSheet) {
+                closeSheet();
+                openSheet();
+            }
+            encoder.writeRow(row);
+        }
+    }
+
+    private void openSheet() throws IOException {
+        sheetCount++;
+        zipOutputStream.putNextEntry(new ZipEntry(sheetEntryName(sheetCount)));
+        encoder.begin(zipOutputStream);
+        sheetOpen = true;
+        if (sheetCount > 1) {
+            log.info("工作表行数达到上限 {}，切换到新工作表: {}", maxRowsPerSheet, sheetNameOf(sheetCount));
+        }
+    }
+
+    private void closeSheet() throws IOException {
+        if (!sheetOpen) {
+            return;
+        }
+        encoder.end();
+        zipOutputStream.closeEntry();
+        sheetOpen = false;
+    }
+
+    private String sheetNameOf(int sheetNo) {
+        return sheetNameOf(sheetName, sheetNo);
+    }
+
+    private static String sheetNameOf(String sheetName, int sheetNo) {
+        return sheetNo == 1 ? sheetName : sheetName + "_" + sheetNo;
+    }
+
+    /**
+     * 工作表在xlsx中的条目名
+     *
+     * @param sheetNo 工作表序号，从1开始
+     * @return 条目名
+     */
+    static String sheetEntryName(int sheetNo) {
+        return "xl/worksheets/sheet" + sheetNo + ".xml";
+    }
+
+    @Override
+    public int getSheetCount() {
+        return sheetCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 没有数据时也生成一个只有表头的工作表
+        if (sheetCount == 0) {
+            openSheet();
+        }
+        closeSheet();
+        for (Map.Entry<String, String> part : packageParts(sheetName, sheetCount).entrySet()) {
+            zipOutputStream.putNextEntry(new ZipEntry(part.getKey()));
+            zipOutputStream.write(part.getValue().getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        if (closeStream) {
+            zipOutputStream.close();
+        } else {
+            zipOutputStream.finish();
+        }
+    }
+
+    /**
+     * 工作簿、关系、样式和内容类型等固定部件（依赖最终的工作表数量，因此在最后写入）
+     *
+     * @param sheetName 工作表名称，第2个起加序号后缀
+     * @param sheetCount 工作表数量
+     * @return 条目名到内容，按写入顺序排列
+     */
+    static Map<String, String> packageParts(String sheetName, int sheetCount) {
+        StringBuilder contentTypes = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+            .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+            .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+            .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+            .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+            .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        StringBuilder workbook = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+            .append("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" ")
+            .append("xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        StringBuilder workbookRels = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+            .append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+
+        for (int i = 1; i <= sheetCount; i++) {
+            contentTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            workbook.append("<sheet name=\"").append(OoxmlSheetEncoder.escapeXml(sheetNameOf(sheetName, i)))
+                .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+            workbookRels.append("<Relationship Id=\"rId").append(i)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                .append(i).append(".xml\"/>");
+        }
+        contentTypes.append("</Types>");
+        workbook.append("</sheets></workbook>");
+        workbookRels.append("<Relationship Id=\"rId").append(sheetCount + 1)
+            .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>")
+            .append("</Relationships>");
+
+        Map<String, String> parts = new LinkedHashMap<>();
+        parts.put("[Content_Types].xml", contentTypes.toString());
+        parts.put("_rels/.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        parts.put("xl/workbook.xml", workbook.toString());
+        parts.put("xl/_rels/workbook.xml.rels", workbookRels.toString());
+        parts.put("xl/styles.xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"yyyy-mm-dd hh:mm:ss\"/></numFmts>"
+                + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"宋体\"/></font>"
+                + "<font><b/><sz val=\"11\"/><name val=\"宋体\"/></font></fonts>"
+                + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+                + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+                + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                + "</styleSheet>");
+        return parts;
+    }
+}
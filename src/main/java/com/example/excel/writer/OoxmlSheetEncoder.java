@@ -0,0 +1,287 @@
+package com.example.excel.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 工作表XML编码器
+ * 把行数据直接编码成工作表XML写入输出流：数字和日期写为原始数值（日期为Excel序列值加日期格式样式），
+ * 字符串使用内联字符串（保留首尾空白），NaN和无穷大不是合法的单元格数值，按文本写出；
+ * 编码结果不引用共享字符串表，样式编号与{@link OoxmlExportWriter#packageParts}中的样式表一致，
+ * 单独生成的工作表可以直接组装到同一个工作簿中。
+ * 所有内容经同一个复用的字节缓冲区输出，写入过程中没有逐单元格的对象分配
+ */
+final class OoxmlSheetEncoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 1970-01-01 对应的Excel日期序列值（1900日期系统）
+     */
+    private static final long EXCEL_EPOCH_OFFSET_DAYS = 25569L;
+
+    static final int STYLE_HEADER = 1;
+    static final int STYLE_DATE = 2;
+
+    private static final byte[] SHEET_FOOTER = bytes("</sheetData></worksheet>");
+    private static final byte[] ROW_END = bytes("</row>");
+    private static final byte[] CELL_EMPTY = bytes("<c/>");
+    private static final byte[] CELL_NUMBER_START = bytes("<c><v>");
+    private static final byte[] CELL_DATE_START = bytes("<c s=\"" + STYLE_DATE + "\"><v>");
+    private static final byte[] CELL_BOOLEAN_START = bytes("<c t=\"b\"><v>");
+    private static final byte[] CELL_VALUE_END = bytes("</v></c>");
+    private static final byte[] CELL_STRING_START = bytes("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+    private static final byte[] CELL_STRING_END = bytes("</t></is></c>");
+
+    /**
+     * 工作表开头（XML声明、列宽、表头行），每个工作表复用
+     */
+    private final byte[] sheetHeader;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private final byte[] digits = new byte[20];
+
+    private OutputStream out;
+    private long rowsInSheet;
+
+    OoxmlSheetEncoder(List<ExcelColumnMeta> columns) {
+        this.sheetHeader = buildSheetHeader(columns);
+    }
+
+    /**
+     * 开始一个工作表，写入开头部分
+     *
+     * @param out 工作表XML的输出流
+     */
+    void begin(OutputStream out) throws IOException {
+        this.out = out;
+        this.rowsInSheet = 0;
+        writeBytes(sheetHeader);
+    }
+
+    /**
+     * 结束当前工作表，写入结尾并把缓冲区写出（不关闭输出流）
+     */
+    void end() throws IOException {
+        writeBytes(SHEET_FOOTER);
+        flushBuffer();
+        out = null;
+    }
+
+    /**
+     * 当前工作表已写入的数据行数（不含表头）
+     */
+    long getRowsInSheet() {
+        return rowsInSheet;
+    }
+
+    /**
+     * 写入一行，行号从2开始（第1行为表头）
+     */
+    void writeRow(List<Object> row) throws IOException {
+        rowsInSheet++;
+        writeAscii("<row r=\"");
+        writeLong(rowsInSheet + 1);
+        writeAscii("\">");
+
+        for (int i = 0, size = row.size(); i < size; i++) {
+            writeCell(row.get(i));
+        }
+        writeBytes(ROW_END);
+    }
+
+    /**
+     * 写入单元格，空值也输出空单元格以保持列位置（单元格省略了r属性）
+     */
+    private void writeCell(Object value) throws IOException {
+        if (value == null) {
+            writeBytes(CELL_EMPTY);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+            writeBytes(CELL_NUMBER_START);
+            writeLong(((Number) value).longValue());
+            writeBytes(CELL_VALUE_END);
+        } else if (value instanceof BigDecimal) {
+            writeBytes(CELL_NUMBER_START);
+            writeAscii(((BigDecimal) value).toPlainString());
+            writeBytes(CELL_VALUE_END);
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                writeBytes(CELL_STRING_START);
+                writeAscii(Double.toString(number));
+                writeBytes(CELL_STRING_END);
+            } else {
+                writeBytes(CELL_NUMBER_START);
+                writeAscii(Double.toString(number));
+                writeBytes(CELL_VALUE_END);
+            }
+        } else if (value instanceof LocalDateTime) {
+            writeBytes(CELL_DATE_START);
+            writeAscii(Double.toString(toExcelSerial((LocalDateTime) value)));
+            writeBytes(CELL_VALUE_END);
+        } else if (value instanceof LocalDate) {
+            writeBytes(CELL_DATE_START);
+            writeLong(((LocalDate) value).toEpochDay() + EXCEL_EPOCH_OFFSET_DAYS);
+            writeBytes(CELL_VALUE_END);
+        } else if (value instanceof Date) {
+            writeBytes(CELL_DATE_START);
+            writeAscii(Double.toString(toExcelSerial(
+                LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()))));
+            writeBytes(CELL_VALUE_END);
+        } else if (value instanceof Boolean) {
+            writeBytes(CELL_BOOLEAN_START);
+            writeByte((Boolean) value ? '1' : '0');
+            writeBytes(CELL_VALUE_END);
+        } else {
+            writeBytes(CELL_STRING_START);
+            writeEscaped(value.toString());
+            writeBytes(CELL_STRING_END);
+        }
+    }
+
+    /**
+     * LocalDateTime 转 Excel 日期序列值（整数部分为天，小数部分为当天时间）
+     */
+    private static double toExcelSerial(LocalDateTime dateTime) {
+        long days = dateTime.toLocalDate().toEpochDay() + EXCEL_EPOCH_OFFSET_DAYS;
+        return days + dateTime.toLocalTime().toSecondOfDay() / 86400.0;
+    }
+
+    /**
+     * 预先生成工作表开头部分
+     */
+    private static byte[] buildSheetHeader(List<ExcelColumnMeta> columns) {
+        StringBuilder header = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>")
+            .append("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">")
+            .append("<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" ")
+            .append("activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>")
+            .append("<cols>");
+        for (int i = 0; i < columns.size(); i++) {
+            header.append("<col min=\"").append(i + 1).append("\" max=\"").append(i + 1)
+                .append("\" width=\"").append(columns.get(i).getWidth()).append("\" customWidth=\"1\"/>");
+        }
+        header.append("</cols><sheetData><row r=\"1\">");
+        for (ExcelColumnMeta column : columns) {
+            header.append("<c t=\"inlineStr\" s=\"").append(STYLE_HEADER).append("\"><is><t xml:space=\"preserve\">")
+                .append(escapeXml(column.getTitle())).append("</t></is></c>");
+        }
+        header.append("</row>");
+        return bytes(header.toString());
+    }
+
+    static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE - position) {
+            flushBuffer();
+            if (bytes.length > BUFFER_SIZE) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * 写入仅包含ASCII字符的文本（数字、XML标记）
+     */
+    private void writeAscii(String text) throws IOException {
+        int length = text.length();
+        if (length > BUFFER_SIZE - position) {
+            flushBuffer();
+        }
+        for (int i = 0; i < length; i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    /**
+     * 不经过Long.toString直接把整数写入缓冲区
+     */
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            writeByte(digits[--count]);
+        }
+    }
+
+    /**
+     * UTF-8编码并同时完成XML转义，XML 1.0不允许的控制字符直接丢弃；
+     * 不成对的代理字符无法编码为UTF-8，同样丢弃（与CSV/TSV的处理一致）
+     */
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (position > BUFFER_SIZE - 8) {
+                flushBuffer();
+            }
+            if (c < 0x80) {
+                if (c == '<') {
+                    writeAscii("&lt;");
+                } else if (c == '>') {
+                    writeAscii("&gt;");
+                } else if (c == '&') {
+                    writeAscii("&amp;");
+                } else if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                    buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.excel.writer;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * xlsx工作表分段写入器
+ * 把一个工作表的XML以raw deflate格式写入单独的分段文件，同时计算CRC和原始大小；
+ * 所有分段完成后由{@link #assemble}组装成一个xlsx，分段的压缩数据直接复制到zip条目中，不重新压缩。
+ * 已完成的分段文件在任务中断后仍然可用，重新执行时只需生成之后的工作表
+ */
+public class OoxmlSheetPartWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OoxmlSheetEncoder encoder;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final OutputStream fileStream;
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private boolean closed;
+
+    /**
+     * @param file 分段文件，已存在时覆盖
+     * @param columns 导出列
+     */
+    public OoxmlSheetPartWriter(File file, List<ExcelColumnMeta> columns) throws IOException {
+        this.encoder = new OoxmlSheetEncoder(columns);
+        this.fileStream = new DeflaterOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE), deflater, BUFFER_SIZE);
+        // 编码器写出的是未压缩的XML，经过时计算CRC和原始大小
+        encoder.begin(new FilterOutputStream(fileStream) {
+            @Override
+            public void write(int b) throws IOException {
+                crc.update(b);
+                size++;
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                crc.update(b, off, len);
+                size += len;
+                out.write(b, off, len);
+            }
+        });
+    }
+
+    /**
+     * 写入数据行，调用方负责控制单个工作表的行数
+     *
+     * @param rows 行数据
+     */
+    public void write(List<List<Object>> rows) throws IOException {
+        for (List<Object> row : rows) {
+            encoder.writeRow(row);
+        }
+    }
+
+    /**
+     * 已写入的数据行数（不含表头）
+     */
+    public long getRows() {
+        return encoder.getRowsInSheet();
+    }
+
+    /**
+     * 工作表XML的CRC，关闭后有效
+     */
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * 工作表XML的原始大小，关闭后有效
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 写入工作表结尾并完成压缩
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encoder.end();
+            fileStream.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 把各工作表分段按顺序组装成xlsx，写入后不关闭输出流
+     *
+     * @param outputStream 输出流
+     * @param sheetName 工作表名称，第2个起加序号后缀
+     * @param parts 工作表分段，按工作表顺序排列
+     */
+    public static void assemble(OutputStream outputStream, String sheetName, List<SheetPart> parts)
+            throws IOException {
+        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        zipOutputStream.setUseZip64(Zip64Mode.AsNeeded);
+        zipOutputStream.setLevel(Deflater.BEST_SPEED);
+
+        for (int i = 0; i < parts.size(); i++) {
+            SheetPart part = parts.get(i);
+            ZipArchiveEntry entry = new ZipArchiveEntry(OoxmlExportWriter.sheetEntryName(i + 1));
+            entry.setMethod(ZipEntry.DEFLATED);
+            entry.setCrc(part.crc);
+            entry.setSize(part.size);
+            entry.setCompressedSize(part.file.length());
+            try (InputStream in = new BufferedInputStream(new FileInputStream(part.file), BUFFER_SIZE)) {
+                zipOutputStream.addRawArchiveEntry(entry, in);
+            }
+        }
+        for (Map.Entry<String, String> packagePart : OoxmlExportWriter.packageParts(sheetName, parts.size()).entrySet()) {
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry(packagePart.getKey()));
+            zipOutputStream.write(packagePart.getValue().getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeArchiveEntry();
+        }
+        zipOutputStream.finish();
+        outputStream.flush();
+    }
+
+    /**
+     * 已完成的工作表分段
+     */
+    public static final class SheetPart {
+        private final File file;
+        private final long crc;
+        private final long size;
+
+        /**
+         * @param file 分段文件（raw deflate）
+         * @param crc 工作表XML的CRC
+         * @param size 工作表XML的原始大小
+         */
+        public SheetPart(File file, long crc, long size) {
+            this.file = file;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.excel.writer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 快照合并写入器
+ * 把按主键有序的增量数据合并到上一次的CSV/TSV快照中生成新的快照：
+ * 按块读取旧快照并在缓冲区中按下标扫描记录，主键小于当前增量行的连续记录按原始字节整段复制，
+ * 主键相同的记录被增量行替换（删除的行直接丢弃），未变更的数据既不查询数据库也不重新编码。
+ * 快照与增量行的第一列必须是主键，增量行的最后一列为变更类型（UPSERT/DELETE），不写入新快照。
+ */
+public class SnapshotMergeWriter implements ExportWriter {
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private final InputStream input;
+    private final DelimitedExportWriter output;
+    private final char delimiter;
+    private final boolean quoting;
+
+    /**
+     * 旧快照的读取缓冲区，limit之前为已读入的数据；单条记录超过缓冲区时扩容
+     */
+    private byte[] buffer = new byte[READ_BUFFER_SIZE];
+    private int limit;
+    private boolean endOfInput;
+
+    /**
+     * 当前快照记录在缓冲区中的范围[recordStart, recordEnd)（含行尾）
+     */
+    private int recordStart;
+    private int recordEnd;
+
+    /**
+     * 待复制的连续记录从runStart开始到当前记录之前，整段写出，不逐条复制
+     */
+    private int runStart;
+
+    /**
+     * 当前快照记录的主键，快照已读完时为null
+     */
+    private Long recordId;
+
+    private long copiedRows;
+    private long upsertedRows;
+    private long deletedRows;
+
+    /**
+     * @param snapshot 上一次的快照文件
+     * @param output 新快照的写入器（不输出表头，表头从旧快照复制）
+     * @param delimiter 分隔符，','为CSV，'\t'为TSV
+     */
+    public SnapshotMergeWriter(File snapshot, DelimitedExportWriter output, char delimiter) throws IOException {
+        this.input = new FileInputStream(snapshot);
+        this.output = output;
+        this.delimiter = delimiter;
+        this.quoting = delimiter != '\t';
+
+        // BOM和表头留在待复制的记录中，随后续记录一起复制
+        readRecord();
+        advance();
+    }
+
+    @Override
+    public void write(List<List<Object>> rows) throws IOException {
+        for (List<Object> row : rows) {
+            long id = ((Number) row.get(0)).longValue();
+            int last = row.size() - 1;
+            copyBefore(id);
+            if (recordId != null && recordId == id) {
+                // 旧记录被增量行替换或删除
+                dropRecord();
+                advance();
+            }
+            if ("DELETE".equals(row.get(last))) {
+                deletedRows++;
+            } else {
+                flushRun();
+                output.write(Collections.singletonList(row.subList(0, last)));
+                upsertedRows++;
+            }
+        }
+    }
+
+    /**
+     * 复制主键小于指定值的旧记录：记录只并入待复制的范围，由flushRun整段写出
+     */
+    private void copyBefore(long id) throws IOException {
+        while (recordId != null && recordId < id) {
+            copiedRows++;
+            advance();
+        }
+    }
+
+    /**
+     * 读取下一条快照记录并解析主键，无法解析主键的记录不写入新快照
+     */
+    private void advance() throws IOException {
+        recordId = null;
+        while (readRecord()) {
+            recordId = parseId();
+            if (recordId != null) {
+                return;
+            }
+            dropRecord();
+        }
+    }
+
+    /**
+     * 写出待复制的记录（当前记录之前的部分）
+     */
+    private void flushRun() throws IOException {
+        if (recordStart > runStart) {
+            output.writeRaw(buffer, runStart, recordStart - runStart);
+        }
+        runStart = recordStart;
+    }
+
+    /**
+     * 当前记录不写入新快照
+     */
+    private void dropRecord() throws IOException {
+        flushRun();
+        runStart = recordEnd;
+    }
+
+    /**
+     * 在缓冲区中按下标扫描出下一条完整记录，CSV引号内的换行属于字段内容
+     *
+     * @return 快照已读完时返回false
+     */
+    private boolean readRecord() throws IOException {
+        recordStart = recordEnd;
+        boolean inQuotes = false;
+        int position = recordStart;
+        while (true) {
+            if (position == limit) {
+                int shift = fill();
+                if (shift < 0) {
+                    recordEnd = limit;
+                    return recordEnd > recordStart;
+                }
+                position -= shift;
+                continue;
+            }
+            byte b = buffer[position++];
+            if (quoting && b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                recordEnd = position;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 写出待复制的记录，把未读完的当前记录移到缓冲区开头后继续读入
+     *
+     * @return 当前记录前移的字节数，快照已读完时返回-1
+     */
+    private int fill() throws IOException {
+        if (endOfInput) {
+            return -1;
+        }
+        flushRun();
+        int shift = recordStart;
+        if (shift > 0) {
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            limit -= shift;
+            recordStart = 0;
+            recordEnd -= shift;
+            runStart = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+            return -1;
+        }
+        limit += read;
+        return shift;
+    }
+
+    /**
+     * 解析记录第一列的主键，空行或无法解析时返回null
+     */
+    private Long parseId() {
+        long id = 0L;
+        int digits = 0;
+        for (int i = recordStart; i < recordEnd; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                id = id * 10 + (b - '0');
+                digits++;
+            } else if (b == delimiter || b == '\r' || b == '\n') {
+                break;
+            } else {
+                return null;
+            }
+        }
+        return digits > 0 ? id : null;
+    }
+
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+
+    public long getUpsertedRows() {
+        return upsertedRows;
+    }
+
+    public long getDeletedRows() {
+        return deletedRows;
+    }
+
+    /**
+     * 文本格式没有工作表
+     */
+    @Override
+    public int getSheetCount() {
+        return 0;
+    }
+
+    /**
+     * 复制剩余的旧记录后关闭
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            copyBefore(Long.MAX_VALUE);
+            flushRun();
+            output.close();
+        } finally {
+            input.close();
+        }
+    }
+}
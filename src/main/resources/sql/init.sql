@@ -22,7 +22,8 @@ CREATE TABLE IF NOT EXISTS `user` (
     PRIMARY KEY (`id`),
     KEY `idx_username` (`username`),
     KEY `idx_department` (`department`),
-    KEY `idx_create_time` (`create_time`)
+    KEY `idx_create_time` (`create_time`),
+    KEY `idx_update_time` (`update_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户表';
 
 -- 创建导出任务表
@@ -31,26 +32,76 @@ CREATE TABLE IF NOT EXISTS `export_task` (
     `task_id` varchar(64) NOT NULL COMMENT '任务唯一标识',
     `task_name` varchar(200) NOT NULL COMMENT '任务名称',
     `export_type` varchar(50) NOT NULL COMMENT '导出类型',
-    `status` varchar(20) NOT NULL DEFAULT 'PENDING' COMMENT '任务状态：PENDING,PROCESSING,SUCCESS,FAILED',
+    `status` varchar(20) NOT NULL DEFAULT 'PENDING' COMMENT '任务状态：PENDING,PROCESSING,SUCCESS,FAILED,CANCELLED,EXPIRED',
     `total_count` bigint(20) DEFAULT 0 COMMENT '总记录数',
     `processed_count` bigint(20) DEFAULT 0 COMMENT '已处理记录数',
     `progress` decimal(5,2) DEFAULT 0.00 COMMENT '进度百分比',
     `file_path` varchar(500) DEFAULT NULL COMMENT '文件路径',
     `file_name` varchar(200) DEFAULT NULL COMMENT '文件名',
     `file_size` bigint(20) DEFAULT NULL COMMENT '文件大小(字节)',
+    `file_etag` varchar(64) DEFAULT NULL COMMENT '文件的强ETag，由对象键和大小生成，与保存文件的存储无关',
+    `sheet_count` int(11) DEFAULT NULL COMMENT '工作表数量',
+    `priority` int(11) NOT NULL DEFAULT 5 COMMENT '调度优先级，数值越大越先执行',
+    `query_params` text DEFAULT NULL COMMENT '查询条件(JSON)，重启后按此恢复排队任务',
+    `checkpoint_rows` bigint(20) DEFAULT NULL COMMENT '检查点已导出记录数',
+    `checkpoint` text DEFAULT NULL COMMENT '导出检查点(JSON)，任务中断后从此处继续',
+    `total_estimated` tinyint(1) DEFAULT 0 COMMENT '总记录数是否为估算值，精确计数完成或导出成功后更新',
+    `result_key` char(64) DEFAULT NULL COMMENT '导出结果缓存键，任务成功后按此登记生成的文件',
+    `follow_task_id` varchar(64) DEFAULT NULL COMMENT '跟随的主任务ID，相同请求合并执行时与主任务共享文件',
+    `lease_token` varchar(64) DEFAULT NULL COMMENT '执行租约令牌，认领时生成，执行实例的所有更新都需带上该令牌',
+    `lease_expire_time` datetime DEFAULT NULL COMMENT '执行租约到期时间，执行实例定时续租，到期后任务放回队列',
     `error_message` text DEFAULT NULL COMMENT '错误信息',
     `create_by` varchar(50) DEFAULT NULL COMMENT '创建人',
     `start_time` datetime DEFAULT NULL COMMENT '开始时间',
     `end_time` datetime DEFAULT NULL COMMENT '结束时间',
+    `last_access_time` datetime DEFAULT NULL COMMENT '文件最近下载时间，按此淘汰最久未使用的文件',
     `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`id`),
     UNIQUE KEY `uk_task_id` (`task_id`),
     KEY `idx_status` (`status`),
+    KEY `idx_status_priority` (`status`, `priority`, `create_time`),
     KEY `idx_create_by` (`create_by`),
-    KEY `idx_create_time` (`create_time`)
+    KEY `idx_create_time` (`create_time`),
+    KEY `idx_follow_task_id` (`follow_task_id`),
+    KEY `idx_file_path` (`file_path`(191))
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='导出任务表';
 
+-- 创建导出结果缓存表
+CREATE TABLE IF NOT EXISTS `export_result_cache` (
+    `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `cache_key` char(64) NOT NULL COMMENT '查询条件、导出字段、格式和数据版本的SHA-256',
+    `export_type` varchar(50) NOT NULL COMMENT '导出类型',
+    `file_path` varchar(500) NOT NULL COMMENT '文件路径',
+    `file_name` varchar(200) NOT NULL COMMENT '文件名',
+    `file_size` bigint(20) NOT NULL COMMENT '文件大小(字节)',
+    `sheet_count` int(11) DEFAULT NULL COMMENT '工作表数量',
+    `total_count` bigint(20) DEFAULT NULL COMMENT '数据行数',
+    `source_task_id` varchar(64) NOT NULL COMMENT '生成该文件的任务ID',
+    `hit_count` bigint(20) NOT NULL DEFAULT 0 COMMENT '命中次数',
+    `last_access_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '最近访问时间',
+    `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_cache_key` (`cache_key`),
+    KEY `idx_last_access_time` (`last_access_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='导出结果缓存表';
+
+-- 创建增量导出水位线表
+CREATE TABLE IF NOT EXISTS `export_watermark` (
+    `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `definition_key` varchar(100) NOT NULL COMMENT '导出定义标识',
+    `signature` char(64) NOT NULL COMMENT '查询条件、导出字段和格式的SHA-256，增量与基准必须一致',
+    `export_type` varchar(50) NOT NULL COMMENT '导出类型',
+    `high_water_mark` datetime NOT NULL COMMENT '增量水位线，下次增量导出update_time不早于该时间的数据',
+    `snapshot_mark` datetime DEFAULT NULL COMMENT '快照水位线，快照包含该时间之前的全部变更',
+    `snapshot_path` varchar(500) DEFAULT NULL COMMENT '最新快照文件路径（仅CSV/TSV）',
+    `last_task_id` varchar(64) DEFAULT NULL COMMENT '最近推进水位线的任务ID',
+    `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_definition_key` (`definition_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='增量导出水位线表';
+
 -- 插入测试用户数据（生成100万条测试数据的存储过程）
 DELIMITER //
 CREATE PROCEDURE IF NOT EXISTS GenerateTestUsers(IN record_count INT)
@@ -124,6 +175,24 @@ CREATE INDEX IF NOT EXISTS idx_user_department_create_time ON `user`(`department
 CREATE INDEX IF NOT EXISTS idx_user_join_time ON `user`(`join_time`);
 CREATE INDEX IF NOT EXISTS idx_export_task_status_create_time ON `export_task`(`status`, `create_time`);
 
+-- 已有数据库升级（按需执行）
+-- ALTER TABLE `export_task` ADD COLUMN `sheet_count` int(11) DEFAULT NULL COMMENT '工作表数量' AFTER `file_size`;
+-- ALTER TABLE `export_task` ADD COLUMN `priority` int(11) NOT NULL DEFAULT 5 COMMENT '调度优先级，数值越大越先执行' AFTER `sheet_count`;
+-- ALTER TABLE `export_task` ADD COLUMN `query_params` text DEFAULT NULL COMMENT '查询条件(JSON)，重启后按此恢复排队任务' AFTER `priority`;
+-- ALTER TABLE `export_task` ADD INDEX `idx_status_priority` (`status`, `priority`, `create_time`);
+-- ALTER TABLE `export_task` ADD COLUMN `checkpoint_rows` bigint(20) DEFAULT NULL COMMENT '检查点已导出记录数' AFTER `query_params`;
+-- ALTER TABLE `export_task` ADD COLUMN `checkpoint` text DEFAULT NULL COMMENT '导出检查点(JSON)，任务中断后从此处继续' AFTER `checkpoint_rows`;
+-- ALTER TABLE `export_task` ADD COLUMN `result_key` char(64) DEFAULT NULL COMMENT '导出结果缓存键，任务成功后按此登记生成的文件' AFTER `checkpoint`;
+-- ALTER TABLE `export_task` ADD COLUMN `follow_task_id` varchar(64) DEFAULT NULL COMMENT '跟随的主任务ID，相同请求合并执行时与主任务共享文件' AFTER `result_key`;
+-- ALTER TABLE `export_task` ADD KEY `idx_follow_task_id` (`follow_task_id`);
+-- ALTER TABLE `user` ADD KEY `idx_update_time` (`update_time`);
+-- ALTER TABLE `export_task` ADD COLUMN `last_access_time` datetime DEFAULT NULL COMMENT '文件最近下载时间，按此淘汰最久未使用的文件' AFTER `end_time`;
+-- ALTER TABLE `export_task` ADD KEY `idx_file_path` (`file_path`(191));
+-- ALTER TABLE `export_task` ADD COLUMN `total_estimated` tinyint(1) DEFAULT 0 COMMENT '总记录数是否为估算值，精确计数完成或导出成功后更新' AFTER `checkpoint`;
+-- ALTER TABLE `export_task` ADD COLUMN `lease_token` varchar(64) DEFAULT NULL COMMENT '执行租约令牌，认领时生成，执行实例的所有更新都需带上该令牌' AFTER `follow_task_id`;
+-- ALTER TABLE `export_task` ADD COLUMN `lease_expire_time` datetime DEFAULT NULL COMMENT '执行租约到期时间，执行实例定时续租，到期后任务放回队列' AFTER `lease_token`;
+-- ALTER TABLE `export_task` ADD COLUMN `file_etag` varchar(64) DEFAULT NULL COMMENT '文件的强ETag，由对象键和大小生成，与保存文件的存储无关' AFTER `file_size`;
+
 -- 插入一些基础测试数据
 INSERT IGNORE INTO `user` (
     `username`, `real_name`, `email`, `phone`, `age`, `gender`, 
@@ -0,0 +1,77 @@
+package com.example.excel.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ExportCancellationTest {
+
+    private final ExportCancellation cancellation = new ExportCancellation();
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void cancelReachesStatementOnPropagatedPoolThread() throws Exception {
+        cancellation.register("t1");
+        Statement statement = mock(Statement.class);
+        CountDownLatch tracked = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        Future<Boolean>[] future = new Future[1];
+        cancellation.runBound("t1", () -> future[0] = pool.submit(ExportCancellation.propagate(() -> {
+            boolean bound = ExportCancellation.trackStatement(statement);
+            tracked.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            return bound;
+        })));
+        assertThat(tracked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        cancellation.cancelLocal("t1");
+        cancelled.countDown();
+
+        assertThat(future[0].get(5, TimeUnit.SECONDS)).isTrue();
+        verify(statement).cancel();
+    }
+
+    @Test
+    void callBoundTracksStatementOnPoolThread() throws Exception {
+        cancellation.register("t1");
+        cancellation.cancelLocal("t1");
+        Statement statement = mock(Statement.class);
+
+        boolean bound = pool.submit(() -> cancellation.callBound("t1",
+            () -> ExportCancellation.trackStatement(statement))).get(5, TimeUnit.SECONDS);
+
+        assertThat(bound).isTrue();
+        verify(statement).cancel();
+        // 线程池线程执行完后不再属于该任务
+        assertThat(pool.submit(() -> ExportCancellation.trackStatement(mock(Statement.class)))
+            .get(5, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void propagateOutsideTaskLeavesCallableUnbound() throws Exception {
+        Statement statement = mock(Statement.class);
+
+        boolean bound = pool.submit(ExportCancellation.propagate(
+            () -> ExportCancellation.trackStatement(statement))).get(5, TimeUnit.SECONDS);
+
+        assertThat(bound).isFalse();
+        verify(statement, never()).cancel();
+    }
+}
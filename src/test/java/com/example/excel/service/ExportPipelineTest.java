@@ -0,0 +1,116 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportPipelineTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private static final Function<List<User>, List<List<Object>>> CONVERTER = batch -> {
+        List<List<Object>> rows = new ArrayList<>(batch.size());
+        for (User user : batch) {
+            rows.add(Collections.singletonList(user.getId()));
+        }
+        return rows;
+    };
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writesAllBatchesInOrder() throws Exception {
+        List<Object> written = new ArrayList<>();
+        ExportPipeline pipeline = new ExportPipeline("t1", 2, executor, 5000);
+
+        pipeline.run(handler -> {
+            for (long id = 1; id <= 10; id++) {
+                handler.handle(Collections.singletonList(user(id)));
+            }
+        }, CONVERTER, rows -> written.add(rows.get(0).get(0)));
+
+        assertThat(written).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void writerFailureWaitsForReaderToLeaveBlockingCall() {
+        AtomicBoolean readerExited = new AtomicBoolean(false);
+        ExportPipeline pipeline = new ExportPipeline("t2", 4, executor, 5000);
+
+        assertThatThrownBy(() -> pipeline.run(handler -> {
+            try {
+                handler.handle(Collections.singletonList(user(1L)));
+                // 模拟不响应中断的JDBC调用
+                long deadline = System.currentTimeMillis() + 300;
+                while (System.currentTimeMillis() < deadline) {
+                    Thread.onSpinWait();
+                }
+                handler.handle(Collections.singletonList(user(2L)));
+            } finally {
+                readerExited.set(true);
+            }
+        }, CONVERTER, rows -> {
+            throw new IllegalStateException("磁盘已满");
+        })).hasMessage("磁盘已满");
+
+        assertThat(readerExited).isTrue();
+    }
+
+    @Test
+    void readerFailureIsRethrown() {
+        ExportPipeline pipeline = new ExportPipeline("t3", 4, executor, 5000);
+
+        assertThatThrownBy(() -> pipeline.run(handler -> {
+            handler.handle(Collections.singletonList(user(1L)));
+            throw new IllegalStateException("查询失败");
+        }, CONVERTER, rows -> { })).hasMessage("查询失败");
+    }
+
+    @Test
+    void rejectedStageFailsInsteadOfHanging() {
+        AtomicInteger submitted = new AtomicInteger();
+        // 读取阶段可能在流水线中止前开始，也可能因流水线已中止而不再执行，但run返回时都不能仍在执行
+        AtomicInteger runningReaders = new AtomicInteger();
+        ExportPipeline pipeline = new ExportPipeline("t4", 4, command -> {
+            if (submitted.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("线程已用尽");
+            }
+            executor.execute(command);
+        }, 5000);
+
+        assertThatThrownBy(() -> pipeline.run(handler -> {
+            runningReaders.incrementAndGet();
+            try {
+                for (long id = 1; id <= 100; id++) {
+                    handler.handle(Collections.singletonList(user(id)));
+                }
+            } finally {
+                runningReaders.decrementAndGet();
+            }
+        }, CONVERTER, rows -> { })).isInstanceOf(RejectedExecutionException.class);
+
+        assertThat(runningReaders).hasValue(0);
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.excel.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ExportSemaphoreTest {
+
+    private static EmbeddedRedis redis;
+
+    private ExportSemaphore semaphore;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flush();
+        semaphore = newSemaphore(60);
+    }
+
+    private ExportSemaphore newSemaphore(int leaseSeconds) {
+        ExportSemaphore created = new ExportSemaphore();
+        ReflectionTestUtils.setField(created, "stringRedisTemplate", redis.template());
+        ReflectionTestUtils.setField(created, "maxConcurrentTasks", 2);
+        ReflectionTestUtils.setField(created, "leaseSeconds", leaseSeconds);
+        return created;
+    }
+
+    @Test
+    void acquireUpToLimitAndReleaseFreesPermit() {
+        assertThat(semaphore.tryAcquire("t1")).isTrue();
+        assertThat(semaphore.tryAcquire("t2")).isTrue();
+        assertThat(semaphore.tryAcquire("t3")).isFalse();
+        // 同一任务重复获取视为续租
+        assertThat(semaphore.tryAcquire("t1")).isTrue();
+        assertThat(semaphore.getUsedPermits()).isEqualTo(2);
+
+        semaphore.release("t1");
+
+        assertThat(semaphore.getUsedPermits()).isEqualTo(1);
+        assertThat(semaphore.tryAcquire("t3")).isTrue();
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndCannotBeRenewed() throws InterruptedException {
+        ExportSemaphore shortLease = newSemaphore(1);
+        assertThat(shortLease.tryAcquire("t1")).isTrue();
+        assertThat(shortLease.tryAcquire("t2")).isTrue();
+
+        Thread.sleep(1200);
+
+        assertThat(shortLease.getUsedPermits()).isZero();
+        shortLease.renewLeases();
+        assertThat(redis.template().opsForZSet().score(ExportSemaphore.PERMITS_KEY, "t1"))
+            .as("过期的租约不能续租").isLessThan(serverMillis());
+        assertThat(shortLease.tryAcquire("t3")).isTrue();
+        assertThat(shortLease.tryAcquire("t4")).isTrue();
+        assertThat(redis.template().opsForZSet().score(ExportSemaphore.PERMITS_KEY, "t1")).isNull();
+    }
+
+    @Test
+    void renewExtendsLeaseFromServerTime() throws InterruptedException {
+        assertThat(semaphore.tryAcquire("t1")).isTrue();
+        Double first = redis.template().opsForZSet().score(ExportSemaphore.PERMITS_KEY, "t1");
+        assertThat(first).isCloseTo(serverMillis() + 60000.0, within(1000.0));
+
+        Thread.sleep(50);
+        semaphore.renewLeases();
+
+        Double renewed = redis.template().opsForZSet().score(ExportSemaphore.PERMITS_KEY, "t1");
+        assertThat(renewed).isGreaterThan(first);
+        assertThat(renewed).isCloseTo(serverMillis() + 60000.0, within(1000.0));
+    }
+
+    @Test
+    void legacyCounterKeyIsLeftUntouched() {
+        // 旧版本实例仍在使用字符串计数器时，新版本不会因键类型不同而失败
+        StringRedisTemplate template = redis.template();
+        template.opsForValue().set("export:processing:count", "3");
+
+        assertThat(semaphore.tryAcquire("t1")).isTrue();
+        assertThat(template.opsForValue().get("export:processing:count")).isEqualTo("3");
+    }
+
+    private static double serverMillis() {
+        Long time = redis.template().execute((RedisCallback<Long>) connection -> connection.serverCommands().time());
+        return time.doubleValue();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.excel.service;
+
+import com.example.excel.dto.ExportRequest;
+import com.example.excel.dto.ExportResponse;
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportTaskMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExportSingleFlightTest {
+
+    private static EmbeddedRedis redis;
+
+    private final ExportTaskMapper taskMapper = mock(ExportTaskMapper.class);
+    private final ExportStorageManager storageManager = mock(ExportStorageManager.class);
+    private final Map<String, ExportTask> tasks = new ConcurrentHashMap<>();
+
+    private ExportSingleFlight singleFlight;
+    private ExcelExportService service;
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flush();
+        singleFlight = new ExportSingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "stringRedisTemplate", redis.template());
+        ReflectionTestUtils.setField(singleFlight, "enabled", true);
+        ReflectionTestUtils.setField(singleFlight, "ttlMs", 60000L);
+        ReflectionTestUtils.setField(singleFlight, "creationGraceMs", 10000L);
+        ReflectionTestUtils.setField(singleFlight, "retryIntervalMs", 10L);
+
+        when(taskMapper.insert(any(ExportTask.class))).thenAnswer(invocation -> {
+            ExportTask task = invocation.getArgument(0);
+            tasks.put(task.getTaskId(), task);
+            return 1;
+        });
+        when(taskMapper.selectByTaskId(anyString())).thenAnswer(invocation -> tasks.get(invocation.getArgument(0)));
+
+        ExportCountService countService = mock(ExportCountService.class);
+        when(countService.resolve(any())).thenReturn(new ExportCountService.CountResult("v1", 1000L, false));
+        ExportResultCache resultCache = mock(ExportResultCache.class);
+        when(resultCache.buildKey(any(), any(), any())).thenReturn("same-request");
+
+        service = new ExcelExportService();
+        ReflectionTestUtils.setField(service, "exportTaskMapper", taskMapper);
+        ReflectionTestUtils.setField(service, "taskCache", mock(ExportTaskCache.class));
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "exportSemaphore", mock(ExportSemaphore.class));
+        ReflectionTestUtils.setField(service, "taskLeases", mock(ExportTaskLeases.class));
+        ReflectionTestUtils.setField(service, "resultCache", resultCache);
+        ReflectionTestUtils.setField(service, "singleFlight", singleFlight);
+        ReflectionTestUtils.setField(service, "deltaService", mock(ExportDeltaService.class));
+        ReflectionTestUtils.setField(service, "countService", countService);
+        ReflectionTestUtils.setField(service, "storageManager", storageManager);
+        ReflectionTestUtils.setField(service, "maxPendingTasks", 100);
+        ReflectionTestUtils.setField(service, "exportEventHub", mock(ExportEventHub.class));
+        ReflectionTestUtils.setField(service, "exportCancellation", mock(ExportCancellation.class));
+    }
+
+    @Test
+    void requestArrivingBeforeLeaderRowExistsFollowsInsteadOfReclaiming() throws Exception {
+        CountDownLatch leaderClaimed = new CountDownLatch(1);
+        CountDownLatch followerSawMissingRow = new CountDownLatch(1);
+        // 主任务登记后、写入任务记录前停住，直到相同请求查到主任务记录不存在
+        doAnswer(invocation -> {
+            leaderClaimed.countDown();
+            assertThat(followerSawMissingRow.await(10, TimeUnit.SECONDS)).isTrue();
+            return null;
+        }).when(storageManager).checkCapacity();
+        when(taskMapper.selectByTaskId(anyString())).thenAnswer(invocation -> {
+            ExportTask task = tasks.get(invocation.getArgument(0));
+            if (task == null) {
+                followerSawMissingRow.countDown();
+            }
+            return task;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ExportResponse> first = executor.submit(() -> service.startExport(new ExportRequest()));
+            assertThat(leaderClaimed.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<ExportResponse> second = executor.submit(() -> service.startExport(new ExportRequest()));
+
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<ExportTask> leaders = new ArrayList<>();
+        List<ExportTask> followers = new ArrayList<>();
+        for (ExportTask task : tasks.values()) {
+            (task.getFollowTaskId() == null ? leaders : followers).add(task);
+        }
+        assertThat(leaders).hasSize(1);
+        assertThat(followers).hasSize(1);
+        String leaderTaskId = leaders.get(0).getTaskId();
+        assertThat(followers.get(0).getFollowTaskId()).isEqualTo(leaderTaskId);
+        // 主任务的登记和跟随集合保持不变
+        assertThat(singleFlight.tryLead("same-request", "other")).isEqualTo(leaderTaskId);
+        assertThat(singleFlight.getFollowers(leaderTaskId)).containsExactly(followers.get(0).getTaskId());
+    }
+
+    @Test
+    void cancellingLeaderHandsExportToEarliestFollower() {
+        ExportTask leader = task(1L, "leader", null, "CANCELLED");
+        ExportTask first = task(2L, "first", "leader", "PROCESSING");
+        ExportTask second = task(3L, "second", "leader", "PROCESSING");
+        tasks.put("leader", leader);
+        tasks.put("first", first);
+        tasks.put("second", second);
+        assertThat(singleFlight.tryLead("same-request", "leader")).isNull();
+        singleFlight.addFollower("leader", "second");
+        singleFlight.addFollower("leader", "first");
+
+        when(taskMapper.cancelTask("leader")).thenReturn(1);
+        when(taskMapper.selectFollowers("leader")).thenReturn(Arrays.asList(second, first));
+        when(taskMapper.promoteFollower("leader", "first")).thenAnswer(invocation -> {
+            first.setFollowTaskId(null);
+            first.setStatus("PENDING");
+            return 1;
+        });
+        when(taskMapper.reassignFollowers("leader", "first")).thenAnswer(invocation -> {
+            second.setFollowTaskId("first");
+            second.setStatus("PENDING");
+            return 1;
+        });
+        when(taskMapper.selectFollowers("first")).thenReturn(Collections.singletonList(second));
+
+        service.cancelExport("leader");
+
+        // 只有发起取消的请求被取消，其余请求由接手的任务继续导出
+        verify(taskMapper, never()).completeFollowers(anyString());
+        assertThat(first.getStatus()).isEqualTo("PENDING");
+        assertThat(second.getFollowTaskId()).isEqualTo("first");
+        assertThat(singleFlight.tryLead("same-request", "other")).isEqualTo("first");
+        assertThat(singleFlight.getFollowers("first")).containsExactly("second");
+        assertThat(singleFlight.getFollowers("leader")).isEmpty();
+    }
+
+    @Test
+    void cancellingLeaderWithoutFollowersStopsExport() {
+        tasks.put("leader", task(1L, "leader", null, "CANCELLED"));
+        when(taskMapper.cancelTask("leader")).thenReturn(1);
+
+        service.cancelExport("leader");
+
+        verify(taskMapper, never()).promoteFollower(anyString(), anyString());
+        verify(taskMapper).completeFollowers("leader");
+    }
+
+    @Test
+    void claimWithoutRowPastCreationGraceIsReclaimed() {
+        ReflectionTestUtils.setField(singleFlight, "creationGraceMs", 0L);
+        assertThat(singleFlight.tryLead("same-request", "lost-leader")).isNull();
+
+        service.startExport(new ExportRequest());
+
+        assertThat(tasks).hasSize(1);
+        ExportTask task = tasks.values().iterator().next();
+        assertThat(task.getFollowTaskId()).isNull();
+        assertThat(singleFlight.tryLead("same-request", "other")).isEqualTo(task.getTaskId());
+    }
+
+    private static ExportTask task(Long id, String taskId, String followTaskId, String status) {
+        ExportTask task = new ExportTask();
+        task.setId(id);
+        task.setTaskId(taskId);
+        task.setFollowTaskId(followTaskId);
+        task.setStatus(status);
+        task.setResultKey("same-request");
+        return task;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.excel.service;
+
+import com.example.excel.mapper.ExportResultMapper;
+import com.example.excel.mapper.ExportTaskMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ExportStorageManagerTest {
+
+    private final ExportTaskMapper taskMapper = mock(ExportTaskMapper.class);
+    private final ExportResultMapper resultMapper = mock(ExportResultMapper.class);
+    private final ExportStorageManager manager = new ExportStorageManager();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(manager, "exportTaskMapper", taskMapper);
+        ReflectionTestUtils.setField(manager, "exportResultMapper", resultMapper);
+        ReflectionTestUtils.setField(manager, "tempPath", tempDir.toString());
+        ReflectionTestUtils.setField(manager, "maxBytes", 10L);
+        ReflectionTestUtils.setField(manager, "minFreeBytes", 0L);
+        ReflectionTestUtils.setField(manager, "ttl", Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    void overQuotaRequestsBackgroundEvictionWithoutBlocking() throws IOException {
+        File file = write("old.csv", 100);
+        when(taskMapper.selectFilesByLastUse(isNull(), anyInt(), anyInt()))
+            .thenReturn(Collections.singletonList(Map.of("filePath", file.getPath())));
+
+        // 超出配额时不在请求线程上淘汰，导出照常进行
+        manager.checkCapacity();
+        verifyNoInteractions(taskMapper, resultMapper);
+        assertThat(file).exists();
+
+        manager.evictIfRequested();
+        assertThat(file).doesNotExist();
+        verify(resultMapper).deleteByFilePath(file.getPath());
+        verify(taskMapper).expireByFilePath(file.getPath());
+    }
+
+    @Test
+    void quotaEvictionSkipsFilesHeldOnOtherNodes() throws IOException {
+        String remotePath = tempDir.resolve("other-node.csv").toString();
+        File file = write("local.csv", 100);
+        when(taskMapper.selectFilesByLastUse(isNull(), eq(0), anyInt()))
+            .thenReturn(Arrays.asList(Map.of("filePath", remotePath), Map.of("filePath", file.getPath())));
+
+        manager.checkCapacity();
+        manager.evictIfRequested();
+
+        // 其他节点的文件不在本节点磁盘上，不能因本节点超出配额而过期
+        verify(taskMapper, never()).expireByFilePath(remotePath);
+        verify(resultMapper, never()).deleteByFilePath(remotePath);
+        verify(taskMapper).expireByFilePath(file.getPath());
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void withinQuotaDoesNotRequestEviction() throws IOException {
+        write("small.csv", 5);
+
+        manager.checkCapacity();
+        manager.evictIfRequested();
+
+        verify(taskMapper, never()).selectFilesByLastUse(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void lowFreeSpaceRejectsAndRequestsEviction() {
+        ReflectionTestUtils.setField(manager, "minFreeBytes", Long.MAX_VALUE);
+
+        assertThatThrownBy(manager::checkCapacity).isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("存储空间不足");
+        verifyNoInteractions(taskMapper);
+
+        manager.evictIfRequested();
+        verify(taskMapper).selectFilesByLastUse(isNull(), anyInt(), anyInt());
+    }
+
+    @Test
+    void etagDependsOnlyOnObjectKeyAndSize() {
+        String etag = ExportStorageManager.etagOf("/tmp/excel/abc123.csv", 1024);
+
+        // 本地路径不同（其他节点、从远端下载的副本）时ETag相同
+        assertThat(ExportStorageManager.etagOf("/data/export/abc123.csv", 1024)).isEqualTo(etag);
+        assertThat(ExportStorageManager.etagOf("/tmp/excel/abc123.csv", 1025)).isNotEqualTo(etag);
+        assertThat(ExportStorageManager.etagOf("/tmp/excel/abc124.csv", 1024)).isNotEqualTo(etag);
+        // 强ETag，不暴露生成文件的任务ID
+        assertThat(etag).startsWith("\"").endsWith("-400\"").doesNotContain("abc123");
+    }
+
+    private File write(String name, int size) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import com.example.excel.mapper.ExportTaskMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExportTaskLeasesTest {
+
+    private final ExportTaskMapper mapper = mock(ExportTaskMapper.class);
+    private final ExportCancellation cancellation = mock(ExportCancellation.class);
+    private final ExportTaskLeases leases = new ExportTaskLeases();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(leases, "exportTaskMapper", mapper);
+        ReflectionTestUtils.setField(leases, "exportCancellation", cancellation);
+        ReflectionTestUtils.setField(leases, "leaseSeconds", 60);
+        ReflectionTestUtils.setField(leases, "renewInterval", 15000L);
+    }
+
+    @Test
+    void claimHoldsLeaseOnlyWhenUpdateSucceeds() {
+        when(mapper.claimTask(eq("t1"), anyString(), eq(60))).thenReturn(1);
+        when(mapper.claimTask(eq("t2"), anyString(), eq(60))).thenReturn(0);
+
+        String token = leases.claim("t1");
+
+        assertThat(token).isNotNull();
+        assertThat(leases.tokenOf("t1")).isEqualTo(token);
+        assertThat(leases.claim("t2")).isNull();
+        assertThat(leases.tokenOf("t2")).isNull();
+    }
+
+    @Test
+    void renewalOnZeroRowsAbandonsRequeuedTask() {
+        when(mapper.claimTask(eq("t1"), anyString(), anyInt())).thenReturn(1);
+        String token = leases.claim("t1");
+        when(mapper.renewLease("t1", token, 60)).thenReturn(0);
+        ExportTask task = new ExportTask();
+        task.setStatus("PROCESSING");
+        when(mapper.selectByTaskId("t1")).thenReturn(task);
+
+        leases.renewLeases();
+
+        verify(cancellation).abandonLocal("t1");
+        verify(cancellation, never()).cancelLocal("t1");
+        assertThat(leases.tokenOf("t1")).isNull();
+    }
+
+    @Test
+    void renewalOnZeroRowsCancelsCancelledTask() {
+        when(mapper.claimTask(eq("t1"), anyString(), anyInt())).thenReturn(1);
+        String token = leases.claim("t1");
+        when(mapper.renewLease("t1", token, 60)).thenReturn(0);
+        ExportTask task = new ExportTask();
+        task.setStatus("CANCELLED");
+        when(mapper.selectByTaskId("t1")).thenReturn(task);
+
+        leases.renewLeases();
+
+        verify(cancellation).cancelLocal("t1");
+    }
+
+    @Test
+    void renewalFailureStopsTaskOnlyNearLeaseExpiry() {
+        when(mapper.claimTask(eq("t1"), anyString(), anyInt())).thenReturn(1);
+        String token = leases.claim("t1");
+        when(mapper.renewLease("t1", token, 60)).thenThrow(new RuntimeException("数据库不可达"));
+
+        leases.renewLeases();
+        verify(cancellation, never()).abandonLocal("t1");
+        assertThat(leases.tokenOf("t1")).isEqualTo(token);
+
+        // 下次续租前租约就会过期时不再等待
+        ReflectionTestUtils.setField(leases, "renewInterval", 60000L);
+        leases.renewLeases();
+        verify(cancellation).abandonLocal("t1");
+        assertThat(leases.tokenOf("t1")).isNull();
+    }
+
+    @Test
+    void releaseWithStaleTokenKeepsNewerLease() {
+        when(mapper.claimTask(eq("t1"), anyString(), anyInt())).thenReturn(1);
+        String first = leases.claim("t1");
+        String second = leases.claim("t1");
+
+        leases.release("t1", first);
+        assertThat(leases.tokenOf("t1")).isEqualTo(second);
+
+        leases.release("t1", second);
+        assertThat(leases.tokenOf("t1")).isNull();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.excel.service;
+
+import com.example.excel.entity.ExportTask;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportTaskStateStoreTest {
+
+    private static final String KEY_PREFIX = "export:task:state:";
+
+    private static EmbeddedRedis redis;
+
+    private final ExportTaskStateStore store = new ExportTaskStateStore();
+
+    @BeforeAll
+    static void startRedis() {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        redis.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.flush();
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", redis.template());
+        ReflectionTestUtils.setField(store, "timeoutMinutes", 30);
+    }
+
+    @Test
+    void progressUpdateKeepsExpiry() {
+        store.save(task("t1"));
+
+        assertThat(store.updateProgress("t1", 500L, 50.0)).isTrue();
+
+        ExportTask loaded = store.load("t1");
+        assertThat(loaded.getProcessedCount()).isEqualTo(500L);
+        assertThat(loaded.getProgress()).isEqualTo(50.0);
+        assertThat(redis.template().getExpire(KEY_PREFIX + "t1", TimeUnit.SECONDS)).isPositive();
+    }
+
+    @Test
+    void progressUpdateDoesNotRecreateExpiredState() {
+        assertThat(store.updateProgress("t1", 500L, 50.0)).isFalse();
+
+        assertThat(redis.template().hasKey(KEY_PREFIX + "t1")).isFalse();
+        assertThat(store.load("t1")).isNull();
+    }
+
+    @Test
+    void followerAndResultKeyRoundTrip() {
+        ExportTask follower = task("t2");
+        follower.setFollowTaskId("t1");
+        follower.setResultKey("abc123");
+        follower.setFileEtag("\"e1-a\"");
+        store.save(follower);
+
+        ExportTask loaded = store.load("t2");
+
+        assertThat(loaded.getFollowTaskId()).isEqualTo("t1");
+        assertThat(loaded.getResultKey()).isEqualTo("abc123");
+        assertThat(loaded.getFileEtag()).isEqualTo("\"e1-a\"");
+        assertThat(loaded.getStatus()).isEqualTo("PENDING");
+        assertThat(loaded.getCreateTime()).isEqualTo(follower.getCreateTime());
+    }
+
+    private static ExportTask task(String taskId) {
+        ExportTask task = new ExportTask();
+        task.setId(1L);
+        task.setTaskId(taskId);
+        task.setTaskName("用户数据导出");
+        task.setStatus("PENDING");
+        task.setPriority(5);
+        task.setTotalCount(1000L);
+        task.setProcessedCount(0L);
+        task.setProgress(0.0);
+        task.setCreateTime(LocalDateTime.now().withNano(0));
+        return task;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.excel.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileDownloadServiceTest {
+
+    private static final String ETAG = "\"abc-1\"";
+
+    /**
+     * Thu, 07 Mar 2024 08:00:00 GMT
+     */
+    private static final long LAST_MODIFIED = 1709798400000L;
+
+    @Test
+    void parsesSingleAndOpenEndedRanges() {
+        assertThat(FileDownloadService.parseRanges("bytes=0-99", 1000)).containsExactly(new long[]{0, 99});
+        assertThat(FileDownloadService.parseRanges("bytes=900-", 1000)).containsExactly(new long[]{900, 999});
+        // 结束位置超过文件大小时截到文件末尾
+        assertThat(FileDownloadService.parseRanges("bytes=500-5000", 1000)).containsExactly(new long[]{500, 999});
+    }
+
+    @Test
+    void parsesSuffixRanges() {
+        assertThat(FileDownloadService.parseRanges("bytes=-100", 1000)).containsExactly(new long[]{900, 999});
+        // 后缀长度超过文件大小时返回整个文件
+        assertThat(FileDownloadService.parseRanges("bytes=-5000", 1000)).containsExactly(new long[]{0, 999});
+        assertThat(FileDownloadService.parseRanges("bytes=-0", 1000)).isEmpty();
+    }
+
+    @Test
+    void parsesMultipleRangesAndSkipsUnsatisfiableOnes() {
+        List<long[]> ranges = FileDownloadService.parseRanges("bytes=0-9, 2000-3000, 20-29,-5", 1000);
+
+        assertThat(ranges).containsExactly(new long[]{0, 9}, new long[]{20, 29}, new long[]{995, 999});
+    }
+
+    @Test
+    void unsatisfiableRangesGiveEmptyList() {
+        assertThat(FileDownloadService.parseRanges("bytes=1000-", 1000)).isEmpty();
+        assertThat(FileDownloadService.parseRanges("bytes=1000-1999,5000-6000", 1000)).isEmpty();
+        assertThat(FileDownloadService.parseRanges("bytes=-10", 0)).isEmpty();
+    }
+
+    @Test
+    void malformedRangesFallBackToFullFile() {
+        assertThat(FileDownloadService.parseRanges("items=0-9", 1000)).isNull();
+        assertThat(FileDownloadService.parseRanges("bytes=9-0", 1000)).isNull();
+        assertThat(FileDownloadService.parseRanges("bytes=abc-", 1000)).isNull();
+        assertThat(FileDownloadService.parseRanges("bytes=5", 1000)).isNull();
+        assertThat(FileDownloadService.parseRanges("bytes=" + "0-0,".repeat(17), 1000)).isNull();
+    }
+
+    @Test
+    void ifRangeMatchesOnlyStrongEtag() {
+        assertThat(ifRange(null)).isTrue();
+        assertThat(ifRange(ETAG)).isTrue();
+        assertThat(ifRange("\"other\"")).isFalse();
+        // 弱ETag不能用于If-Range
+        assertThat(ifRange("W/" + ETAG)).isFalse();
+    }
+
+    @Test
+    void ifRangeDateMustMatchLastModifiedExactly() {
+        assertThat(ifRange("Thu, 07 Mar 2024 08:00:00 GMT")).isTrue();
+        // 文件在该日期之后没有修改并不足够，日期不同即按完整文件响应
+        assertThat(ifRange("Thu, 07 Mar 2024 09:00:00 GMT")).isFalse();
+        assertThat(ifRange("Thu, 07 Mar 2024 07:59:59 GMT")).isFalse();
+        assertThat(ifRange("not a date")).isFalse();
+    }
+
+    private static boolean ifRange(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (value != null) {
+            request.addHeader(HttpHeaders.IF_RANGE, value);
+        }
+        return FileDownloadService.isIfRangeSatisfied(request, ETAG, LAST_MODIFIED);
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.excel.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的S3兼容服务
+ * 基于JDK HttpServer，在内存中保存对象和分段，按Signature Version 4校验每个请求的签名和负载摘要；
+ * 支持单次上传、分段上传（创建、上传分段、完成、中止）、HEAD、带Range的GET和DELETE
+ */
+class FakeS3Server implements AutoCloseable {
+
+    static final String BUCKET = "bucket";
+    static final String REGION = "us-east-1";
+    static final String ACCESS_KEY = "test-access";
+    static final String SECRET_KEY = "test-secret";
+
+    private final HttpServer server;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger uploadSequence = new AtomicInteger();
+
+    /**
+     * 上传该序号的分段时返回500
+     */
+    private volatile int failPartNumber = -1;
+
+    /**
+     * 模拟忽略Range的服务端，GET始终返回200和整个对象
+     */
+    private volatile boolean ignoreRange;
+
+    private FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                handle(exchange);
+            } catch (Exception e) {
+                respond(exchange, 500, e.toString().getBytes(StandardCharsets.UTF_8));
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    static FakeS3Server start() throws IOException {
+        return new FakeS3Server();
+    }
+
+    S3Client client() {
+        return client(SECRET_KEY);
+    }
+
+    /**
+     * @param secretKey 签名使用的密钥，与服务端不一致时请求被拒绝
+     */
+    S3Client client(String secretKey) {
+        return new S3Client("http://127.0.0.1:" + server.getAddress().getPort(), REGION, BUCKET,
+            ACCESS_KEY, secretKey, true, Duration.ofSeconds(10));
+    }
+
+    Map<String, byte[]> objects() {
+        return objects;
+    }
+
+    Map<String, Map<Integer, byte[]>> uploads() {
+        return uploads;
+    }
+
+    /**
+     * 收到的请求（方法 + 查询参数名），按到达顺序
+     */
+    List<String> requests() {
+        return requests;
+    }
+
+    void failPart(int partNumber) {
+        this.failPartNumber = partNumber;
+    }
+
+    void ignoreRange(boolean ignoreRange) {
+        this.ignoreRange = ignoreRange;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String rawPath = exchange.getRequestURI().getRawPath();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        Map<String, String> query = parseQuery(rawQuery);
+        requests.add(method + (query.isEmpty() ? "" : " " + String.join("&", query.keySet())));
+
+        if (!verifySignature(exchange, method, rawPath, rawQuery, body)) {
+            respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>"
+                .getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String prefix = "/" + BUCKET + "/";
+        if (!rawPath.startsWith(prefix)) {
+            respond(exchange, 404, new byte[0]);
+            return;
+        }
+        String key = URLDecoder.decode(rawPath.substring(prefix.length()), StandardCharsets.UTF_8);
+
+        if ("POST".equals(method) && query.containsKey("uploads")) {
+            String uploadId = "upload-" + uploadSequence.incrementAndGet();
+            uploads.put(uploadId, new ConcurrentHashMap<>());
+            respond(exchange, 200, ("<InitiateMultipartUploadResult><UploadId>" + uploadId
+                + "</UploadId></InitiateMultipartUploadResult>").getBytes(StandardCharsets.UTF_8));
+        } else if ("PUT".equals(method) && query.containsKey("partNumber")) {
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+            if (parts == null || partNumber == failPartNumber) {
+                respond(exchange, parts == null ? 404 : 500, new byte[0]);
+                return;
+            }
+            parts.put(partNumber, body);
+            exchange.getResponseHeaders().set("ETag", "\"etag-" + partNumber + "\"");
+            respond(exchange, 200, new byte[0]);
+        } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+            Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            if (parts == null) {
+                respond(exchange, 404, new byte[0]);
+                return;
+            }
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            List<Integer> numbers = new ArrayList<>(parts.keySet());
+            Collections.sort(numbers);
+            String xml = new String(body, StandardCharsets.UTF_8);
+            for (Integer number : numbers) {
+                if (!xml.contains("<PartNumber>" + number + "</PartNumber><ETag>&quot;etag-" + number + "&quot;</ETag>")) {
+                    respond(exchange, 200, "<Error><Code>InvalidPart</Code></Error>".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                object.write(parts.get(number));
+            }
+            objects.put(key, object.toByteArray());
+            respond(exchange, 200, "<CompleteMultipartUploadResult/>".getBytes(StandardCharsets.UTF_8));
+        } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+            uploads.remove(query.get("uploadId"));
+            respond(exchange, 204, null);
+        } else if ("PUT".equals(method)) {
+            objects.put(key, body);
+            respond(exchange, 200, new byte[0]);
+        } else if ("HEAD".equals(method)) {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                respond(exchange, 404, null);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+            exchange.getResponseHeaders().set("Last-Modified", "Fri, 24 May 2013 00:00:00 GMT");
+            exchange.sendResponseHeaders(200, -1);
+        } else if ("GET".equals(method)) {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                respond(exchange, 404, new byte[0]);
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null || ignoreRange) {
+                respond(exchange, 200, object);
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+            byte[] slice = new byte[end - start + 1];
+            System.arraycopy(object, start, slice, 0, slice.length);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.length);
+            respond(exchange, 206, slice);
+        } else if ("DELETE".equals(method)) {
+            objects.remove(key);
+            respond(exchange, 204, null);
+        } else {
+            respond(exchange, 405, new byte[0]);
+        }
+    }
+
+    /**
+     * 按收到的请求重新计算签名，与Authorization请求头比较，同时校验负载摘要
+     */
+    private static boolean verifySignature(HttpExchange exchange, String method, String rawPath, String rawQuery,
+                                           byte[] body) {
+        String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (payloadHash == null || amzDate == null || authorization == null || !payloadHash.equals(sha256Hex(body))) {
+            return false;
+        }
+        Map<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", exchange.getRequestHeaders().getFirst("Host"));
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", amzDate);
+        String expected = S3Client.authorization(method, rawPath, rawQuery != null ? rawQuery : "", signedHeaders,
+            payloadHash, amzDate, REGION, ACCESS_KEY, SECRET_KEY);
+        return expected.equals(authorization);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.excel.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3MultipartOutputStreamTest {
+
+    private static final int PART_SIZE = 4;
+
+    private FakeS3Server server;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = FakeS3Server.start();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    void smallFileCommitsWithSinglePut() throws IOException {
+        try (S3MultipartOutputStream out = open("small.csv")) {
+            out.write(bytes("abc"));
+            out.commit();
+        }
+
+        assertThat(server.objects().get("small.csv")).isEqualTo(bytes("abc"));
+        assertThat(server.requests()).containsExactly("PUT");
+    }
+
+    @Test
+    void largeFileIsSplitIntoPartsAndCompleted() throws IOException {
+        try (S3MultipartOutputStream out = open("large.csv")) {
+            out.write(bytes("0123456"));
+            out.write('7');
+            out.write(bytes("89"));
+            out.commit();
+        }
+
+        assertThat(server.objects().get("large.csv")).isEqualTo(bytes("0123456789"));
+        // 4 + 4 + 2 字节三个分段
+        assertThat(server.requests()).containsExactly("POST uploads",
+            "PUT partNumber&uploadId", "PUT partNumber&uploadId", "PUT partNumber&uploadId", "POST uploadId");
+        assertThat(server.uploads()).isEmpty();
+    }
+
+    @Test
+    void exactMultipleOfPartSizeHasNoEmptyTrailingPart() throws IOException {
+        try (S3MultipartOutputStream out = open("even.csv")) {
+            out.write(bytes("01234567"));
+            out.commit();
+        }
+
+        assertThat(server.objects().get("even.csv")).isEqualTo(bytes("01234567"));
+        assertThat(server.requests()).filteredOn(request -> request.startsWith("PUT")).hasSize(2);
+    }
+
+    @Test
+    void closeWithoutCommitAbortsUpload() throws IOException {
+        try (S3MultipartOutputStream out = open("aborted.csv")) {
+            out.write(bytes("0123456789"));
+        }
+
+        assertThat(server.objects()).doesNotContainKey("aborted.csv");
+        assertThat(server.uploads()).isEmpty();
+        assertThat(server.requests()).last().isEqualTo("DELETE uploadId");
+    }
+
+    @Test
+    void closeWithoutCommitBeforeFirstPartSendsNothing() throws IOException {
+        try (S3MultipartOutputStream out = open("nothing.csv")) {
+            out.write(bytes("ab"));
+        }
+
+        assertThat(server.requests()).isEmpty();
+    }
+
+    @Test
+    void failedPartFailsCommitAndAbortsOnClose() throws IOException {
+        server.failPart(2);
+        S3MultipartOutputStream out = open("failed.csv");
+        out.write(bytes("0123456789"));
+
+        assertThatThrownBy(out::commit).isInstanceOf(IOException.class).hasMessageContaining("HTTP 500");
+        out.close();
+
+        assertThat(server.objects()).doesNotContainKey("failed.csv");
+        assertThat(server.uploads()).isEmpty();
+        assertThat(server.requests()).doesNotContain("POST uploadId");
+    }
+
+    private S3MultipartOutputStream open(String key) {
+        return new S3MultipartOutputStream(server.client(), key, PART_SIZE, 2, executor);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
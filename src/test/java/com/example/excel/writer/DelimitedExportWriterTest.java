@@ -0,0 +1,164 @@
+package com.example.excel.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DelimitedExportWriterTest {
+
+    private static final String BOM = "\uFEFF";
+
+    private static final List<ExcelColumnMeta> COLUMNS = Arrays.asList(
+        new ExcelColumnMeta("id", "ID", 10),
+        new ExcelColumnMeta("name", "姓名,备注", 20));
+
+    @Test
+    void csvQuotesFieldsWithDelimiterQuoteOrLineBreak() throws IOException {
+        String csv = write(',', Arrays.asList(
+            row(1L, "plain"),
+            row(2L, "a,b"),
+            row(3L, "say \"hi\""),
+            row(4L, "line1\nline2"),
+            row(5L, "cr\rhere"),
+            row(6L, "tab\tkept")));
+
+        assertThat(csv).isEqualTo(BOM + "ID,\"姓名,备注\"\r\n"
+            + "1,plain\r\n"
+            + "2,\"a,b\"\r\n"
+            + "3,\"say \"\"hi\"\"\"\r\n"
+            + "4,\"line1\nline2\"\r\n"
+            + "5,\"cr\rhere\"\r\n"
+            + "6,tab\tkept\r\n");
+    }
+
+    @Test
+    void tsvReplacesTabsAndLineBreaksWithoutQuoting() throws IOException {
+        String tsv = write('\t', Arrays.asList(
+            row(1L, "a\tb"),
+            row(2L, "x\r\ny"),
+            row(3L, "say \"hi\", ok")));
+
+        assertThat(tsv).isEqualTo(BOM + "ID\t姓名,备注\r\n"
+            + "1\ta b\r\n"
+            + "2\tx  y\r\n"
+            + "3\tsay \"hi\", ok\r\n");
+    }
+
+    @Test
+    void encodesMultiByteAndSurrogatePairs() throws IOException {
+        String csv = write(',', Arrays.asList(
+            row(1L, "é中😀"),
+            row(2L, "lone\uD83Dhigh"),
+            row(3L, "lone\uDE00low")));
+
+        // 不成对的代理字符与xlsx_fast一样丢弃
+        assertThat(csv).endsWith("1,é中😀\r\n2,lonehigh\r\n3,lonelow\r\n");
+    }
+
+    @Test
+    void encodesTextAcrossBufferBoundary() throws IOException {
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 1024 * 1024 + 7) {
+            large.append("中😀a\"");
+        }
+        String csv = write(',', Collections.singletonList(row(1L, large.toString())));
+
+        String expected = "\"" + large.toString().replace("\"", "\"\"") + "\"";
+        assertThat(csv).isEqualTo(BOM + "ID,\"姓名,备注\"\r\n1," + expected + "\r\n");
+    }
+
+    @Test
+    void writesNumbersDatesAndNulls() throws IOException {
+        String csv = write(',', Collections.singletonList(Arrays.asList(
+            -42L, new BigDecimal("1E+3"), 1.5d, true, null,
+            LocalDateTime.of(2024, 3, 5, 7, 8, 9), LocalDate.of(999, 12, 31), Long.MIN_VALUE)));
+
+        assertThat(csv).endsWith("\r\n-42,1000,1.5,true,,2024-03-05 07:08:09,999-12-31,"
+            + Long.MIN_VALUE + "\r\n");
+    }
+
+    @Test
+    void writesSalariesAsPlainDecimals() throws IOException {
+        String csv = write(',', Arrays.asList(
+            row(1L, 12345678.9d),
+            row(2L, 1.0E7d),
+            row(3L, 5234.56d),
+            row(4L, 0.05d),
+            row(5L, 1.5E-7d),
+            row(6L, 2.5E8f)));
+
+        assertThat(csv).endsWith("\r\n1,12345678.9\r\n2,10000000\r\n3,5234.56\r\n4,0.05\r\n"
+            + "5,0.00000015\r\n6,250000000\r\n");
+    }
+
+    @Test
+    void writesNonFiniteNumbersAsEmptyFields() throws IOException {
+        String csv = write(',', Collections.singletonList(Arrays.asList(
+            1L, Double.NaN, Double.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 2L)));
+
+        assertThat(csv).endsWith("\r\n1,,,,2\r\n");
+    }
+
+    @Test
+    void checkpointOffsetCountsBomAndHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long headerOffset;
+        long firstRowsOffset;
+        try (DelimitedExportWriter writer = new DelimitedExportWriter(
+                Channels.newChannel(out), ',', COLUMNS, false, true)) {
+            headerOffset = writer.flush();
+            writer.write(Collections.singletonList(row(1L, "中文")));
+            firstRowsOffset = writer.flush();
+            writer.write(Collections.singletonList(row(2L, "未提交")));
+        }
+        byte[] header = (BOM + "ID,\"姓名,备注\"\r\n").getBytes(StandardCharsets.UTF_8);
+        assertThat(headerOffset).isEqualTo(header.length);
+        assertThat(firstRowsOffset).isEqualTo(header.length + "1,中文\r\n".getBytes(StandardCharsets.UTF_8).length);
+
+        // 从检查点续写：截断到检查点偏移后不再输出BOM和表头，续写结果与一次写完相同
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        resumed.write(out.toByteArray(), 0, (int) firstRowsOffset);
+        try (DelimitedExportWriter writer = new DelimitedExportWriter(
+                Channels.newChannel(resumed), ',', COLUMNS, false, false)) {
+            assertThat(writer.flush()).isZero();
+            writer.write(Collections.singletonList(row(2L, "续写")));
+        }
+        assertThat(resumed.toString(StandardCharsets.UTF_8)).isEqualTo(
+            write(',', Arrays.asList(row(1L, "中文"), row(2L, "续写"))));
+    }
+
+    @Test
+    void writeRawCopiesBytesUnchanged() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] raw = "9,\"已编码,\"\"行\"\"\"\r\n".getBytes(StandardCharsets.UTF_8);
+        try (DelimitedExportWriter writer = new DelimitedExportWriter(
+                Channels.newChannel(out), ',', COLUMNS, false, false)) {
+            writer.writeRaw(raw, 0, raw.length);
+        }
+        assertThat(out.toByteArray()).isEqualTo(raw);
+    }
+
+    private static String write(char delimiter, List<List<Object>> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DelimitedExportWriter writer = new DelimitedExportWriter(
+                Channels.newChannel(out), delimiter, COLUMNS, true)) {
+            writer.write(rows);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<Object> row(Object... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.excel.writer;
+
+import com.alibaba.excel.EasyExcel;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OoxmlExportWriterTest {
+
+    private static final List<ExcelColumnMeta> COLUMNS = Arrays.asList(
+        new ExcelColumnMeta("id", "ID", 10),
+        new ExcelColumnMeta("name", "姓名 & <备注>", 20),
+        new ExcelColumnMeta("score", "分数", 10));
+
+    @Test
+    void everyPartIsWellFormedXml() throws Exception {
+        byte[] xlsx = write(1000, Arrays.asList(
+            row(1L, "  前后空格  ", 1.5d),
+            row(2L, "a<b>&\"c\"\u0001\u0008", new BigDecimal("12345678901234567890.12")),
+            row(3L, "emoji 😀 孤立代理\uD800", LocalDateTime.of(2024, 1, 2, 12, 0, 0)),
+            row(4L, null, true)));
+
+        Map<String, byte[]> entries = unzip(xlsx);
+        assertThat(entries).containsKeys("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml",
+            "xl/_rels/workbook.xml.rels", "xl/styles.xml", "xl/worksheets/sheet1.xml");
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            parse(entry.getValue());
+        }
+
+        Document sheet = parse(entries.get("xl/worksheets/sheet1.xml"));
+        NodeList rows = sheet.getElementsByTagName("row");
+        assertThat(rows.getLength()).isEqualTo(5);
+        assertThat(((Element) rows.item(4)).getAttribute("r")).isEqualTo("5");
+
+        NodeList texts = sheet.getElementsByTagName("t");
+        assertThat(texts.item(0).getTextContent()).isEqualTo("ID");
+        assertThat(texts.item(1).getTextContent()).isEqualTo("姓名 & <备注>");
+        assertThat(((Element) texts.item(3)).getAttribute("xml:space")).isEqualTo("preserve");
+        assertThat(texts.item(3).getTextContent()).isEqualTo("  前后空格  ");
+        // XML 1.0不允许的控制字符被丢弃
+        assertThat(texts.item(4).getTextContent()).isEqualTo("a<b>&\"c\"");
+        // 代理对按4字节UTF-8输出，孤立的代理字符被丢弃
+        assertThat(texts.item(5).getTextContent()).isEqualTo("emoji 😀 孤立代理");
+    }
+
+    @Test
+    void nonFiniteNumbersAreWrittenAsText() throws Exception {
+        byte[] xlsx = write(1000, Arrays.asList(
+            row(1L, "nan", Double.NaN),
+            row(2L, "inf", Double.POSITIVE_INFINITY),
+            row(3L, "-inf", Float.NEGATIVE_INFINITY)));
+
+        Document sheet = parse(unzip(xlsx).get("xl/worksheets/sheet1.xml"));
+        NodeList values = sheet.getElementsByTagName("v");
+        for (int i = 0; i < values.getLength(); i++) {
+            assertThat(values.item(i).getTextContent()).doesNotContain("NaN").doesNotContain("Infinity");
+        }
+
+        List<Map<Integer, String>> read = readBack(xlsx, 0);
+        assertThat(read).hasSize(3);
+        assertThat(read.get(0).get(2)).isEqualTo("NaN");
+        assertThat(read.get(1).get(2)).isEqualTo("Infinity");
+        assertThat(read.get(2).get(2)).isEqualTo("-Infinity");
+    }
+
+    @Test
+    void rollsOverToNewSheetAtRowLimit() throws Exception {
+        List<List<Object>> rows = Arrays.asList(
+            row(1L, "a", 1), row(2L, "b", 2), row(3L, "c", 3), row(4L, "d", 4), row(5L, "e", 5));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int sheetCount;
+        try (OoxmlExportWriter writer = new OoxmlExportWriter(out, "用户数据", 2, COLUMNS, true)) {
+            writer.write(rows.subList(0, 3));
+            writer.write(rows.subList(3, 5));
+            sheetCount = writer.getSheetCount();
+        }
+        assertThat(sheetCount).isEqualTo(3);
+
+        Map<String, byte[]> entries = unzip(out.toByteArray());
+        assertThat(entries).containsKeys("xl/worksheets/sheet1.xml", "xl/worksheets/sheet2.xml",
+            "xl/worksheets/sheet3.xml");
+        Document workbook = parse(entries.get("xl/workbook.xml"));
+        NodeList sheets = workbook.getElementsByTagName("sheet");
+        assertThat(sheets.getLength()).isEqualTo(3);
+        assertThat(((Element) sheets.item(0)).getAttribute("name")).isEqualTo("用户数据");
+        assertThat(((Element) sheets.item(2)).getAttribute("name")).isEqualTo("用户数据_3");
+
+        // 每个工作表都有表头，数据行号从2开始
+        assertThat(readBack(out.toByteArray(), 0)).extracting(r -> r.get(0)).containsExactly("1", "2");
+        assertThat(readBack(out.toByteArray(), 1)).extracting(r -> r.get(0)).containsExactly("3", "4");
+        assertThat(readBack(out.toByteArray(), 2)).extracting(r -> r.get(0)).containsExactly("5");
+    }
+
+    @Test
+    void emptyExportHasHeaderOnlySheet() throws Exception {
+        byte[] xlsx = write(1000, Collections.emptyList());
+
+        Document sheet = parse(unzip(xlsx).get("xl/worksheets/sheet1.xml"));
+        assertThat(sheet.getElementsByTagName("row").getLength()).isEqualTo(1);
+        assertThat(readBack(xlsx, 0)).isEmpty();
+    }
+
+    private static byte[] write(long maxRowsPerSheet, List<List<Object>> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OoxmlExportWriter writer = new OoxmlExportWriter(out, "用户数据", maxRowsPerSheet, COLUMNS, true)) {
+            writer.write(rows);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Object> row(Object... values) {
+        return Arrays.asList(values);
+    }
+
+    private static Map<String, byte[]> unzip(byte[] xlsx) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    /**
+     * 用EasyExcel（POI）读回，确认生成的文件能被正常打开
+     */
+    private static List<Map<Integer, String>> readBack(byte[] xlsx, int sheetNo) {
+        return EasyExcel.read(new ByteArrayInputStream(xlsx)).sheet(sheetNo).headRowNumber(1).doReadSync();
+    }
+}
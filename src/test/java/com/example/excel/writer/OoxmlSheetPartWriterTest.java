@@ -0,0 +1,109 @@
+package com.example.excel.writer;
+
+import com.alibaba.excel.EasyExcel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OoxmlSheetPartWriterTest {
+
+    private static final List<ExcelColumnMeta> COLUMNS = Arrays.asList(
+        new ExcelColumnMeta("id", "ID", 10),
+        new ExcelColumnMeta("name", "姓名", 20),
+        new ExcelColumnMeta("joinTime", "入职时间", 20));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void assembledWorkbookMatchesSingleStreamWriter() throws Exception {
+        List<List<Object>> rows = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            rows.add(Arrays.asList(id, "用户<" + id + ">", LocalDateTime.of(2024, 1, (int) id, 8, 30)));
+        }
+
+        // 每个工作表2行，与OoxmlExportWriter按相同上限切换工作表的结果逐字节一致
+        List<OoxmlSheetPartWriter.SheetPart> parts = new ArrayList<>();
+        for (int start = 0, partNo = 1; start < rows.size(); start += 2, partNo++) {
+            parts.add(writePart(partNo, rows.subList(start, Math.min(start + 2, rows.size()))));
+        }
+        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        OoxmlSheetPartWriter.assemble(assembled, "用户数据", parts);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (OoxmlExportWriter writer = new OoxmlExportWriter(expected, "用户数据", 2, COLUMNS, true)) {
+            writer.write(rows);
+        }
+
+        Map<String, byte[]> actualEntries = unzip(assembled.toByteArray());
+        Map<String, byte[]> expectedEntries = unzip(expected.toByteArray());
+        assertThat(actualEntries.keySet()).containsExactlyInAnyOrderElementsOf(expectedEntries.keySet());
+        for (Map.Entry<String, byte[]> entry : expectedEntries.entrySet()) {
+            assertThat(actualEntries.get(entry.getKey())).as(entry.getKey()).isEqualTo(entry.getValue());
+            DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(actualEntries.get(entry.getKey())));
+        }
+
+        List<Map<Integer, String>> lastSheet = EasyExcel.read(new ByteArrayInputStream(assembled.toByteArray()))
+            .sheet(2).headRowNumber(1).doReadSync();
+        assertThat(lastSheet).extracting(r -> r.get(1)).containsExactly("用户<5>");
+    }
+
+    @Test
+    void reportsRowsCrcAndSize() throws Exception {
+        File file = tempDir.resolve("1.xml").toFile();
+        OoxmlSheetPartWriter writer = new OoxmlSheetPartWriter(file, COLUMNS);
+        writer.write(Arrays.asList(Arrays.asList(1L, "a", null), Arrays.asList(2L, "b", null)));
+        writer.close();
+        // 重复关闭不会再次写入结尾
+        writer.close();
+
+        assertThat(writer.getRows()).isEqualTo(2);
+        assertThat(writer.getSize()).isGreaterThan(file.length());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OoxmlSheetPartWriter.assemble(out, "用户数据",
+            List.of(new OoxmlSheetPartWriter.SheetPart(file, writer.getCrc(), writer.getSize())));
+        // ZipInputStream校验CRC和大小，不一致时抛出异常
+        byte[] sheet = unzip(out.toByteArray()).get("xl/worksheets/sheet1.xml");
+        assertThat(sheet).hasSize((int) writer.getSize());
+    }
+
+    private OoxmlSheetPartWriter.SheetPart writePart(int partNo, List<List<Object>> rows) throws IOException {
+        File file = tempDir.resolve(partNo + ".xml").toFile();
+        OoxmlSheetPartWriter writer = new OoxmlSheetPartWriter(file, COLUMNS);
+        try {
+            writer.write(rows);
+        } finally {
+            writer.close();
+        }
+        return new OoxmlSheetPartWriter.SheetPart(file, writer.getCrc(), writer.getSize());
+    }
+
+    private static Map<String, byte[]> unzip(byte[] xlsx) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(xlsx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.excel.writer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotMergeWriterTest {
+
+    private static final List<ExcelColumnMeta> COLUMNS = Arrays.asList(
+        new ExcelColumnMeta("id", "ID", 10),
+        new ExcelColumnMeta("remark", "备注", 20));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void quotedLineBreaksStayInsideRecord() throws IOException {
+        // 引号内换行后紧跟数字和分隔符，不能被当作下一条记录的主键
+        File snapshot = snapshot(',', Arrays.asList(
+            row(1L, "first"),
+            row(2L, "line1\n3,fake"),
+            row(4L, "say \"hi\"\r\n5,\"also fake\"")));
+
+        SnapshotMergeWriter merge = new SnapshotMergeWriter(snapshot, newOutput(','), ',');
+        merge.write(Arrays.asList(
+            row(3L, "inserted", "UPSERT"),
+            row(4L, "replaced\nagain", "UPSERT")));
+        merge.close();
+
+        assertThat(merged()).isEqualTo(expected(',', Arrays.asList(
+            row(1L, "first"),
+            row(2L, "line1\n3,fake"),
+            row(3L, "inserted"),
+            row(4L, "replaced\nagain"))));
+        assertThat(merge.getCopiedRows()).isEqualTo(2);
+        assertThat(merge.getUpsertedRows()).isEqualTo(2);
+    }
+
+    @Test
+    void deleteRowsDropRecordsIncludingMultiLineOnes() throws IOException {
+        File snapshot = snapshot(',', Arrays.asList(
+            row(1L, "keep"),
+            row(2L, "multi\nline\n\"quoted\""),
+            row(3L, "keep too"),
+            row(4L, "last")));
+
+        SnapshotMergeWriter merge = new SnapshotMergeWriter(snapshot, newOutput(','), ',');
+        merge.write(Arrays.asList(
+            row(2L, "multi\nline", "DELETE"),
+            row(4L, "last", "DELETE"),
+            // 删除快照中不存在的记录不影响输出
+            row(9L, null, "DELETE")));
+        merge.close();
+
+        assertThat(merged()).isEqualTo(expected(',', Arrays.asList(
+            row(1L, "keep"),
+            row(3L, "keep too"))));
+        assertThat(merge.getCopiedRows()).isEqualTo(2);
+        assertThat(merge.getDeletedRows()).isEqualTo(3);
+        assertThat(merge.getUpsertedRows()).isZero();
+    }
+
+    @Test
+    void copiesRemainingRecordsAndAppendsNewOnes() throws IOException {
+        File snapshot = snapshot(',', Arrays.asList(
+            row(5L, "a"),
+            row(10L, "b\nc"),
+            row(20L, "d")));
+
+        SnapshotMergeWriter merge = new SnapshotMergeWriter(snapshot, newOutput(','), ',');
+        merge.write(Arrays.asList(row(1L, "new head", "UPSERT"), row(10L, "b2", "UPSERT")));
+        merge.write(Arrays.asList(row(30L, "new tail", "UPSERT")));
+        merge.close();
+
+        assertThat(merged()).isEqualTo(expected(',', Arrays.asList(
+            row(1L, "new head"),
+            row(5L, "a"),
+            row(10L, "b2"),
+            row(20L, "d"),
+            row(30L, "new tail"))));
+    }
+
+    @Test
+    void tsvTreatsQuotesAsContent() throws IOException {
+        // TSV不使用引号，单个引号不能让后续记录被当作字段内容
+        File snapshot = snapshot('\t', Arrays.asList(
+            row(1L, "5\" screen"),
+            row(2L, "plain"),
+            row(3L, "end")));
+
+        SnapshotMergeWriter merge = new SnapshotMergeWriter(snapshot, newOutput('\t'), '\t');
+        merge.write(Arrays.asList(row(2L, null, "DELETE"), row(3L, "changed", "UPSERT")));
+        merge.close();
+
+        assertThat(merged()).isEqualTo(expected('\t', Arrays.asList(
+            row(1L, "5\" screen"),
+            row(3L, "changed"))));
+    }
+
+    private File snapshot(char delimiter, List<List<Object>> rows) throws IOException {
+        File file = tempDir.resolve("snapshot").toFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             DelimitedExportWriter writer = new DelimitedExportWriter(raf.getChannel(), delimiter, COLUMNS, true)) {
+            writer.write(rows);
+        }
+        return file;
+    }
+
+    private DelimitedExportWriter newOutput(char delimiter) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(tempDir.resolve("merged").toFile(), "rw");
+        return new DelimitedExportWriter(raf.getChannel(), delimiter, COLUMNS, true, false);
+    }
+
+    private String merged() throws IOException {
+        return new String(Files.readAllBytes(tempDir.resolve("merged")), StandardCharsets.UTF_8);
+    }
+
+    private static String expected(char delimiter, List<List<Object>> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DelimitedExportWriter writer = new DelimitedExportWriter(
+                Channels.newChannel(out), delimiter, COLUMNS, true)) {
+            writer.write(rows);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<Object> row(Object... values) {
+        return Arrays.asList(values);
+    }
+}